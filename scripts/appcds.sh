@@ -0,0 +1,31 @@
+#!/bin/sh
+# Compiles the app and builds an AppCDS archive (JDK 13+) so later launches
+# map the classes used at startup instead of loading and verifying them.
+#
+# The training run starts the app with -Dmarketsim.startup.exit=true; it
+# exits as soon as the login window is up and the DB is initialised, and
+# the JVM writes every class it loaded to the archive. It needs a display
+# (use xvfb-run on a headless machine). Rebuild the archive after changing
+# the code or the JDK: a stale archive is ignored with a warning. Classes
+# are only archived from JARs, so the app is packaged (icons included).
+#
+#   scripts/appcds.sh
+#   java -XX:SharedArchiveFile=out/marketsim.jsa -cp "out/marketsim.jar:lib/*" app.Main
+set -e
+cd "$(dirname "$0")/.."
+
+OUT=out/classes
+JAR=out/marketsim.jar
+ARCHIVE=out/marketsim.jsa
+CP="$JAR:lib/*"
+
+rm -rf "$OUT" "$JAR" "$ARCHIVE"
+mkdir -p "$OUT"
+javac -encoding UTF-8 -d "$OUT" -cp "lib/*" $(find src -name '*.java')
+cp -r src/icons "$OUT/icons"
+jar cf "$JAR" -C "$OUT" .
+
+java -XX:ArchiveClassesAtExit="$ARCHIVE" -Dmarketsim.startup.exit=true -cp "$CP" app.Main
+
+echo "Archive written to $ARCHIVE. Run with:"
+echo "  java -XX:SharedArchiveFile=$ARCHIVE -cp \"$CP\" app.Main"
@@ -0,0 +1,177 @@
+package analytics;
+
+import model.MarketState;
+import model.Stock;
+import model.UserPortfolio;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo projection of a portfolio's value over the next N days.
+ *
+ * Prices follow a one-factor lognormal model: each day every held stock's
+ * log price moves by beta * F + e, where F is a market shock shared by all
+ * stocks and e the stock's own shock. The variances come from a RiskReport,
+ * scaled from per tick to per day; there is no drift (the expected price
+ * stays where it is). Cash is carried as is.
+ *
+ * Paths are generated in chunks of PATHS_PER_TASK on the common
+ * ForkJoinPool. Each chunk has its own SplittableRandom (split from one seed,
+ * so a run is reproducible) and its own quantile sketch per day. Sketches are
+ * merged at the end, and no path is kept, so memory doesn't depend on the
+ * path count.
+ */
+public class MonteCarlo {
+
+    private static final int PATHS_PER_TASK = 4096;
+
+    // ---------- Model ----------
+
+    public static final class Model {
+        final double cash;
+        final double[] value;       // rupees held in each stock today
+        final double[] beta;
+        final double[] ownVol;      // daily st.dev. of the stock's own shock
+        final double[] drag;        // -variance / 2, keeps the expected price flat
+        final double marketVol;     // daily st.dev. of the market shock
+
+        Model(double cash, double[] value, double[] beta, double[] ownVol, double marketVol) {
+            this.cash = cash;
+            this.value = value;
+            this.beta = beta;
+            this.ownVol = ownVol;
+            this.marketVol = marketVol;
+            this.drag = new double[value.length];
+            for (int j = 0; j < value.length; j++) {
+                double b = beta[j] * marketVol;
+                drag[j] = -0.5 * (b * b + ownVol[j] * ownVol[j]);
+            }
+        }
+
+        public double startValue() {
+            double v = cash;
+            for (double x : value) v += x;
+            return v;
+        }
+
+        /**
+         * Model of the user's current holdings. ticksPerDay converts the
+         * report's per-tick volatilities to daily ones (sqrt of time).
+         */
+        public static Model forPortfolio(RiskReport risk, MarketState market, UserPortfolio user, double ticksPerDay) {
+            int slots = Math.min(user.getPositionSlots(), market.getSymbols().size());
+            int held = 0;
+            for (int id = 0; id < slots; id++) {
+                if (user.getPosition(id) != 0 && risk.covers(id)) held++;
+            }
+            double scale = Math.sqrt(Math.max(1, ticksPerDay));
+            double marketVol = risk.getMarketVolatility() * scale;
+            double[] value = new double[held], beta = new double[held], ownVol = new double[held];
+            int j = 0;
+            for (int id = 0; id < slots; id++) {
+                Stock s = market.getStock(id);
+                if (s == null || user.getPosition(id) == 0 || !risk.covers(id)) continue;
+                value[j] = user.getPosition(id) * s.getPrice();
+                beta[j] = risk.beta(id);
+                double total = risk.volatility(id) * scale, fromMarket = beta[j] * marketVol;
+                ownVol[j] = Math.sqrt(Math.max(0, total * total - fromMarket * fromMarket));
+                j++;
+            }
+            return new Model(user.getBalance(), value, beta, ownVol, marketVol);
+        }
+    }
+
+    // ---------- Result ----------
+
+    public static final class Projection {
+        private final double startValue;
+        private final QuantileSketch[] byDay;   // [day - 1]
+        private final long paths;
+        private final long nanos;
+
+        Projection(double startValue, QuantileSketch[] byDay, long paths, long nanos) {
+            this.startValue = startValue;
+            this.byDay = byDay;
+            this.paths = paths;
+            this.nanos = nanos;
+        }
+
+        public double getStartValue() { return startValue; }
+        public int getDays() { return byDay.length; }
+        public long getPaths() { return paths; }
+        public long getNanos() { return nanos; }
+
+        // Portfolio value at the given quantile after `day` days (day 0 is today)
+        public double quantile(int day, double fraction) {
+            return day == 0 ? startValue : byDay[day - 1].quantile(fraction);
+        }
+
+        // [day][i]: the value at fractions[i] on each day 0..days
+        public double[][] bands(double[] fractions) {
+            double[][] out = new double[byDay.length + 1][fractions.length];
+            for (int d = 0; d <= byDay.length; d++) {
+                for (int i = 0; i < fractions.length; i++) out[d][i] = quantile(d, fractions[i]);
+            }
+            return out;
+        }
+    }
+
+    // ---------- Simulation ----------
+
+    public static Projection run(Model model, int paths, int days, long seed) {
+        long t0 = System.nanoTime();
+        SplittableRandom root = new SplittableRandom(seed);
+        int tasks = Math.max(1, (paths + PATHS_PER_TASK - 1) / PATHS_PER_TASK);
+        Chunk[] chunks = new Chunk[tasks];
+        for (int c = 0; c < tasks; c++) {
+            int n = Math.min(PATHS_PER_TASK, paths - c * PATHS_PER_TASK);
+            chunks[c] = new Chunk(model, Math.max(0, n), days, root.split());
+        }
+        for (int c = 1; c < tasks; c++) chunks[c].fork();
+        chunks[0].invoke();
+        for (int c = 1; c < tasks; c++) chunks[c].join();
+
+        QuantileSketch[] byDay = chunks[0].sketches;
+        for (int c = 1; c < tasks; c++) {
+            for (int d = 0; d < days; d++) byDay[d].merge(chunks[c].sketches[d]);
+        }
+        return new Projection(model.startValue(), byDay, paths, System.nanoTime() - t0);
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final Model model;
+        private final int paths, days;
+        private final SplittableRandom rnd;
+        final QuantileSketch[] sketches;
+
+        Chunk(Model model, int paths, int days, SplittableRandom rnd) {
+            this.model = model;
+            this.paths = paths;
+            this.days = days;
+            this.rnd = rnd;
+            this.sketches = new QuantileSketch[days];
+            for (int d = 0; d < days; d++) sketches[d] = new QuantileSketch();
+        }
+
+        @Override
+        protected void compute() {
+            Model m = model;
+            int k = m.value.length;
+            double[] logGrowth = new double[k];
+            for (int p = 0; p < paths; p++) {
+                Arrays.fill(logGrowth, 0);
+                for (int d = 0; d < days; d++) {
+                    double f = m.marketVol * rnd.nextGaussian();
+                    double v = m.cash;
+                    for (int j = 0; j < k; j++) {
+                        logGrowth[j] += m.drag[j] + m.beta[j] * f + m.ownVol[j] * rnd.nextGaussian();
+                        v += m.value[j] * Math.exp(logGrowth[j]);
+                    }
+                    sketches[d].add(v);
+                }
+            }
+        }
+    }
+}
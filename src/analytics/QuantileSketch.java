@@ -0,0 +1,93 @@
+package analytics;
+
+/**
+ * Mergeable quantile sketch for positive values (DDSketch-style log bins).
+ * Bucket i holds values in (MIN_VALUE * GAMMA^(i-1), MIN_VALUE * GAMMA^i],
+ * so any quantile comes back within RELATIVE_ACCURACY of a true sample
+ * value, however many values are added. Only the buckets between the
+ * lowest and highest value seen are stored (a few hundred for a typical
+ * distribution), and the store grows when a value falls outside them.
+ * Values at or below MIN_VALUE share bucket 0; values above the top bucket
+ * share the last.
+ *
+ * Not thread-safe: each worker fills its own sketch and they are merged.
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.001;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_VALUE = 0.01;
+    private static final double MAX_VALUE = 1e16;
+    private static final int BUCKETS = (int) Math.ceil(Math.log(MAX_VALUE / MIN_VALUE) / LOG_GAMMA) + 1;
+
+    private long[] counts;      // counts[i - offset] is bucket i
+    private int offset;
+    private long total;
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    public void add(double v) {
+        int i = indexOf(v);
+        ensureCovers(i);
+        counts[i - offset]++;
+        total++;
+        if (v < min) min = v;
+        if (v > max) max = v;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.counts == null) return;
+        ensureCovers(other.offset);
+        ensureCovers(other.offset + other.counts.length - 1);
+        for (int j = 0; j < other.counts.length; j++) counts[other.offset + j - offset] += other.counts[j];
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() { return total; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+
+    // Value at or below which the given fraction of the values fall
+    public double quantile(double fraction) {
+        if (total == 0) return Double.NaN;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int j = 0; j < counts.length; j++) {
+            seen += counts[j];
+            if (seen >= rank) return Math.max(min, Math.min(max, valueOf(offset + j)));
+        }
+        return max;
+    }
+
+    // Grow the store (doubling) until bucket i is in it
+    private void ensureCovers(int i) {
+        if (counts == null) {
+            counts = new long[64];
+            offset = Math.max(0, Math.min(BUCKETS - 64, i - 32));
+            return;
+        }
+        int lo = offset, hi = offset + counts.length;
+        if (i >= lo && i < hi) return;
+        int size = counts.length;
+        while (i < hi - size || i >= lo + size) size *= 2;
+        size = Math.min(size, BUCKETS);
+        int newOffset = i < lo ? Math.max(0, hi - size) : Math.min(lo, BUCKETS - size);
+        long[] grown = new long[size];
+        System.arraycopy(counts, 0, grown, lo - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    private static int indexOf(double v) {
+        if (!(v > MIN_VALUE)) return 0;
+        int i = (int) Math.ceil(Math.log(v / MIN_VALUE) / LOG_GAMMA);
+        return Math.min(BUCKETS - 1, i);
+    }
+
+    // Middle of bucket i, in the relative sense
+    private static double valueOf(int i) {
+        return MIN_VALUE * Math.pow(GAMMA, i) * 2 / (1 + GAMMA);
+    }
+}
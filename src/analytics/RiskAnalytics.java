@@ -0,0 +1,277 @@
+package analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Risk statistics over plain double[] series: returns, volatility, beta,
+ * correlation and historical / parametric VaR and CVaR.
+ *
+ * Everything works on primitive arrays with simple counted loops over
+ * contiguous memory, the shape HotSpot's C2 compiles to SIMD on its own.
+ * The jdk.incubator.vector module is not used: it needs --add-modules at
+ * compile and run time, which the plain javac/java launch of this project
+ * doesn't pass. Sums use four independent accumulators, because the JIT
+ * won't reorder a floating-point reduction itself. The correlation matrix,
+ * the heavy part, is written as rank-1 row updates (c[j] += a * z[j], every
+ * array at the same index j); they have no reduction, so they vectorize
+ * fully. Its row blocks run on the common ForkJoinPool.
+ *
+ * VaR and CVaR are returned as positive losses.
+ */
+public final class RiskAnalytics {
+
+    // correlationMatrix: time steps transposed at once, rows updated together, rows per fork-join task
+    private static final int TIME_BLOCK = 128;
+    private static final int ROW_BLOCK = 4;
+    private static final int TASK_ROWS = 32;
+
+    private RiskAnalytics() {}
+
+    // ---------- Returns and moments ----------
+
+    // Log returns of prices [from, to) into out; returns how many were written (to - from - 1)
+    public static int logReturns(double[] prices, int from, int to, double[] out) {
+        int n = 0;
+        for (int i = from + 1; i < to; i++, n++) {
+            double prev = prices[i - 1];
+            out[n] = prev > 0 && prices[i] > 0 ? Math.log(prices[i] / prev) : 0;
+        }
+        return n;
+    }
+
+    public static double sum(double[] x, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += x[i];
+            s1 += x[i + 1];
+            s2 += x[i + 2];
+            s3 += x[i + 3];
+        }
+        for (; i < n; i++) s0 += x[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static double mean(double[] x, int n) {
+        return n == 0 ? 0 : sum(x, n) / n;
+    }
+
+    // Sum of (a[i] - ma) * (b[i] - mb)
+    private static double coMoment(double[] a, double ma, double[] b, double mb, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += (a[i] - ma) * (b[i] - mb);
+            s1 += (a[i + 1] - ma) * (b[i + 1] - mb);
+            s2 += (a[i + 2] - ma) * (b[i + 2] - mb);
+            s3 += (a[i + 3] - ma) * (b[i + 3] - mb);
+        }
+        for (; i < n; i++) s0 += (a[i] - ma) * (b[i] - mb);
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // Sample standard deviation
+    public static double stdDev(double[] x, int n) {
+        if (n < 2) return 0;
+        double m = mean(x, n);
+        return Math.sqrt(coMoment(x, m, x, m, n) / (n - 1));
+    }
+
+    /**
+     * Volatility (sample standard deviation) of every `window` consecutive
+     * returns: out[t] covers r[t - window + 1 .. t], for t >= window - 1
+     * (earlier slots are set to NaN). O(n) with running sums.
+     */
+    public static void rollingVolatility(double[] r, int n, int window, double[] out) {
+        double s = 0, ss = 0;
+        for (int t = 0; t < n; t++) {
+            s += r[t];
+            ss += r[t] * r[t];
+            if (t >= window) {
+                double old = r[t - window];
+                s -= old;
+                ss -= old * old;
+            }
+            if (t < window - 1 || window < 2) {
+                out[t] = Double.NaN;
+            } else {
+                double var = (ss - s * s / window) / (window - 1);
+                out[t] = Math.sqrt(Math.max(0, var));
+            }
+        }
+    }
+
+    // ---------- Beta and correlation ----------
+
+    // Beta of r against the market returns m: cov(r, m) / var(m)
+    public static double beta(double[] r, double[] m, int n) {
+        if (n < 2) return 0;
+        double mr = mean(r, n), mm = mean(m, n);
+        double var = coMoment(m, mm, m, mm, n);
+        return var == 0 ? 0 : coMoment(r, mr, m, mm, n) / var;
+    }
+
+    public static double correlation(double[] a, double[] b, int n) {
+        if (n < 2) return 0;
+        double ma = mean(a, n), mb = mean(b, n);
+        double den = Math.sqrt(coMoment(a, ma, a, ma, n) * coMoment(b, mb, b, mb, n));
+        return den == 0 ? 0 : coMoment(a, ma, b, mb, n) / den;
+    }
+
+    /**
+     * Correlation matrix of k return series of n observations each
+     * (returns[i][0..n)); row i of the result is series i.
+     *
+     * Each series is centred and scaled to unit length, so a correlation is
+     * a dot product. Dot products don't vectorize, so they are accumulated
+     * the other way round: the series are transposed TIME_BLOCK steps at a
+     * time into zt[t][i], and for every step t, row i of the result gains
+     * zt[t][i] * zt[t][i..k). ROW_BLOCK rows share each pass over zt[t],
+     * and those rows stay in L1. Only the upper triangle is computed, then
+     * mirrored.
+     */
+    public static double[][] correlationMatrix(double[][] returns, int n) {
+        int k = returns.length;
+        double[][] c = new double[k][k];
+        double[] centre = new double[k], scale = new double[k];
+        for (int i = 0; i < k; i++) {
+            double m = mean(returns[i], n);
+            double norm = Math.sqrt(coMoment(returns[i], m, returns[i], m, n));
+            centre[i] = m;
+            scale[i] = norm == 0 ? 0 : 1 / norm;
+        }
+
+        double[][] zt = new double[TIME_BLOCK][k];
+        for (int t0 = 0; t0 < n; t0 += TIME_BLOCK) {
+            int steps = Math.min(TIME_BLOCK, n - t0);
+            for (int i = 0; i < k; i++) {
+                double[] r = returns[i];
+                double m = centre[i], s = scale[i];
+                for (int t = 0; t < steps; t++) zt[t][i] = (r[t0 + t] - m) * s;
+            }
+            new RowUpdate(zt, steps, c, 0, k).invoke();
+        }
+
+        for (int i = 0; i < k; i++) {
+            c[i][i] = scale[i] == 0 ? 0 : 1;
+            for (int j = i + 1; j < k; j++) c[j][i] = c[i][j];
+        }
+        return c;
+    }
+
+    // Adds one transposed time block to rows [from, to) of the correlation sums
+    private static final class RowUpdate extends RecursiveAction {
+        private final double[][] zt, c;
+        private final int steps, from, to;
+
+        RowUpdate(double[][] zt, int steps, double[][] c, int from, int to) {
+            this.zt = zt;
+            this.steps = steps;
+            this.c = c;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_ROWS) {
+                int mid = from + (to - from) / 2 / ROW_BLOCK * ROW_BLOCK;
+                invokeAll(new RowUpdate(zt, steps, c, from, mid), new RowUpdate(zt, steps, c, mid, to));
+                return;
+            }
+            int k = c.length;
+            int i = from;
+            for (; i + ROW_BLOCK <= to; i += ROW_BLOCK) {
+                double[] c0 = c[i], c1 = c[i + 1], c2 = c[i + 2], c3 = c[i + 3];
+                for (int t = 0; t < steps; t++) {
+                    double[] z = zt[t];
+                    double a0 = z[i], a1 = z[i + 1], a2 = z[i + 2], a3 = z[i + 3];
+                    for (int j = i; j < k; j++) {
+                        double zj = z[j];
+                        c0[j] += a0 * zj;
+                        c1[j] += a1 * zj;
+                        c2[j] += a2 * zj;
+                        c3[j] += a3 * zj;
+                    }
+                }
+            }
+            for (; i < to; i++) {
+                double[] ci = c[i];
+                for (int t = 0; t < steps; t++) {
+                    double[] z = zt[t];
+                    double a = z[i];
+                    for (int j = i; j < k; j++) ci[j] += a * z[j];
+                }
+            }
+        }
+    }
+
+    // ---------- Value at risk ----------
+
+    // VaR and CVaR (expected shortfall) at one confidence level, as positive losses
+    public static final class Tail {
+        public final double var;
+        public final double cvar;
+
+        Tail(double var, double cvar) {
+            this.var = var;
+            this.cvar = cvar;
+        }
+    }
+
+    /**
+     * Historical VaR/CVaR of a P&L (or return) series: the loss exceeded in
+     * (1 - confidence) of the observations, and the average loss in that tail.
+     */
+    public static Tail historical(double[] pnl, int n, double confidence) {
+        if (n == 0) return new Tail(0, 0);
+        double[] sorted = Arrays.copyOf(pnl, n);
+        Arrays.sort(sorted);
+        int tail = Math.max(1, (int) Math.floor((1 - confidence) * n));
+        double var = -sorted[tail - 1];
+        double cvar = -sum(sorted, tail) / tail;
+        return new Tail(Math.max(0, var), Math.max(0, cvar));
+    }
+
+    // Normal (variance-covariance) VaR/CVaR from the mean and standard deviation of P&L
+    public static Tail parametric(double mean, double sd, double confidence) {
+        double z = normalQuantile(confidence);
+        double var = z * sd - mean;
+        double cvar = sd * normalDensity(z) / (1 - confidence) - mean;
+        return new Tail(Math.max(0, var), Math.max(0, cvar));
+    }
+
+    public static double normalDensity(double x) {
+        return Math.exp(-0.5 * x * x) / Math.sqrt(2 * Math.PI);
+    }
+
+    /**
+     * Inverse of the standard normal CDF (Acklam's rational approximation,
+     * relative error below 1.2e-9).
+     */
+    public static double normalQuantile(double p) {
+        if (p <= 0) return Double.NEGATIVE_INFINITY;
+        if (p >= 1) return Double.POSITIVE_INFINITY;
+        final double a1 = -3.969683028665376e+01, a2 = 2.209460984245205e+02, a3 = -2.759285104469687e+02,
+                a4 = 1.383577518672690e+02, a5 = -3.066479806614716e+01, a6 = 2.506628277459239e+00;
+        final double b1 = -5.447609879822406e+01, b2 = 1.615858368580409e+02, b3 = -1.556989798598866e+02,
+                b4 = 6.680131188771972e+01, b5 = -1.328068155288572e+01;
+        final double c1 = -7.784894002430293e-03, c2 = -3.223964580411365e-01, c3 = -2.400758277161838e+00,
+                c4 = -2.549732539343734e+00, c5 = 4.374664141464968e+00, c6 = 2.938163982698783e+00;
+        final double d1 = 7.784695709041462e-03, d2 = 3.224671290700398e-01, d3 = 2.445134137142996e+00,
+                d4 = 3.754408661907416e+00;
+        final double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c1 * q + c2) * q + c3) * q + c4) * q + c5) * q + c6) / ((((d1 * q + d2) * q + d3) * q + d4) * q + 1);
+        }
+        if (p > 1 - low) {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c1 * q + c2) * q + c3) * q + c4) * q + c5) * q + c6) / ((((d1 * q + d2) * q + d3) * q + d4) * q + 1);
+        }
+        double q = p - 0.5, r = q * q;
+        return (((((a1 * r + a2) * r + a3) * r + a4) * r + a5) * r + a6) * q
+                / (((((b1 * r + b2) * r + b3) * r + b4) * r + b5) * r + 1);
+    }
+}
@@ -0,0 +1,158 @@
+package analytics;
+
+import engine.PriceTape;
+import model.UserPortfolio;
+
+/**
+ * Risk figures for the whole market and one portfolio, over the ticks on a
+ * PriceTape: every stock's price at the end of the same ticks, so the
+ * returns of two stocks (and of the index) cover the same moments. Built
+ * once by compute() and then read by the UI.
+ *
+ * Betas are measured against the whole-market index on the tape. Without
+ * one, the market return of a tick is the equal-weighted average of the
+ * stock returns. Portfolio VaR/CVaR are in rupees per tick, from the P&L
+ * current holdings would have made on each tick of the window.
+ */
+public class RiskReport {
+
+    public static final double[] CONFIDENCES = {0.95, 0.99};
+    private static final int RECENT_TICKS = 100;    // window of the "recent" volatility
+
+    private final int observations;
+    private final int[] ids;                // row -> symbol id
+    private final int[] rowOf;              // symbol id -> row, or -1
+    private final double[] volatility, recentVolatility, beta;
+    private final double[][] correlation;
+    private final RiskAnalytics.Tail[] historical, parametric;
+    private final double exposure;
+    private final double marketVolatility;
+
+    private RiskReport(int observations, int[] ids, int[] rowOf, double[] volatility, double[] recentVolatility,
+                       double[] beta, double[][] correlation, RiskAnalytics.Tail[] historical,
+                       RiskAnalytics.Tail[] parametric, double exposure, double marketVolatility) {
+        this.observations = observations;
+        this.ids = ids;
+        this.rowOf = rowOf;
+        this.volatility = volatility;
+        this.recentVolatility = recentVolatility;
+        this.beta = beta;
+        this.correlation = correlation;
+        this.historical = historical;
+        this.parametric = parametric;
+        this.exposure = exposure;
+        this.marketVolatility = marketVolatility;
+    }
+
+    // Figures over every tick on the tape (window + 1 prices give `window` returns)
+    public static RiskReport compute(PriceTape.Window tape, UserPortfolio user) {
+        int slots = tape.getSlots();
+        int k = 0;
+        for (int id = 0; id < slots; id++) {
+            if (tape.prices(id) != null) k++;
+        }
+        int n = k == 0 ? 0 : Math.max(0, tape.getTicks() - 1);
+
+        int[] ids = new int[k];
+        int[] rowOf = new int[slots];
+        double[][] returns = new double[k][n];
+        double[] shares = new double[k];
+        double[] last = new double[k];
+        double[][] prices = new double[k][];
+        int row = 0;
+        for (int id = 0; id < slots; id++) {
+            rowOf[id] = -1;
+            double[] p = tape.prices(id);
+            if (p == null) continue;
+            prices[row] = p;
+            if (n > 0) RiskAnalytics.logReturns(p, 0, n + 1, returns[row]);
+            ids[row] = id;
+            rowOf[id] = row;
+            shares[row] = user != null ? user.getPosition(id) : 0;
+            last[row] = p.length > 0 ? p[p.length - 1] : 0;
+            row++;
+        }
+
+        double[] marketReturns = new double[n];
+        double[] levels = tape.marketLevels();
+        if (n > 0 && levels != null) {
+            RiskAnalytics.logReturns(levels, 0, n + 1, marketReturns);
+        } else {
+            for (int i = 0; i < k; i++) {
+                double[] r = returns[i];
+                for (int t = 0; t < n; t++) marketReturns[t] += r[t];
+            }
+            for (int t = 0; t < n; t++) marketReturns[t] /= Math.max(1, k);
+        }
+
+        double[] volatility = new double[k], recent = new double[k], beta = new double[k];
+        int recentN = Math.min(RECENT_TICKS, n);
+        double[] tail = new double[recentN];
+        for (int i = 0; i < k; i++) {
+            volatility[i] = RiskAnalytics.stdDev(returns[i], n);
+            System.arraycopy(returns[i], n - recentN, tail, 0, recentN);
+            recent[i] = RiskAnalytics.stdDev(tail, recentN);
+            beta[i] = RiskAnalytics.beta(returns[i], marketReturns, n);
+        }
+        double[][] correlation = RiskAnalytics.correlationMatrix(returns, n);
+
+        // P&L of today's holdings on each tick of the window (price changes, not returns)
+        double[] pnl = new double[n];
+        double exposure = 0;
+        for (int i = 0; i < k; i++) {
+            double q = shares[i];
+            if (q == 0) continue;
+            exposure += q * last[i];
+            double[] p = prices[i];
+            for (int t = 0; t < n; t++) pnl[t] += q * (p[t + 1] - p[t]);
+        }
+        RiskAnalytics.Tail[] historical = new RiskAnalytics.Tail[CONFIDENCES.length];
+        RiskAnalytics.Tail[] parametric = new RiskAnalytics.Tail[CONFIDENCES.length];
+        double mean = RiskAnalytics.mean(pnl, n), sd = RiskAnalytics.stdDev(pnl, n);
+        for (int c = 0; c < CONFIDENCES.length; c++) {
+            historical[c] = RiskAnalytics.historical(pnl, n, CONFIDENCES[c]);
+            parametric[c] = RiskAnalytics.parametric(mean, sd, CONFIDENCES[c]);
+        }
+        return new RiskReport(n, ids, rowOf, volatility, recent, beta, correlation, historical, parametric, exposure,
+                RiskAnalytics.stdDev(marketReturns, n));
+    }
+
+    // ---------- Per stock ----------
+
+    public int getObservations() { return observations; }
+    public boolean covers(int symbolId) { return symbolId >= 0 && symbolId < rowOf.length && rowOf[symbolId] >= 0; }
+
+    // Standard deviation of log returns per tick, over the window and over the last RECENT_TICKS
+    public double volatility(int symbolId) { return volatility[rowOf[symbolId]]; }
+    public double recentVolatility(int symbolId) { return recentVolatility[rowOf[symbolId]]; }
+    public double beta(int symbolId) { return beta[rowOf[symbolId]]; }
+    public double getMarketVolatility() { return marketVolatility; }
+
+    public double correlation(int symbolA, int symbolB) {
+        return correlation[rowOf[symbolA]][rowOf[symbolB]];
+    }
+
+    // The other symbols ordered by correlation with symbolId, highest first (at most `limit`)
+    public int[] mostCorrelated(int symbolId, int limit) {
+        double[] row = correlation[rowOf[symbolId]];
+        int m = Math.min(limit, ids.length - 1);
+        int[] best = new int[Math.max(0, m)];
+        boolean[] taken = new boolean[ids.length];
+        taken[rowOf[symbolId]] = true;
+        for (int b = 0; b < best.length; b++) {
+            int pick = -1;
+            for (int j = 0; j < row.length; j++) {
+                if (!taken[j] && (pick < 0 || row[j] > row[pick])) pick = j;
+            }
+            taken[pick] = true;
+            best[b] = ids[pick];
+        }
+        return best;
+    }
+
+    // ---------- Portfolio ----------
+
+    public double getExposure() { return exposure; }
+    public RiskAnalytics.Tail historical(int confidenceIndex) { return historical[confidenceIndex]; }
+    public RiskAnalytics.Tail parametric(int confidenceIndex) { return parametric[confidenceIndex]; }
+}
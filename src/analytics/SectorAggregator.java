@@ -0,0 +1,245 @@
+package analytics;
+
+import engine.MarketDataBus;
+import engine.MarketEvent;
+import engine.MarketIndices;
+import model.MarketState;
+import model.Stock;
+import model.UserPortfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-sector figures kept up to date from the market data bus: market cap
+ * and day return, traded volume and turnover, and the user's exposure.
+ *
+ * The aggregator has its own bus subscription, and drain() folds in what
+ * arrived since the last call. Every event is O(1):
+ *   TICK   cap and exposure of the stock's sector move by shares * delta
+ *   TRADE  volume and turnover of the sector grow
+ *   BAR    day close: the stock's close becomes its reference price, and
+ *          its volume for the day is taken out of the sector
+ * If the subscription fell behind and dropped events, prices, caps and
+ * exposure are recomputed from the market instead (resync, O(symbols));
+ * the volume of the dropped trades is lost. Positions change only through
+ * trades, so drain() re-reads them when a batch had any. The market and
+ * user come from suppliers, so an undo that swaps them in the simulator
+ * state is picked up: drain() resyncs when either is a new instance.
+ *
+ * Both the sectors and the symbols that changed since the last
+ * takeChanged*() call are tracked, so a view can redraw just those.
+ * Not thread-safe: drain and read from one thread (the EDT for the heatmap).
+ * Cap weights use the same synthetic share counts as MarketIndices.
+ */
+public class SectorAggregator implements MarketDataBus.EventHandler {
+
+    private final Supplier<MarketState> markets;
+    private final Supplier<UserPortfolio> users;
+    private MarketState market;            // as last seen
+    private UserPortfolio user;
+    private final MarketDataBus.Subscription feed;
+    private long dropped;
+    private boolean traded;
+
+    private final String[] sectors;
+    private final int[] sectorOf;          // symbol id -> sector, or -1
+    private final double[] shares;
+    private final double[] last;           // price last seen
+    private final double[] reference;      // previous close
+    private final double[] position;       // user's shares
+    private final long[] dayVolume;
+    private final double[] dayTurnover;
+
+    private final double[] cap, capAtClose, exposure, turnover;
+    private final long[] volume;
+    private final int[] members;
+
+    private final boolean[] sectorChanged, symbolChanged;
+    private final int[] changedSymbols;
+    private int changedSymbolCount;
+
+    public SectorAggregator(Supplier<MarketState> markets, Supplier<UserPortfolio> users, MarketDataBus bus) {
+        this.markets = markets;
+        this.users = users;
+        this.market = markets.get();
+        this.user = users.get();
+        this.feed = bus.subscribe();
+        int n = market.getStockCount();
+
+        Map<String, Integer> index = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        for (Stock s : market.getStocks()) names.add(s.getSector());
+        names.sort(null);
+        for (String name : names) index.putIfAbsent(name, index.size());
+        this.sectors = index.keySet().toArray(new String[0]);
+
+        sectorOf = new int[n];
+        shares = new double[n];
+        last = new double[n];
+        reference = new double[n];
+        position = new double[n];
+        dayVolume = new long[n];
+        dayTurnover = new double[n];
+        symbolChanged = new boolean[n];
+        changedSymbols = new int[n];
+        Arrays.fill(sectorOf, -1);
+        for (int id = 0; id < n; id++) {
+            Stock s = market.getStock(id);
+            if (s == null) continue;
+            sectorOf[id] = index.get(s.getSector());
+            shares[id] = MarketIndices.syntheticShares(s.getSymbol());
+        }
+
+        int k = sectors.length;
+        cap = new double[k];
+        capAtClose = new double[k];
+        exposure = new double[k];
+        turnover = new double[k];
+        volume = new long[k];
+        members = new int[k];
+        sectorChanged = new boolean[k];
+        resync();
+    }
+
+    // ---------- Updates ----------
+
+    // Fold in the bus events published since the last call; returns how many
+    public int drain() {
+        int n = feed.poll(this, Integer.MAX_VALUE);
+        MarketState m = markets.get();
+        UserPortfolio u = users.get();
+        if (m != market || u != user) {
+            market = m;
+            user = u;
+            dropped = feed.getDropped();
+            resync();
+        } else if (feed.getDropped() != dropped) {
+            dropped = feed.getDropped();
+            resync();
+        } else if (traded) {
+            refreshPositions();
+        }
+        traded = false;
+        return n;
+    }
+
+    @Override
+    public void onEvent(MarketEvent e) {
+        int id = e.symbolId;
+        if (id < 0 || id >= sectorOf.length || sectorOf[id] < 0) return;
+        int sec = sectorOf[id];
+        switch (e.type) {
+            case MarketEvent.TICK: {
+                double delta = e.price - last[id];
+                if (delta == 0) return;
+                last[id] = e.price;
+                cap[sec] += shares[id] * delta;
+                exposure[sec] += position[id] * delta;
+                break;
+            }
+            case MarketEvent.TRADE:
+                dayVolume[id] += e.quantity;
+                dayTurnover[id] += e.quantity * e.price;
+                volume[sec] += e.quantity;
+                turnover[sec] += e.quantity * e.price;
+                traded = true;
+                break;
+            case MarketEvent.BAR:
+                capAtClose[sec] += shares[id] * (e.price - reference[id]);
+                reference[id] = e.price;
+                volume[sec] -= dayVolume[id];
+                turnover[sec] -= dayTurnover[id];
+                dayVolume[id] = 0;
+                dayTurnover[id] = 0;
+                break;
+            default:
+                return;
+        }
+        markChanged(id, sec);
+    }
+
+    // Re-read the user's positions; O(symbols)
+    public void refreshPositions() {
+        for (int id = 0; id < sectorOf.length; id++) {
+            int sec = sectorOf[id];
+            if (sec < 0) continue;
+            double q = user != null ? user.getPosition(id) : 0;
+            if (q == position[id]) continue;
+            exposure[sec] += (q - position[id]) * last[id];
+            position[id] = q;
+            markChanged(id, sec);
+        }
+    }
+
+    // Recompute everything from current prices (start, undo, or after dropped events)
+    public void resync() {
+        Arrays.fill(cap, 0);
+        Arrays.fill(capAtClose, 0);
+        Arrays.fill(exposure, 0);
+        Arrays.fill(members, 0);
+        for (int id = 0; id < sectorOf.length; id++) {
+            int sec = sectorOf[id];
+            Stock s = market.getStock(id);
+            if (sec < 0 || s == null) continue;
+            last[id] = s.getPrice();
+            reference[id] = s.getPrevClose();
+            position[id] = user != null ? user.getPosition(id) : 0;
+            cap[sec] += shares[id] * last[id];
+            capAtClose[sec] += shares[id] * reference[id];
+            exposure[sec] += position[id] * last[id];
+            members[sec]++;
+            markChanged(id, sec);
+        }
+    }
+
+    private void markChanged(int id, int sec) {
+        sectorChanged[sec] = true;
+        if (!symbolChanged[id]) {
+            symbolChanged[id] = true;
+            changedSymbols[changedSymbolCount++] = id;
+        }
+    }
+
+    // ---------- Queries ----------
+
+    public int getSectorCount() { return sectors.length; }
+    public String getSectorName(int sec) { return sectors[sec]; }
+    public int sectorOf(int symbolId) { return symbolId < sectorOf.length ? sectorOf[symbolId] : -1; }
+    public int getMembers(int sec) { return members[sec]; }
+    public double getCap(int sec) { return cap[sec]; }
+    public double getDayReturn(int sec) { return capAtClose[sec] > 0 ? cap[sec] / capAtClose[sec] - 1 : 0; }
+    public long getVolume(int sec) { return volume[sec]; }
+    public double getTurnover(int sec) { return turnover[sec]; }
+    public double getExposure(int sec) { return exposure[sec]; }
+
+    // Per symbol, as seen by the aggregator
+    public double getCapOf(int symbolId) { return shares[symbolId] * last[symbolId]; }
+    public double getDayReturnOf(int symbolId) {
+        return reference[symbolId] > 0 ? last[symbolId] / reference[symbolId] - 1 : 0;
+    }
+
+    // Copies the ids of symbols changed since the last call into out (sized getSymbolCapacity()); returns the count
+    public int takeChangedSymbols(int[] out) {
+        int n = changedSymbolCount;
+        for (int i = 0; i < n; i++) {
+            out[i] = changedSymbols[i];
+            symbolChanged[out[i]] = false;
+        }
+        changedSymbolCount = 0;
+        return n;
+    }
+
+    public int getSymbolCapacity() { return sectorOf.length; }
+
+    // True if the sector changed since the last call for it
+    public boolean takeSectorChanged(int sec) {
+        boolean c = sectorChanged[sec];
+        sectorChanged[sec] = false;
+        return c;
+    }
+}
@@ -1,17 +1,42 @@
 package app;
 
+import metrics.Startup;
+import model.DBHelper;
+import ui.Icons;
 import ui.LoginFrame;
 import javax.swing.*;
 
 public class Main {
+
+    // Training run for the class-data-sharing archive (scripts/appcds.sh): exit once the login window is up
+    private static final boolean EXIT_AFTER_STARTUP = Boolean.getBoolean("marketsim.startup.exit");
+
     public static void main(String[] args) {
+        Startup.mark("main");
+
+        // SQLite driver + schema and icon decoding run beside the UI; the first query waits for the DB
+        long dbStart = System.nanoTime();
+        DBHelper.initAsync().thenRun(() -> Startup.recordSince("db-init", dbStart));
+        Icons.preloadAsync();
 
         // Try setting system Look & Feel (universal, safe)
+        long t0 = System.nanoTime();
         try {
             UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
         } catch (Exception ignored) {}
+        Startup.recordSince("look-and-feel", t0);
 
         // Launch Login UI on Event Dispatch Thread
-        SwingUtilities.invokeLater(LoginFrame::new);
+        SwingUtilities.invokeLater(() -> {
+            long t = System.nanoTime();
+            new LoginFrame();
+            Startup.recordSince("login-frame", t);
+            Startup.mark("login-shown");
+            if (EXIT_AFTER_STARTUP) {
+                DBHelper.initAsync().join();
+                System.out.println(Startup.summary());
+                System.exit(0);
+            }
+        });
     }
 }
@@ -0,0 +1,127 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorded OHLCV bars, one column-oriented series per symbol: parallel
+ * primitive arrays for time, open, high, low, close and volume, grown by
+ * doubling. A daily file is one bar per symbol per day; a tick file is one
+ * bar per trade with open = high = low = close. Times are epoch millis (UTC).
+ *
+ * Filled by OhlcvCsvReader; finish() puts any series that arrived out of
+ * order into time order. Not thread-safe while being filled.
+ */
+public class BarStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    public static final class Series {
+        private final String symbol;
+        private String sector, industry;
+        private boolean classified;
+        private long[] time = new long[INITIAL_CAPACITY];
+        private double[] open = new double[INITIAL_CAPACITY];
+        private double[] high = new double[INITIAL_CAPACITY];
+        private double[] low = new double[INITIAL_CAPACITY];
+        private double[] close = new double[INITIAL_CAPACITY];
+        private long[] volume = new long[INITIAL_CAPACITY];
+        private int size;
+        private boolean sorted = true;
+
+        Series(String symbol) { this.symbol = symbol; }
+
+        void add(long t, double o, double h, double l, double c, long v) {
+            int n = size;
+            if (n == time.length) grow(n * 2);
+            if (n > 0 && t < time[n - 1]) sorted = false;
+            time[n] = t;
+            open[n] = o;
+            high[n] = h;
+            low[n] = l;
+            close[n] = c;
+            volume[n] = v;
+            size = n + 1;
+        }
+
+        private void grow(int capacity) {
+            time = Arrays.copyOf(time, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+        }
+
+        // Stable sort by time (only for files that are not in time order per symbol)
+        private void sortByTime() {
+            if (sorted) return;
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(time[a], time[b]));
+            long[] t = new long[size], v = new long[size];
+            double[] o = new double[size], h = new double[size], l = new double[size], c = new double[size];
+            for (int i = 0; i < size; i++) {
+                int j = order[i];
+                t[i] = time[j]; o[i] = open[j]; h[i] = high[j]; l[i] = low[j]; c[i] = close[j]; v[i] = volume[j];
+            }
+            time = t; open = o; high = h; low = l; close = c; volume = v;
+            sorted = true;
+        }
+
+        public String getSymbol() { return symbol; }
+        public String getSector() { return sector; }
+        public String getIndustry() { return industry; }
+        boolean isClassified() { return classified; }
+        void classify(String sector, String industry) {
+            this.sector = sector;
+            this.industry = industry;
+            classified = true;
+        }
+
+        public int size() { return size; }
+        public long time(int i) { return time[i]; }
+        public double open(int i) { return open[i]; }
+        public double high(int i) { return high[i]; }
+        public double low(int i) { return low[i]; }
+        public double close(int i) { return close[i]; }
+        public long volume(int i) { return volume[i]; }
+
+        // Backing array of closes, valid up to size(); do not modify
+        public double[] closes() { return close; }
+    }
+
+    private final List<Series> series = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private long rows;
+
+    // Id of the symbol's series, created if new
+    int idOf(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) return id;
+        series.add(new Series(symbol));
+        ids.put(symbol, series.size() - 1);
+        return series.size() - 1;
+    }
+
+    void add(int id, long t, double o, double h, double l, double c, long v) {
+        series.get(id).add(t, o, h, l, c, v);
+        rows++;
+    }
+
+    // Call once everything is read
+    void finish() {
+        for (Series s : series) s.sortByTime();
+    }
+
+    public int getSymbolCount() { return series.size(); }
+    public Series get(int id) { return series.get(id); }
+    public Series get(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? series.get(id) : null;
+    }
+    public long getRows() { return rows; }
+}
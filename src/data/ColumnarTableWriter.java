@@ -0,0 +1,213 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Columnar binary table: rows are collected into batches of BATCH_ROWS and
+ * each batch is written column by column. Column buffers use the Arrow
+ * columnar layout (little-endian, 8-byte aligned; strings as int32 offsets
+ * plus UTF-8 bytes; no nulls, so no validity bitmaps), so a reader can
+ * hand them to Arrow or numpy without conversion. The framing around them
+ * is this simple one, not Arrow IPC's flatbuffer messages:
+ *
+ *   file   = "MSIMCOL1" schema batch* end
+ *   schema = int32 columns, then per column: int32 type (TableSink.Type
+ *            ordinal), int32 name length, name (UTF-8); padded to 8 bytes
+ *   batch  = int64 rows, then per column its buffers, each written as
+ *            int64 length, bytes, zero padding to 8 bytes:
+ *              INT64, FLOAT64   values
+ *              UTF8             offsets (rows + 1 int32), data
+ *   end    = int64 -1, int64 total rows
+ *
+ * Memory is one batch, whatever the table size.
+ */
+public class ColumnarTableWriter implements TableSink {
+
+    public static final byte[] MAGIC = "MSIMCOL1".getBytes(StandardCharsets.US_ASCII);
+    private static final int BATCH_ROWS = 1 << 16;
+    private static final int BUFFER = 1 << 20;
+
+    private final FileChannel ch;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+    private final Type[] types;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final int[][] offsets;
+    private final byte[][] chars;
+    private final String[] lastString;  // per column: last value and its bytes, so
+    private final byte[][] lastBytes;   // a repeated symbol is not re-encoded
+    private int batchRows;
+    private long rows;
+
+    public ColumnarTableWriter(Path file, String[] names, Type[] types) throws IOException {
+        this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.types = types;
+        int k = types.length;
+        longs = new long[k][];
+        doubles = new double[k][];
+        offsets = new int[k][];
+        chars = new byte[k][];
+        lastString = new String[k];
+        lastBytes = new byte[k][];
+        for (int c = 0; c < k; c++) {
+            switch (types[c]) {
+                case INT64: longs[c] = new long[BATCH_ROWS]; break;
+                case FLOAT64: doubles[c] = new double[BATCH_ROWS]; break;
+                case UTF8: offsets[c] = new int[BATCH_ROWS + 1]; chars[c] = new byte[BATCH_ROWS * 8]; break;
+            }
+        }
+
+        buf.put(MAGIC);
+        buf.putInt(k);
+        for (int c = 0; c < k; c++) {
+            byte[] name = names[c].getBytes(StandardCharsets.UTF_8);
+            buf.putInt(types[c].ordinal());
+            buf.putInt(name.length);
+            buf.put(name);
+        }
+        pad();
+    }
+
+    @Override public void setLong(int column, long value) { longs[column][batchRows] = value; }
+    @Override public void setDouble(int column, double value) { doubles[column][batchRows] = value; }
+    @Override public long getRows() { return rows; }
+
+    @Override
+    public void setString(int column, String value) {
+        if (value == null) value = "";
+        byte[] b = lastBytes[column];
+        if (value != lastString[column]) {
+            b = value.getBytes(StandardCharsets.UTF_8);
+            lastString[column] = value;
+            lastBytes[column] = b;
+        }
+        int start = offsets[column][batchRows];
+        if (start + b.length > chars[column].length) {
+            chars[column] = Arrays.copyOf(chars[column], Math.max(chars[column].length * 2, start + b.length));
+        }
+        System.arraycopy(b, 0, chars[column], start, b.length);
+        offsets[column][batchRows + 1] = start + b.length;
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        batchRows++;
+        rows++;
+        if (batchRows == BATCH_ROWS) writeBatch();
+        else carryOffsets();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (batchRows > 0) writeBatch();
+            ensure(16);
+            buf.putLong(-1);
+            buf.putLong(rows);
+            flush();
+        } finally {
+            ch.close();
+        }
+    }
+
+    // Next row's strings start empty, so a row that sets none gets ""
+    private void carryOffsets() {
+        for (int c = 0; c < types.length; c++) {
+            if (types[c] == Type.UTF8) offsets[c][batchRows + 1] = offsets[c][batchRows];
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        int n = batchRows;
+        ensure(8);
+        buf.putLong(n);
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case INT64: {
+                    putLength(n * 8L);
+                    long[] v = longs[c];
+                    for (int i = 0; i < n; ) {
+                        ensure(8);
+                        int m = Math.min(n - i, buf.remaining() / 8);
+                        buf.asLongBuffer().put(v, i, m);
+                        buf.position(buf.position() + m * 8);
+                        i += m;
+                    }
+                    break;
+                }
+                case FLOAT64: {
+                    putLength(n * 8L);
+                    double[] v = doubles[c];
+                    for (int i = 0; i < n; ) {
+                        ensure(8);
+                        int m = Math.min(n - i, buf.remaining() / 8);
+                        buf.asDoubleBuffer().put(v, i, m);
+                        buf.position(buf.position() + m * 8);
+                        i += m;
+                    }
+                    break;
+                }
+                case UTF8: {
+                    int[] off = offsets[c];
+                    putLength((n + 1) * 4L);
+                    for (int i = 0; i <= n; ) {
+                        ensure(4);
+                        int m = Math.min(n + 1 - i, buf.remaining() / 4);
+                        buf.asIntBuffer().put(off, i, m);
+                        buf.position(buf.position() + m * 4);
+                        i += m;
+                    }
+                    pad();
+                    putLength(off[n]);
+                    putBytes(chars[c], off[n]);
+                    pad();
+                    break;
+                }
+            }
+        }
+        batchRows = 0;
+        for (int c = 0; c < types.length; c++) {
+            if (types[c] == Type.UTF8) { offsets[c][0] = 0; offsets[c][1] = 0; }
+        }
+    }
+
+    private void putLength(long length) throws IOException {
+        ensure(8);
+        buf.putLong(length);
+    }
+
+    private void putBytes(byte[] b, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            if (!buf.hasRemaining()) flush();
+            int n = Math.min(buf.remaining(), len - off);
+            buf.put(b, off, n);
+            off += n;
+        }
+    }
+
+    // Zero bytes up to the next multiple of 8 in the file
+    private void pad() throws IOException {
+        int n = (int) ((8 - (ch.position() + buf.position()) % 8) % 8);
+        ensure(n);
+        for (int i = 0; i < n; i++) buf.put((byte) 0);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buf.remaining() < n) flush();
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
@@ -0,0 +1,130 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CSV table written through a FileChannel from one direct buffer. Numbers
+ * are formatted straight into the buffer (integers digit by digit, doubles
+ * with Double.toString); strings are quoted only when they need it.
+ */
+public class CsvTableWriter implements TableSink {
+
+    private static final int BUFFER = 1 << 20;
+
+    private final FileChannel ch;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+    private final Type[] types;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+    private final byte[] digits = new byte[20];
+    private long rows;
+
+    public CsvTableWriter(Path file, String[] names, Type[] types) throws IOException {
+        this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.types = types;
+        this.longs = new long[types.length];
+        this.doubles = new double[types.length];
+        this.strings = new String[types.length];
+        for (int c = 0; c < names.length; c++) {
+            if (c > 0) put((byte) ',');
+            putString(names[c]);
+        }
+        put((byte) '\n');
+    }
+
+    @Override public void setLong(int column, long value) { longs[column] = value; }
+    @Override public void setDouble(int column, double value) { doubles[column] = value; }
+    @Override public void setString(int column, String value) { strings[column] = value; }
+    @Override public long getRows() { return rows; }
+
+    @Override
+    public void endRow() throws IOException {
+        for (int c = 0; c < types.length; c++) {
+            if (c > 0) put((byte) ',');
+            switch (types[c]) {
+                case INT64: putLong(longs[c]); break;
+                case FLOAT64: putDouble(doubles[c]); break;
+                case UTF8: putString(strings[c]); break;
+            }
+        }
+        put((byte) '\n');
+        rows++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            ch.close();
+        }
+    }
+
+    // ---------- Formatting ----------
+
+    private void putLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) { putAscii(Long.toString(v)); return; }
+        if (v < 0) { put((byte) '-'); v = -v; }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (buf.remaining() < n) flush();
+        while (n > 0) buf.put(digits[--n]);
+    }
+
+    private void putDouble(double v) throws IOException {
+        if (v == (long) v && Math.abs(v) < 1e15) putLong((long) v);    // whole prices: no ".0"
+        else if (!Double.isNaN(v)) putAscii(Double.toString(v));
+    }
+
+    private void putString(String s) throws IOException {
+        if (s == null) return;
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char ch = s.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            putBytes(s.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        put((byte) '"');
+        putBytes(s.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        put((byte) '"');
+    }
+
+    private void putAscii(String s) throws IOException {
+        if (buf.remaining() < s.length()) flush();
+        for (int i = 0; i < s.length(); i++) buf.put((byte) s.charAt(i));
+    }
+
+    private void putBytes(byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            if (!buf.hasRemaining()) flush();
+            int n = Math.min(buf.remaining(), b.length - off);
+            buf.put(b, off, n);
+            off += n;
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buf.hasRemaining()) flush();
+        buf.put(b);
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package data;
+
+import model.MarketState;
+import model.Stock;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A market built from recorded data instead of the synthetic universe.
+ *
+ * Configured with system properties:
+ *   marketsim.history.file    CSV or CSV.gz of bars or ticks (see OhlcvCsvReader)
+ *   marketsim.history.mode    load:   every stock starts with the file's whole
+ *                                     history and the market carries on from
+ *                                     its last close (default)
+ *                             replay: stocks start at their first recorded
+ *                                     price and a ReplayDriver plays the file
+ *                                     through the engine
+ *   marketsim.history.speed   replay steps per second (default 10)
+ */
+public final class HistoricalMarket {
+
+    private HistoricalMarket() {}
+
+    public static String getFile() { return System.getProperty("marketsim.history.file"); }
+    public static boolean isReplay() { return "replay".equalsIgnoreCase(System.getProperty("marketsim.history.mode", "load")); }
+    public static double getSpeed() { return Double.parseDouble(System.getProperty("marketsim.history.speed", "10")); }
+
+    // The configured file, read; null if none is configured or it can't be read
+    public static BarStore readIfConfigured() {
+        String file = getFile();
+        if (file == null || file.isBlank()) return null;
+        try {
+            BarStore store = OhlcvCsvReader.read(Paths.get(file));
+            if (store.getRows() > 0) return store;
+            System.err.println("No usable rows in " + file);
+            return null;
+        } catch (IOException e) {
+            System.err.println("Could not import " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One stock per recorded symbol, in file order. With fullHistory every
+     * close becomes part of the stock's history (price = last close,
+     * previous close = the one before); otherwise the stock holds just its
+     * first recorded open, where a replay starts.
+     */
+    public static MarketState newMarket(BarStore store, boolean fullHistory) {
+        MarketState market = new MarketState();
+        for (int id = 0; id < store.getSymbolCount(); id++) {
+            BarStore.Series s = store.get(id);
+            if (s.size() == 0) continue;
+            double first = fullHistory ? s.close(0) : s.open(0);
+            Stock stock = new Stock(s.getSymbol(), s.getSymbol(), first, s.getSector(), s.getIndustry());
+            if (fullHistory) {
+                stock.getHistory().clear();
+                stock.getHistory().ensureCapacity(s.size());
+                stock.appendPrices(s.closes(), s.size());
+                if (s.size() > 1) stock.setPrevClose(s.close(s.size() - 2));
+            }
+            market.addStock(stock);
+        }
+        market.setDayIndex(0);
+        market.setLastTickTime(System.currentTimeMillis());
+        return market;
+    }
+}
@@ -0,0 +1,392 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for OHLCV / tick CSV files, plain or gzip (".gz").
+ *
+ * The file is read BUFFER bytes at a time through its FileChannel (gzip
+ * files through an inflater) into one reusable byte array, and parsed in
+ * place: numbers and dates are decoded straight from the bytes, and no
+ * String or object is made per row (a symbol's String is made once, the
+ * first time the symbol is seen, through a byte-keyed hash table). A line
+ * cut by the end of the buffer is moved to its front and finished with the
+ * next read. Parsing a plain byte[] rather than a mapped ByteBuffer keeps
+ * every byte access an inlined array load, several times faster here.
+ *
+ * Columns come from the header line, by name (case-insensitive):
+ *   symbol | ticker               required
+ *   date | time | timestamp       yyyy-MM-dd[ HH:mm[:ss[.SSS]]], yyyyMMdd,
+ *                                 or epoch seconds / millis
+ *   close | price | last          required
+ *   open, high, low               optional (default: the close)
+ *   volume | qty | quantity       optional
+ *   sector, industry              optional, first value per symbol kept
+ * Without a header the order is symbol,date,open,high,low,close,volume.
+ * Fields may be double-quoted but not contain commas. Rows without a
+ * readable close are counted as skipped.
+ */
+public class OhlcvCsvReader {
+
+    private static final int BUFFER = 4 << 20;
+    private static final int MAX_LINE_BUFFER = 256 << 20;
+
+    private static final int SYMBOL = 0, TIME = 1, OPEN = 2, HIGH = 3, LOW = 4, CLOSE = 5, VOLUME = 6,
+            SECTOR = 7, INDUSTRY = 8, IGNORED = -1;
+    private static final double[] POW10 = new double[19];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final BarStore store;
+    private int[] columns = {SYMBOL, TIME, OPEN, HIGH, LOW, CLOSE, VOLUME};
+    private boolean headerDone;
+    private long bytes, skipped;
+
+    // symbol bytes -> BarStore id, open addressing
+    private byte[][] keys = new byte[1024][];
+    private int[] keyIds = new int[1024];
+    private int keyCount;
+
+    // header fields, and the sector / industry fields of the row being parsed: [start, end)
+    private final int[] fieldStart = new int[64], fieldEnd = new int[64];
+    private double number;      // result of the last parseNumber()
+
+    public OhlcvCsvReader(BarStore store) {
+        this.store = store;
+    }
+
+    // Reads a whole file into a new store and prints a one-line summary
+    public static BarStore read(Path file) throws IOException {
+        BarStore store = new BarStore();
+        OhlcvCsvReader reader = new OhlcvCsvReader(store);
+        long t0 = System.nanoTime();
+        reader.readFile(file);
+        store.finish();
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("Imported %,d bars for %,d symbols from %s in %.2f s (%.0f MB/s)%s%n",
+                store.getRows(), store.getSymbolCount(), file.getFileName(), secs,
+                reader.bytes / 1e6 / Math.max(secs, 1e-9),
+                reader.skipped > 0 ? String.format(", %,d rows skipped", reader.skipped) : "");
+        return store;
+    }
+
+    public long getBytesRead() { return bytes; }
+    public long getSkippedRows() { return skipped; }
+
+    public void readFile(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                try (InputStream in = new GZIPInputStream(Channels.newInputStream(ch), 1 << 16)) {
+                    read((b, off, len) -> in.read(b, off, len));
+                }
+            } else {
+                read((b, off, len) -> ch.read(ByteBuffer.wrap(b, off, len)));
+            }
+        }
+    }
+
+    private interface Source {
+        int read(byte[] b, int off, int len) throws IOException;   // -1 at the end
+    }
+
+    // Fills the buffer, parses its complete lines, moves the cut-off line to the front, repeats
+    private void read(Source in) throws IOException {
+        byte[] buf = new byte[BUFFER];
+        int filled = 0;
+        while (true) {
+            int r = in.read(buf, filled, buf.length - 1 - filled);     // room for a final '\n'
+            boolean last = r < 0;
+            if (r > 0) filled += r;
+            if (!last && filled < buf.length - 1) continue;
+            if (last && filled > 0 && buf[filled - 1] != '\n') buf[filled++] = '\n';
+            int used = parseLines(buf, filled);
+            bytes += used;
+            if (last) break;
+            if (used == 0) {
+                if (buf.length >= MAX_LINE_BUFFER) throw new IOException("Line longer than " + buf.length + " bytes");
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                continue;
+            }
+            System.arraycopy(buf, used, buf, 0, filled - used);
+            filled -= used;
+        }
+    }
+
+    // Parses the complete lines in buf[0, to); returns the number of bytes consumed
+    private int parseLines(byte[] buf, int to) {
+        int i = 0;
+        if (!headerDone) {
+            int end = i;
+            while (end < to && buf[end] != '\n') end++;
+            if (end == to) return 0;
+            headerDone = true;
+            if (isHeader(buf, 0, end)) i = end + 1;
+        }
+        while (i < to) {
+            int next = parseRow(buf, i, to);
+            if (next < 0) break;                // cut off: next read
+            i = next;
+        }
+        return i;
+    }
+
+    /**
+     * Parses the line starting at i in one pass, each field decoded by its
+     * column's parser as it is scanned; returns the start of the next line,
+     * or -1 if the line is not complete before `to` (nothing is stored then).
+     */
+    private int parseRow(byte[] buf, int i, int to) {
+        if (buf[i] == '\n' || buf[i] == '\r') return i + 1 + (buf[i] == '\r' && i + 1 < to && buf[i + 1] == '\n' ? 1 : 0);
+        int symbolStart = -1, symbolEnd = -1, sectorAt = -1, industryAt = -1;
+        long time = 0, volume = 0;
+        double open = Double.NaN, high = Double.NaN, low = Double.NaN, close = Double.NaN;
+        int[] cols = columns;
+        for (int f = 0; ; f++) {
+            int start = i;
+            switch (f < cols.length ? cols[f] : IGNORED) {
+                case SYMBOL: i = skipField(buf, i, to); symbolStart = start; symbolEnd = i; break;
+                case TIME: i = skipField(buf, i, to); time = parseTime(buf, trimStart(buf, start, i), trimEnd(buf, start, i)); break;
+                case OPEN: i = parseNumber(buf, i, to); open = number; break;
+                case HIGH: i = parseNumber(buf, i, to); high = number; break;
+                case LOW: i = parseNumber(buf, i, to); low = number; break;
+                case CLOSE: i = parseNumber(buf, i, to); close = number; break;
+                case VOLUME: i = parseNumber(buf, i, to); volume = (long) number; break;
+                case SECTOR: sectorAt = f; i = skipField(buf, i, to); fieldStart[f] = start; fieldEnd[f] = i; break;
+                case INDUSTRY: industryAt = f; i = skipField(buf, i, to); fieldStart[f] = start; fieldEnd[f] = i; break;
+                default: i = skipField(buf, i, to); break;
+            }
+            if (i >= to) return -1;
+            if (buf[i++] == '\n') break;
+        }
+
+        int id = symbolStart < 0 ? -1 : symbolId(buf, trimStart(buf, symbolStart, symbolEnd), trimEnd(buf, symbolStart, symbolEnd));
+        if (id < 0 || !(close > 0) || time == Long.MIN_VALUE) {
+            skipped++;
+            return i;
+        }
+        if (!(open > 0)) open = close;
+        if (!(high > 0)) high = Math.max(open, close);
+        if (!(low > 0)) low = Math.min(open, close);
+        store.add(id, time, open, high, low, close, volume);
+        if ((sectorAt >= 0 || industryAt >= 0) && !store.get(id).isClassified()) {
+            store.get(id).classify(sectorAt >= 0 ? text(buf, sectorAt) : null, industryAt >= 0 ? text(buf, industryAt) : null);
+        }
+        return i;
+    }
+
+    private static int skipField(byte[] buf, int i, int to) {
+        while (i < to && buf[i] != ',' && buf[i] != '\n') i++;
+        return i;
+    }
+
+    // Field bounds without surrounding spaces, quotes and a trailing '\r'
+    private static int trimStart(byte[] buf, int s, int e) {
+        while (s < e && (buf[s] == ' ' || buf[s] == '"')) s++;
+        return s;
+    }
+
+    private static int trimEnd(byte[] buf, int s, int e) {
+        while (e > s && (buf[e - 1] == ' ' || buf[e - 1] == '"' || buf[e - 1] == '\r')) e--;
+        return e;
+    }
+
+    // A first line naming at least one known column is a header; it sets the column mapping
+    private boolean isHeader(byte[] buf, int from, int to) {
+        int fields = 0, s = from;
+        for (int i = from; i <= to && fields < fieldStart.length; i++) {
+            if (i == to || buf[i] == ',') {
+                fieldStart[fields] = trimStart(buf, s, i);
+                fieldEnd[fields] = trimEnd(buf, s, i);
+                fields++;
+                s = i + 1;
+            }
+        }
+        int[] mapped = new int[fields];
+        boolean any = false;
+        for (int f = 0; f < fields; f++) {
+            String name = text(buf, f).toLowerCase();
+            switch (name) {
+                case "symbol": case "ticker": case "sym": mapped[f] = SYMBOL; break;
+                case "date": case "time": case "timestamp": case "datetime": mapped[f] = TIME; break;
+                case "open": mapped[f] = OPEN; break;
+                case "high": mapped[f] = HIGH; break;
+                case "low": mapped[f] = LOW; break;
+                case "close": case "price": case "last": case "adj_close": mapped[f] = CLOSE; break;
+                case "volume": case "vol": case "qty": case "quantity": mapped[f] = VOLUME; break;
+                case "sector": mapped[f] = SECTOR; break;
+                case "industry": mapped[f] = INDUSTRY; break;
+                default: mapped[f] = IGNORED; continue;
+            }
+            any = true;
+        }
+        if (!any) return false;
+        columns = mapped;
+        return true;
+    }
+
+    private String text(byte[] buf, int field) {
+        int st = trimStart(buf, fieldStart[field], fieldEnd[field]), e = trimEnd(buf, st, fieldEnd[field]);
+        return new String(buf, st, e - st, StandardCharsets.UTF_8);
+    }
+
+    // ---------- Symbols ----------
+
+    private int symbolId(byte[] buf, int s, int e) {
+        if (e <= s) return -1;
+        int h = 1;
+        for (int i = s; i < e; i++) h = 31 * h + buf[i];
+        int mask = keys.length - 1;
+        for (int slot = (h ^ (h >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            byte[] k = keys[slot];
+            if (k == null) break;
+            if (sameBytes(k, buf, s, e)) return keyIds[slot];
+        }
+        byte[] k = Arrays.copyOfRange(buf, s, e);
+        int id = store.idOf(new String(k, StandardCharsets.UTF_8));
+        if (++keyCount * 2 > keys.length) rehash();
+        insert(k, id);
+        return id;
+    }
+
+    private static boolean sameBytes(byte[] k, byte[] buf, int s, int e) {
+        if (k.length != e - s) return false;
+        for (int i = 0; i < k.length; i++) if (k[i] != buf[s + i]) return false;
+        return true;
+    }
+
+    private void insert(byte[] k, int id) {
+        int h = 1;
+        for (byte b : k) h = 31 * h + b;
+        int mask = keys.length - 1, slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != null) slot = (slot + 1) & mask;
+        keys[slot] = k;
+        keyIds[slot] = id;
+    }
+
+    private void rehash() {
+        byte[][] oldKeys = keys;
+        int[] oldIds = keyIds;
+        keys = new byte[oldKeys.length * 2][];
+        keyIds = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != null) insert(oldKeys[i], oldIds[i]);
+    }
+
+    // ---------- Numbers and dates ----------
+
+    /**
+     * Decimal number field starting at i, decoded while it is scanned: up to
+     * 18 significant digits go into a long that is divided by a power of ten
+     * once, which rounds correctly for prices with up to 15 digits. Leaves
+     * the value in `number` (NaN if empty) and returns the index of the ','
+     * or newline after it. Exponents and longer numbers go through
+     * Double.parseDouble.
+     */
+    private int parseNumber(byte[] buf, int i, int to) {
+        int start = i;
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        boolean neg = false, seen = false, slow = false;
+        for (; i < to; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                seen = true;
+                if (digits < 18 && scale < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    if (scale >= 0) scale++;
+                } else if (scale < 0 || digits < 18) {
+                    slow = true;
+                }
+            } else if (b == ',' || b == '\n') {
+                break;
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if ((b == '-' || b == '+') && !seen) {
+                neg = b == '-';
+            } else if (b != ' ' && b != '"' && b != '\r') {
+                slow = true;
+            }
+        }
+        if (slow) {
+            number = slowParse(buf, trimStart(buf, start, i), trimEnd(buf, start, i));
+        } else if (!seen) {
+            number = Double.NaN;
+        } else {
+            double v = scale > 0 ? mantissa / POW10[scale] : mantissa;
+            number = neg ? -v : v;
+        }
+        return i;
+    }
+
+    private static double slowParse(byte[] buf, int s, int e) {
+        try {
+            return Double.parseDouble(new String(buf, s, e - s, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    // Epoch millis (UTC), or Long.MIN_VALUE if unreadable
+    static long parseTime(byte[] buf, int s, int e) {
+        int n = e - s;
+        if (n >= 10 && buf[s + 4] == '-' && buf[s + 7] == '-') {
+            int y = digits(buf, s, 4), m = digits(buf, s + 5, 2), d = digits(buf, s + 8, 2);
+            if (y < 0 || m < 0 || d < 0) return Long.MIN_VALUE;
+            long millis = epochDay(y, m, d) * 86_400_000L;
+            if (n >= 16 && buf[s + 13] == ':') {
+                int hh = digits(buf, s + 11, 2), mm = digits(buf, s + 14, 2);
+                if (hh < 0 || mm < 0) return Long.MIN_VALUE;
+                millis += (hh * 60L + mm) * 60_000L;
+                if (n >= 19 && buf[s + 16] == ':') {
+                    int ss = digits(buf, s + 17, 2);
+                    if (ss > 0) millis += ss * 1000L;
+                    if (n >= 23 && buf[s + 19] == '.') {
+                        int ms = digits(buf, s + 20, 3);
+                        if (ms > 0) millis += ms;
+                    }
+                }
+            }
+            return millis;
+        }
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') return Long.MIN_VALUE;
+            v = v * 10 + (b - '0');
+        }
+        if (n == 8) return epochDay((int) (v / 10000), (int) (v / 100 % 100), (int) (v % 100)) * 86_400_000L;
+        if (n == 0) return Long.MIN_VALUE;
+        return v >= 100_000_000_000L ? v : v * 1000;       // millis or seconds
+    }
+
+    private static int digits(byte[] buf, int s, int n) {
+        int v = 0;
+        for (int i = s; i < s + n; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') return -1;
+            v = v * 10 + (b - '0');
+        }
+        return v;
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date (civil-from-days inverse)
+    static long epochDay(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+}
@@ -0,0 +1,141 @@
+package data;
+
+import engine.MarketClock;
+import engine.MarketEngine;
+import engine.MarketScheduler;
+import model.MarketState;
+import model.Stock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays recorded bars through the MarketEngine in time order, in place of
+ * the random walk: each step takes every symbol's bar at the next recorded
+ * time and hands them to engine.replayBars(), so ticks, indices, charts and
+ * the bus see recorded prices. When the date (UTC) changes the engine
+ * closes the day, so daily bars and previous closes follow the file too.
+ *
+ * Steps run on a MarketClock as a market task (they pause with the
+ * market). Above 1000 steps per second one clock period runs several steps.
+ * Each step is O(symbols) with no allocation: a cursor per symbol, and
+ * scratch arrays reused from step to step.
+ */
+public class ReplayDriver implements MarketClock.Tickable {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final BarStore store;
+    private final MarketEngine engine;
+    private final int[] stockId;        // series -> market id, -1 if not in the market
+    private final int[] cursor;         // series -> next bar
+    private final long[] lastDay;       // series -> day of its last bar
+    private final int[] ids;
+    private final double[] open, high, low, close;
+    private final boolean[] firstOfDay;
+    private long currentDay = Long.MIN_VALUE;
+    private long steps;
+    private volatile boolean finished;
+    private int stepsPerTick = 1;
+    private Runnable dayListener;
+    private MarketScheduler.Handle handle;
+
+    public ReplayDriver(BarStore store, MarketEngine engine) {
+        this.store = store;
+        this.engine = engine;
+        int k = store.getSymbolCount();
+        MarketState market = engine.getMarket();
+        stockId = new int[k];
+        cursor = new int[k];
+        lastDay = new long[k];
+        for (int i = 0; i < k; i++) {
+            Stock s = market.getStock(store.get(i).getSymbol());
+            stockId[i] = s != null ? s.getId() : -1;
+            lastDay[i] = Long.MIN_VALUE;
+        }
+        ids = new int[k];
+        open = new double[k];
+        high = new double[k];
+        low = new double[k];
+        close = new double[k];
+        firstOfDay = new boolean[k];
+    }
+
+    // Called (on the replay thread) after each recorded day is closed
+    public void setDayListener(Runnable listener) { this.dayListener = listener; }
+
+    public synchronized void start(double stepsPerSecond) {
+        if (handle != null || finished) return;
+        double speed = Math.max(0.01, stepsPerSecond);
+        long period = Math.max(MarketClock.MIN_PERIOD_NANOS, (long) (1e9 / speed));
+        stepsPerTick = (int) Math.max(1, Math.round(speed * period / 1e9));
+        MarketClock clock = new MarketClock(period, MarketClock.CatchUpPolicy.FAST_FORWARD);
+        handle = MarketScheduler.shared().scheduleClock("replay", clock, true, this);
+        System.out.printf("Replaying %,d bars of %,d symbols at %.0f steps/s%n", store.getRows(), store.getSymbolCount(), speed);
+    }
+
+    public synchronized void stop() {
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+    }
+
+    public boolean isFinished() { return finished; }
+    public long getSteps() { return steps; }
+
+    @Override public void tick() { run(stepsPerTick); }
+    @Override public void fastForward(long periods) { run(periods * stepsPerTick); }
+
+    private void run(long n) {
+        for (long i = 0; i < n && !finished; i++) {
+            if (!step()) finish();
+        }
+    }
+
+    // Applies the bars at the next recorded time; false when there are none left
+    boolean step() {
+        int k = cursor.length;
+        long t = Long.MAX_VALUE;
+        for (int i = 0; i < k; i++) {
+            if (cursor[i] < store.get(i).size()) t = Math.min(t, store.get(i).time(cursor[i]));
+        }
+        if (t == Long.MAX_VALUE) return false;
+
+        long day = Math.floorDiv(t, DAY_MILLIS);
+        if (day != currentDay && currentDay != Long.MIN_VALUE) closeDay();
+        currentDay = day;
+
+        int n = 0;
+        for (int i = 0; i < k; i++) {
+            BarStore.Series s = store.get(i);
+            int c = cursor[i];
+            if (c >= s.size() || s.time(c) != t) continue;
+            cursor[i] = c + 1;
+            if (stockId[i] < 0) continue;
+            ids[n] = stockId[i];
+            open[n] = s.open(c);
+            high[n] = s.high(c);
+            low[n] = s.low(c);
+            close[n] = s.close(c);
+            firstOfDay[n] = lastDay[i] != day;
+            lastDay[i] = day;
+            n++;
+        }
+        engine.replayBars(ids, open, high, low, close, firstOfDay, n);
+        steps++;
+        return true;
+    }
+
+    private void closeDay() {
+        engine.replayCloseDay();
+        Runnable l = dayListener;
+        if (l != null) l.run();
+    }
+
+    private void finish() {
+        finished = true;
+        if (currentDay != Long.MIN_VALUE) closeDay();
+        stop();
+        System.out.printf("Replay finished after %,d steps%n", steps);
+    }
+}
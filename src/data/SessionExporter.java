@@ -0,0 +1,163 @@
+package data;
+
+import engine.TradeExecutor;
+import model.DBHelper;
+import model.MarketState;
+import model.Stock;
+import model.UserPortfolio;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Writes a session out for offline analysis as three tables in a directory:
+ *
+ *   ticks         symbol, tick, price                       (every price of every stock)
+ *   bars          symbol, bar, first_tick, ticks, open, high, low, close
+ *   transactions  time (epoch millis), symbol, side, quantity, price
+ *
+ * either as CSV or in the columnar format of ColumnarTableWriter. Everything
+ * is streamed: each stock's prices go past once per table (read in place,
+ * or chunk by chunk from the segment file of a history that is not loaded),
+ * bars are folded from them as they go, and fills come through a single DB
+ * cursor. Nothing is loaded or cached for the export, so the memory it
+ * needs does not grow with the session. Safe to run off
+ * the EDT while the market is live; it exports what was there when each
+ * stock was reached.
+ */
+public final class SessionExporter {
+
+    public enum Format {
+        CSV(".csv"), COLUMNAR(".col");
+
+        private final String extension;
+        Format(String extension) { this.extension = extension; }
+
+        TableSink open(Path file, String[] names, TableSink.Type[] types) throws IOException {
+            return this == CSV ? new CsvTableWriter(file, names, types) : new ColumnarTableWriter(file, names, types);
+        }
+    }
+
+    private static final String[] TICK_COLUMNS = { "symbol", "tick", "price" };
+    private static final TableSink.Type[] TICK_TYPES = {
+            TableSink.Type.UTF8, TableSink.Type.INT64, TableSink.Type.FLOAT64 };
+    private static final String[] BAR_COLUMNS = { "symbol", "bar", "first_tick", "ticks", "open", "high", "low", "close" };
+    private static final TableSink.Type[] BAR_TYPES = {
+            TableSink.Type.UTF8, TableSink.Type.INT64, TableSink.Type.INT64, TableSink.Type.INT64,
+            TableSink.Type.FLOAT64, TableSink.Type.FLOAT64, TableSink.Type.FLOAT64, TableSink.Type.FLOAT64 };
+    private static final String[] TRANSACTION_COLUMNS = { "time", "symbol", "side", "quantity", "price" };
+    private static final TableSink.Type[] TRANSACTION_TYPES = {
+            TableSink.Type.INT64, TableSink.Type.UTF8, TableSink.Type.UTF8, TableSink.Type.INT64, TableSink.Type.FLOAT64 };
+
+    private SessionExporter() {}
+
+    // Exports all three tables; returns a one-line summary
+    public static String export(Path dir, Format format, MarketState market, int barLevel,
+                                TradeExecutor executor, UserPortfolio user) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        long ticks = exportTicks(dir.resolve("ticks" + format.extension), format, market);
+        long bars = exportBars(dir.resolve("bars" + format.extension), format, market, barLevel);
+        long fills = exportTransactions(dir.resolve("transactions" + format.extension), format, executor, user);
+        String summary = String.format("Exported %,d ticks, %,d bars (%,d ticks each) and %,d transactions to %s in %d ms",
+                ticks, bars, 1L << barLevel, fills, dir, (System.nanoTime() - start) / 1_000_000);
+        System.out.println(summary);
+        return summary;
+    }
+
+    public static long exportTicks(Path file, Format format, MarketState market) throws IOException {
+        try (TableSink out = format.open(file, TICK_COLUMNS, TICK_TYPES)) {
+            for (Stock s : market.getStocks()) {
+                String symbol = s.getSymbol();
+                long[] tick = {0};
+                s.forEachPrice((prices, from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out.setString(0, symbol);
+                        out.setLong(1, tick[0]++);
+                        out.setDouble(2, prices[i]);
+                        out.endRow();
+                    }
+                });
+            }
+            return out.getRows();
+        }
+    }
+
+    public static long exportBars(Path file, Format format, MarketState market, int level) throws IOException {
+        long ticksPerBar = 1L << level;
+        try (TableSink out = format.open(file, BAR_COLUMNS, BAR_TYPES)) {
+            for (Stock s : market.getStocks()) {
+                BarWriter bars = new BarWriter(out, s.getSymbol(), ticksPerBar);
+                s.forEachPrice(bars);
+                bars.finish();   // the last bar may still be forming
+            }
+            return out.getRows();
+        }
+    }
+
+    // Folds one stock's prices into bars of ticksPerBar ticks as they stream past
+    private static final class BarWriter implements Stock.PriceVisitor {
+        private final TableSink out;
+        private final String symbol;
+        private final long ticksPerBar;
+        private long bar, ticks;    // bar being built, ticks in it so far
+        private double open, high, low, close;
+
+        BarWriter(TableSink out, String symbol, long ticksPerBar) {
+            this.out = out;
+            this.symbol = symbol;
+            this.ticksPerBar = ticksPerBar;
+        }
+
+        @Override
+        public void visit(double[] prices, int from, int to) throws IOException {
+            for (int i = from; i < to; i++) {
+                double p = prices[i];
+                if (ticks == 0) {
+                    open = high = low = p;
+                } else {
+                    if (p > high) high = p;
+                    if (p < low) low = p;
+                }
+                close = p;
+                if (++ticks == ticksPerBar) finish();
+            }
+        }
+
+        void finish() throws IOException {
+            if (ticks == 0) return;
+            out.setString(0, symbol);
+            out.setLong(1, bar);
+            out.setLong(2, bar * ticksPerBar);
+            out.setLong(3, ticks);
+            out.setDouble(4, open);
+            out.setDouble(5, high);
+            out.setDouble(6, low);
+            out.setDouble(7, close);
+            out.endRow();
+            bar++;
+            ticks = 0;
+        }
+    }
+
+    // Pending fills are flushed to the DB first, so the cursor sees every fill
+    public static long exportTransactions(Path file, Format format, TradeExecutor executor,
+                                          UserPortfolio user) throws IOException {
+        executor.savePortfolio(user);
+        try (TableSink out = format.open(file, TRANSACTION_COLUMNS, TRANSACTION_TYPES)) {
+            DBHelper.forEachTransaction(user.getUserId(), (ts, symbol, type, quantity, price) -> {
+                out.setLong(0, ts);
+                out.setString(1, symbol);
+                out.setString(2, type);
+                out.setLong(3, quantity);
+                out.setDouble(4, price);
+                out.endRow();
+            });
+            return out.getRows();
+        } catch (SQLException e) {
+            throw new IOException("Could not read transactions: " + e.getMessage(), e);
+        }
+    }
+}
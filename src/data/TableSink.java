@@ -0,0 +1,21 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Row-at-a-time output of a typed table (CsvTableWriter, ColumnarTableWriter).
+ * Call set*() for each column of a row, then endRow(); values are written
+ * out incrementally, so a table of any size needs only a fixed buffer.
+ */
+public interface TableSink extends Closeable {
+
+    enum Type { INT64, FLOAT64, UTF8 }
+
+    void setLong(int column, long value);
+    void setDouble(int column, double value);
+    void setString(int column, String value);
+    void endRow() throws IOException;
+
+    long getRows();
+}
@@ -0,0 +1,176 @@
+package engine;
+
+import model.MarketState;
+import model.Side;
+import model.Stock;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Agent-based price formation: prices move with the net demand of a large
+ * population of simulated traders instead of random noise.
+ *
+ * Each agent trades one symbol and is one of three kinds:
+ *   NOISE          follows the symbol's shared sentiment plus its own noise
+ *   FUNDAMENTALIST buys below its private valuation, sells above it
+ *   TREND          buys when the price is above its moving average, sells below
+ * Agent state is struct-of-arrays (one primitive array per attribute), so a
+ * step is a linear scan. The scan is split into fixed chunks that run on the
+ * common ForkJoinPool, each with its own random generator and its own demand
+ * accumulator; the accumulators are summed afterwards (no shared writes).
+ *
+ * Real fills (Swing, gateway, crowd) arrive through onFill() and are added to
+ * the next step's demand, so large user orders move the price.
+ */
+public class AgentMarket implements TradeExecutor.FillListener {
+
+    private static final byte NOISE = 0, FUNDAMENTALIST = 1, TREND = 2;
+    private static final double NOISE_SHARE = 0.60, FUNDAMENTALIST_SHARE = 0.25; // rest: TREND
+
+    private static final double AGENT_SHARES = 100;    // shares behind a full-size (|demand| = 1) order
+    private static final double IMPACT = 0.02;         // log move when every agent on a symbol pushes one way
+    private static final double MAX_LOG_MOVE = 0.10;   // per step
+    private static final double SENTIMENT_SIGMA = 0.3;
+    private static final double VALUE_SIGMA = 0.0005;  // per-step drift of the fundamental value
+    private static final double TREND_ALPHA = 0.05;    // EMA weight of the newest price
+    private static final int CHUNK = 8192;
+
+    // ---- agent state, indexed by agent ----
+    private final byte[] kind;
+    private final int[] symbol;
+    private final double[] valuation;     // FUNDAMENTALIST: multiple of the symbol's value
+    private final double[] aggression;    // demand scale in (0, 1]
+
+    // ---- symbol state, indexed by symbol id ----
+    private final int symbols;
+    private final double[] price;
+    private final double[] value;         // fundamental value
+    private final double[] ema;           // trend followers' moving average
+    private final double[] sentiment;     // shared noise-trader mood this step
+    private final double[] depth;         // agents on the symbol * AGENT_SHARES
+    private final AtomicLongArray pendingFlow;   // signed shares filled since the last step
+
+    private final SplittableRandom rnd;
+    private final Chunk[] chunks;
+
+    public AgentMarket(MarketState market, int agents, long seed) {
+        this.symbols = market.getStockCount();
+        this.rnd = new SplittableRandom(seed);
+        kind = new byte[agents];
+        symbol = new int[agents];
+        valuation = new double[agents];
+        aggression = new double[agents];
+        price = new double[symbols];
+        value = new double[symbols];
+        ema = new double[symbols];
+        sentiment = new double[symbols];
+        depth = new double[symbols];
+        pendingFlow = new AtomicLongArray(symbols);
+
+        for (int id = 0; id < symbols; id++) {
+            Stock s = market.getStock(id);
+            price[id] = s == null ? 0 : s.getPrice();
+            value[id] = price[id];
+            ema[id] = price[id];
+        }
+        for (int i = 0; i < agents; i++) {
+            double u = rnd.nextDouble();
+            kind[i] = u < NOISE_SHARE ? NOISE : u < NOISE_SHARE + FUNDAMENTALIST_SHARE ? FUNDAMENTALIST : TREND;
+            symbol[i] = symbols == 0 ? 0 : i % symbols;
+            valuation[i] = 1.0 + 0.05 * rnd.nextGaussian();
+            aggression[i] = 0.2 + 0.8 * rnd.nextDouble();
+            if (symbols > 0) depth[symbol[i]] += AGENT_SHARES;
+        }
+
+        int n = Math.max(1, (agents + CHUNK - 1) / CHUNK);
+        chunks = new Chunk[n];
+        for (int c = 0; c < n; c++) {
+            chunks[c] = new Chunk(c * CHUNK, Math.min(agents, (c + 1) * CHUNK), rnd.split());
+        }
+    }
+
+    /**
+     * Returns an agent market when marketsim.price.model=agents, sized by
+     * marketsim.agents (default 100000); null for the random-walk model.
+     */
+    public static AgentMarket createIfConfigured(MarketState market) {
+        if (!"agents".equalsIgnoreCase(System.getProperty("marketsim.price.model", "random"))) return null;
+        int agents = Integer.getInteger("marketsim.agents", 100_000);
+        return new AgentMarket(market, agents, System.nanoTime());
+    }
+
+    public int getAgentCount() { return kind.length; }
+
+    // Fills happen on any thread; they are folded in at the next step
+    @Override
+    public void onFill(int symbolId, Side side, int quantity, double price) {
+        if (symbolId < symbols) pendingFlow.addAndGet(symbolId, side == Side.BUY ? quantity : -quantity);
+    }
+
+    /**
+     * Runs one step: every agent decides, demand is summed per symbol and
+     * each price moves by its net demand relative to the symbol's depth.
+     * `current` holds the live prices on entry and the new ones on return.
+     */
+    void step(double[] current) {
+        for (int id = 0; id < symbols; id++) {
+            price[id] = current[id];
+            ema[id] += TREND_ALPHA * (price[id] - ema[id]);
+            value[id] *= Math.exp(VALUE_SIGMA * rnd.nextGaussian());
+            sentiment[id] = SENTIMENT_SIGMA * rnd.nextGaussian();
+        }
+
+        // decisions: chunk 0 runs here, the rest on the common pool
+        for (int c = 1; c < chunks.length; c++) chunks[c].fork();
+        chunks[0].invoke();
+        for (int c = 1; c < chunks.length; c++) chunks[c].join();
+
+        for (int id = 0; id < symbols; id++) {
+            if (depth[id] == 0 || price[id] <= 0) continue;
+            double shares = pendingFlow.getAndSet(id, 0);
+            for (Chunk ch : chunks) shares += ch.demand[id] * AGENT_SHARES;
+            double move = IMPACT * shares / depth[id];
+            move = Math.max(-MAX_LOG_MOVE, Math.min(MAX_LOG_MOVE, move));
+            current[id] = Math.max(0.01, Math.round(price[id] * Math.exp(move) * 100.0) / 100.0);
+        }
+        for (Chunk ch : chunks) ch.reinitialize();
+    }
+
+    // A fixed slice of agents with its own random stream and demand totals
+    private final class Chunk extends RecursiveAction {
+        final int from, to;
+        final SplittableRandom rnd;
+        final double[] demand = new double[symbols];
+
+        Chunk(int from, int to, SplittableRandom rnd) {
+            this.from = from;
+            this.to = to;
+            this.rnd = rnd;
+        }
+
+        @Override
+        protected void compute() {
+            double[] d = demand;
+            java.util.Arrays.fill(d, 0);
+            for (int i = from; i < to; i++) {
+                int s = symbol[i];
+                double p = price[s];
+                if (p <= 0) continue;
+                double want;
+                switch (kind[i]) {
+                    case FUNDAMENTALIST:
+                        want = (value[s] * valuation[i] - p) / p * 10.0;
+                        break;
+                    case TREND:
+                        want = (p - ema[s]) / ema[s] * 50.0;
+                        break;
+                    default:
+                        want = sentiment[s] + (rnd.nextDouble() * 2.0 - 1.0);
+                }
+                d[s] += aggression[i] * Math.max(-1.0, Math.min(1.0, want));
+            }
+        }
+    }
+}
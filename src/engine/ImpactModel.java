@@ -0,0 +1,79 @@
+package engine;
+
+import model.Side;
+
+/**
+ * Price impact of an order, in the usual temporary/permanent split.
+ * With participation x = quantity / depth and f(x) = x (LINEAR) or sqrt(x) (SQRT):
+ *   fill price  = mid * (1 ± (halfSpread + temporary * f(x) + permanent * f(x) / 2))
+ *   mid after   = mid * (1 ± permanent * f(x))
+ * (+ for buys, - for sells). The fill pays the half spread, the temporary
+ * impact, and on average half of the permanent move it causes; only the
+ * permanent part stays in the price. Constant time per order.
+ *
+ * Configured with system properties:
+ *   marketsim.impact.model      none | linear | sqrt (default sqrt)
+ *   marketsim.impact.spreadBps  half spread in basis points (default 5)
+ *   marketsim.impact.temporary  temporary coefficient (default 0.1)
+ *   marketsim.impact.permanent  permanent coefficient (default 0.05)
+ *   marketsim.impact.depth      shares at which x = 1 (default 10,000,000)
+ */
+public final class ImpactModel {
+
+    public enum Shape { NONE, LINEAR, SQRT }
+
+    public static final ImpactModel NONE = new ImpactModel(Shape.NONE, 0, 0, 0, 1);
+
+    private static final double MIN_PRICE = 0.01;
+
+    private final Shape shape;
+    private final double halfSpread;
+    private final double temporary;
+    private final double permanent;
+    private final double depth;
+
+    public ImpactModel(Shape shape, double halfSpread, double temporary, double permanent, double depth) {
+        this.shape = shape;
+        this.halfSpread = halfSpread;
+        this.temporary = temporary;
+        this.permanent = permanent;
+        this.depth = Math.max(1, depth);
+    }
+
+    public static ImpactModel fromProperties() {
+        Shape shape = Shape.valueOf(System.getProperty("marketsim.impact.model", "sqrt").toUpperCase());
+        if (shape == Shape.NONE) return NONE;
+        return new ImpactModel(shape,
+                Double.parseDouble(System.getProperty("marketsim.impact.spreadBps", "5")) / 10_000.0,
+                Double.parseDouble(System.getProperty("marketsim.impact.temporary", "0.1")),
+                Double.parseDouble(System.getProperty("marketsim.impact.permanent", "0.05")),
+                Double.parseDouble(System.getProperty("marketsim.impact.depth", "1e7")));
+    }
+
+    public Shape getShape() { return shape; }
+
+    // f(quantity / depth)
+    private double scale(int quantity) {
+        double x = quantity / depth;
+        return shape == Shape.SQRT ? Math.sqrt(x) : shape == Shape.LINEAR ? x : 0;
+    }
+
+    // Average price paid (buy) or received (sell) for the whole quantity
+    public double fillPrice(double mid, Side side, int quantity) {
+        if (shape == Shape.NONE) return mid;
+        double f = scale(quantity);
+        double cost = halfSpread + temporary * f + permanent * f / 2;
+        return round(side == Side.BUY ? mid * (1 + cost) : mid * (1 - cost));
+    }
+
+    // Mid price once the order's permanent impact is in
+    public double priceAfter(double mid, Side side, int quantity) {
+        if (shape == Shape.NONE || permanent == 0) return mid;
+        double move = permanent * scale(quantity);
+        return round(side == Side.BUY ? mid * (1 + move) : mid * (1 - move));
+    }
+
+    private static double round(double p) {
+        return Math.max(MIN_PRICE, Math.round(p * 100.0) / 100.0);
+    }
+}
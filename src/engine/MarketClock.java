@@ -0,0 +1,95 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanosecond tick clock with an explicit policy for missed periods.
+ * Deadlines are kept as absolute System.nanoTime() values (start + k * period),
+ * so late wake-ups never accumulate drift; advance() reports how many whole
+ * periods are due and hands them to the target according to the policy.
+ */
+public class MarketClock {
+
+    public static final long MIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // What to do when more than one period elapsed since the last advance
+    public enum CatchUpPolicy {
+        SKIP,          // run once, drop the rest
+        BURST,         // run every missed period one by one
+        FAST_FORWARD   // hand all missed periods to Tickable.fastForward in one call
+    }
+
+    // Something the clock drives
+    public interface Tickable {
+        void tick();
+        void fastForward(long periods);
+
+        // Periods dropped without running (market paused); state that keeps the clock's phase moves past them
+        default void skip(long periods) {}
+    }
+
+    private final long periodNanos;
+    private final CatchUpPolicy policy;
+    private long nextDeadline;
+
+    public MarketClock(long periodNanos, CatchUpPolicy policy) {
+        this(periodNanos, policy, System.nanoTime() + Math.max(MIN_PERIOD_NANOS, periodNanos));
+    }
+
+    private MarketClock(long periodNanos, CatchUpPolicy policy, long firstDeadline) {
+        this.periodNanos = Math.max(MIN_PERIOD_NANOS, periodNanos);
+        this.policy = policy;
+        this.nextDeadline = firstDeadline;
+    }
+
+    /**
+     * Clock whose phase continues from a wall-clock time saved earlier (e.g. the
+     * last day tick before the app was closed). Periods that elapsed while the
+     * app was not running are due immediately.
+     */
+    public static MarketClock resumeFrom(long lastTickEpochMillis, long periodMillis, CatchUpPolicy policy) {
+        long period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        long sinceLast = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - lastTickEpochMillis));
+        return new MarketClock(period, policy, System.nanoTime() - sinceLast + period);
+    }
+
+    public long getPeriodNanos() { return periodNanos; }
+    public CatchUpPolicy getPolicy() { return policy; }
+
+    // Nanos until the next deadline (0 if one is already due)
+    public synchronized long nanosUntilNext(long nowNanos) {
+        return Math.max(0, nextDeadline - nowNanos);
+    }
+
+    // Number of whole periods due at nowNanos; consumes them
+    public synchronized long due(long nowNanos) {
+        if (nowNanos - nextDeadline < 0) return 0;
+        long n = (nowNanos - nextDeadline) / periodNanos + 1;
+        nextDeadline += n * periodNanos;
+        return n;
+    }
+
+    // Drop anything due without running it (e.g. while the market is paused); returns how many were dropped
+    public long discardDue(long nowNanos) {
+        return due(nowNanos);
+    }
+
+    // Runs the due periods on target; returns how many periods were due
+    public long advance(long nowNanos, Tickable target) {
+        long n = due(nowNanos);
+        if (n == 0) return 0;
+        switch (policy) {
+            case SKIP:
+                target.tick();
+                break;
+            case BURST:
+                for (long i = 0; i < n; i++) target.tick();
+                break;
+            case FAST_FORWARD:
+                if (n == 1) target.tick();
+                else target.fastForward(n);
+                break;
+        }
+        return n;
+    }
+}
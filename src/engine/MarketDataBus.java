@@ -0,0 +1,153 @@
+package engine;
+
+import utils.TimeUtils;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process market-data bus on a pre-allocated ring of MarketEvents
+ * (Disruptor-style). Producers claim a sequence, fill the slot in place and
+ * publish it; each Subscription tracks its own sequence and reads at its own
+ * pace. The producer never waits: a consumer that falls more than a ring's
+ * length behind is moved forward and told how many events it missed, so slow
+ * consumers (Swing) simply conflate to the latest state.
+ */
+public class MarketDataBus {
+
+    private static final long IN_PROGRESS = -1L;
+
+    private final MarketEvent[] ring;
+    private final int mask;
+    private final AtomicLongArray published;   // slot -> sequence stored there, IN_PROGRESS while writing
+    private final AtomicLong claim = new AtomicLong();
+
+    public MarketDataBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // round up to a power of two
+        ring = new MarketEvent[size];
+        for (int i = 0; i < size; i++) ring[i] = new MarketEvent();
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) published.set(i, i - (long) size); // "previous lap", nothing published
+    }
+
+    public int capacity() { return ring.length; }
+
+    // Sequence the next published event will get
+    public long cursor() { return claim.get(); }
+
+    // ---------- Publishing (any thread, no allocation) ----------
+
+    public void publishTick(int symbolId, double price) {
+        long seq = claim.getAndIncrement();
+        MarketEvent e = begin(seq);
+        e.type = MarketEvent.TICK;
+        e.symbolId = symbolId;
+        e.price = price;
+        e.quantity = 0;
+        end(seq, e);
+    }
+
+    public void publishTrade(int symbolId, double price, int quantity, byte side) {
+        long seq = claim.getAndIncrement();
+        MarketEvent e = begin(seq);
+        e.type = MarketEvent.TRADE;
+        e.symbolId = symbolId;
+        e.price = price;
+        e.quantity = quantity;
+        e.side = side;
+        end(seq, e);
+    }
+
+    public void publishBar(int symbolId, double open, double high, double low, double close) {
+        long seq = claim.getAndIncrement();
+        MarketEvent e = begin(seq);
+        e.type = MarketEvent.BAR;
+        e.symbolId = symbolId;
+        e.open = open;
+        e.high = high;
+        e.low = low;
+        e.price = close;
+        end(seq, e);
+    }
+
+    private MarketEvent begin(long seq) {
+        int idx = (int) seq & mask;
+        published.set(idx, IN_PROGRESS);
+        // the plain field writes below must not become visible before IN_PROGRESS (a reader
+        // copying the previous lap's event would see them and still find the old sequence)
+        VarHandle.storeStoreFence();
+        MarketEvent e = ring[idx];
+        e.sequence = seq;
+        e.timeNanos = TimeUtils.epochNanos();
+        return e;
+    }
+
+    private void end(long seq, MarketEvent e) {
+        published.set((int) seq & mask, seq);
+    }
+
+    // ---------- Consuming ----------
+
+    // New subscription starting at the next event to be published
+    public Subscription subscribe() {
+        return new Subscription(claim.get());
+    }
+
+    // Callback for Subscription.poll
+    public interface EventHandler {
+        void onEvent(MarketEvent e);
+    }
+
+    /**
+     * A consumer's read position. Not thread-safe: poll it from one thread.
+     */
+    public class Subscription {
+        private volatile long next;   // written by the polling thread, read by hasPending() anywhere
+        private long dropped;
+        private final MarketEvent scratch = new MarketEvent();
+
+        Subscription(long start) { this.next = start; }
+
+        // True when at least one event is waiting
+        public boolean hasPending() { return claim.get() > next; }
+
+        // Total events skipped because this consumer fell behind
+        public long getDropped() { return dropped; }
+
+        /**
+         * Delivers up to maxEvents published events to handler and returns how
+         * many were delivered. Stops at the first slot that is not published yet.
+         */
+        public int poll(EventHandler handler, int maxEvents) {
+            int delivered = 0;
+            while (delivered < maxEvents) {
+                int idx = (int) next & mask;
+                long s1 = published.get(idx);
+                if (s1 == IN_PROGRESS || s1 < next) break;  // not published yet
+                if (s1 > next) {                            // lapped by the producer
+                    skipTo(s1 - ring.length + 1);
+                    continue;
+                }
+                scratch.copyFrom(ring[idx]);
+                VarHandle.loadLoadFence();
+                if (published.get(idx) != s1) {             // overwritten while copying
+                    skipTo(next + 1);
+                    continue;
+                }
+                next++;
+                delivered++;
+                handler.onEvent(scratch);
+            }
+            return delivered;
+        }
+
+        private void skipTo(long seq) {
+            if (seq > next) {
+                dropped += seq - next;
+                next = seq;
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package engine;
+
+import metrics.Metrics;
+import model.MarketState;
+import model.Stock;
+
+import java.util.SplittableRandom;
+
+/**
+ * Price engine for the shared market.
+ * The live tick is the hot path and allocates nothing in steady state: one
+ * random generator for the engine's lifetime, prices appended to primitive
+ * history series, and every price change published to the MarketDataBus
+ * (no listener calls, no UI work). Day ticks also publish the finished
+ * day's bar, built from the per-stock open/high/low kept here.
+ * Every price change also goes to the MarketIndices, if any, which append
+ * one level per index at the end of each tick. With recordPrices() on, the
+ * end of each tick also writes every price to a PriceTape (risk figures).
+ */
+public class MarketEngine {
+
+    private static final double LIVE_CHANGE_PROB = 0.4; // 40% chance per tick
+    private static final double LIVE_MAX_PCT = 1.0;     // ±1%
+    private static final double DAY_MAX_PCT = 10.0;     // ±10%
+
+    private final MarketState market;
+    private final MarketDataBus bus;
+    private final SplittableRandom rnd;
+    private Stock[] stocks;
+    private double[] dayOpen;
+    private double[] dayHigh;
+    private double[] dayLow;
+    private volatile AgentMarket agents;   // null: random-walk live ticks
+    private double[] agentPrices;
+    private MarketIndices indices;          // null: no indices
+    private Stock marketIndex;              // whole-market index instrument, or null
+    private int tapeTicks;                  // 0: no price tape
+    private PriceTape tape;
+
+    public MarketEngine(MarketState market, MarketDataBus bus) {
+        this(market, bus, new SplittableRandom());
+    }
+
+    public MarketEngine(MarketState market, MarketDataBus bus, SplittableRandom rnd) {
+        this.market = market;
+        this.bus = bus;
+        this.rnd = rnd;
+        refreshUniverse();
+    }
+
+    public MarketState getMarket() { return market; }
+
+    // Let an agent population drive live prices (null goes back to the random walk)
+    public synchronized void setAgentMarket(AgentMarket agents) { this.agents = agents; }
+    public AgentMarket getAgentMarket() { return agents; }
+    public MarketDataBus getBus() { return bus; }
+
+    // Keep these indices up to date from now on (rebased on this engine's market)
+    public synchronized void setIndices(MarketIndices indices) {
+        this.indices = indices;
+        marketIndex = null;
+        if (indices != null) {
+            indices.rebase(market);
+            int i = indices.marketIndex(MarketIndices.Weighting.CAP);
+            if (i < 0) i = indices.marketIndex(MarketIndices.Weighting.EQUAL);
+            if (i >= 0) marketIndex = indices.getInstrument(i);
+        }
+    }
+    public synchronized MarketIndices getIndices() { return indices; }
+
+    // Keep every price of the last `ticks` ticks on a PriceTape (starts empty, again when stocks are added)
+    public synchronized void recordPrices(int ticks) {
+        tapeTicks = ticks;
+        tape = ticks > 0 ? new PriceTape(stocks.length, ticks) : null;
+    }
+    public synchronized PriceTape getPriceTape() { return tape; }
+
+    // Re-read the stock list (call after stocks are added)
+    public synchronized void refreshUniverse() {
+        int n = market.getStockCount();
+        stocks = new Stock[n];
+        dayOpen = new double[n];
+        dayHigh = new double[n];
+        dayLow = new double[n];
+        agentPrices = new double[n];
+        for (int id = 0; id < n; id++) {
+            stocks[id] = market.getStock(id);
+            if (stocks[id] != null) startDay(id, stocks[id].getPrice());
+        }
+        if (indices != null) indices.rebase(market);
+        if (tapeTicks > 0) tape = new PriceTape(n, tapeTicks);
+    }
+
+    // One live fluctuation step: each stock moves with 40% probability
+    public synchronized void tickLive() {
+        long t0 = System.nanoTime();
+        if (agents != null) {
+            tickAgents();
+            endTick();
+            Metrics.TICK.recordSince(t0);
+            Metrics.TICKS.increment();
+            return;
+        }
+        Stock[] ss = stocks;
+        for (int id = 0; id < ss.length; id++) {
+            Stock s = ss[id];
+            if (s != null && rnd.nextDouble() <= LIVE_CHANGE_PROB) {
+                double p = movePrice(s, LIVE_MAX_PCT);
+                if (p > dayHigh[id]) dayHigh[id] = p;
+                if (p < dayLow[id]) dayLow[id] = p;
+                publishTick(id, p);
+            }
+        }
+        endTick();
+        Metrics.TICK.recordSince(t0);
+        Metrics.TICKS.increment();
+    }
+
+    // One agent-market step; only prices that changed are published
+    private void tickAgents() {
+        Stock[] ss = stocks;
+        double[] p = agentPrices;
+        for (int id = 0; id < ss.length; id++) p[id] = ss[id] == null ? 0 : ss[id].getPrice();
+        agents.step(p);
+        for (int id = 0; id < ss.length; id++) {
+            Stock s = ss[id];
+            if (s == null || p[id] == s.getPrice()) continue;
+            s.setPrice(p[id]);
+            if (p[id] > dayHigh[id]) dayHigh[id] = p[id];
+            if (p[id] < dayLow[id]) dayLow[id] = p[id];
+            publishTick(id, p[id]);
+        }
+    }
+
+    // A fill's permanent impact (TradeExecutor); kept in the day's high/low like any tick
+    public synchronized void applyImpact(int id, double price) {
+        Stock s = id < stocks.length ? stocks[id] : null;
+        if (s == null) return;
+        s.setPrice(price);
+        if (price > dayHigh[id]) dayHigh[id] = price;
+        if (price < dayLow[id]) dayLow[id] = price;
+        publishTick(id, price);
+        endTick();
+    }
+
+    // End of day: publish the day's bar, roll prevClose and (random walk only) apply a larger daily move
+    public synchronized void tickDay() {
+        // with agents the overnight move is theirs to make; the random walk gaps ±10%
+        closeDay(agents == null);
+    }
+
+    private void closeDay(boolean gap) {
+        long t0 = System.nanoTime();
+        Stock[] ss = stocks;
+        for (int id = 0; id < ss.length; id++) {
+            Stock s = ss[id];
+            if (s == null) continue;
+            double close = s.getPrice();
+            bus.publishBar(id, dayOpen[id], dayHigh[id], dayLow[id], close);
+            s.setPrevClose(close);
+            double p = gap ? movePrice(s, DAY_MAX_PCT) : close;
+            startDay(id, p);
+            publishTick(id, p);
+        }
+        endTick();
+        if (indices != null) indices.closeDay(market);   // new weights for the new day, no drift
+        market.setDayIndex(market.getDayIndex() + 1);
+        market.setLastTickTime(System.currentTimeMillis());
+        Metrics.TICK.recordSince(t0);
+        Metrics.TICKS.increment();
+    }
+
+    /**
+     * Applies `days` day ticks in one pass: stock by stock, the whole run of
+     * daily prices is generated into a scratch array and appended to history
+     * in bulk. Used to catch up on days missed while the app was closed;
+     * lastTickTime moves forward by days * dayMillis so the day phase is kept.
+     */
+    public synchronized void fastForwardDays(long days, long dayMillis) {
+        if (days <= 0) return;
+        long t0 = System.nanoTime();
+        int n = (int) Math.min(days, Integer.MAX_VALUE - 8);
+        double[] run = new double[n];
+        Stock[] ss = stocks;
+        for (int id = 0; id < ss.length; id++) {
+            Stock s = ss[id];
+            if (s == null) continue;
+            double p = s.getPrice();
+            for (int d = 0; d < n; d++) {
+                double changePct = (rnd.nextDouble() * 2.0 * DAY_MAX_PCT) - DAY_MAX_PCT;
+                p = Math.max(1.0, Math.round(p * (1 + changePct / 100.0)));
+                run[d] = p;
+            }
+            // bars for the skipped days: each day opens where the previous closed
+            double open = dayOpen[id], high = dayHigh[id], low = dayLow[id], close = s.getPrice();
+            for (int d = 0; d < n; d++) {
+                bus.publishBar(id, open, high, low, close);
+                open = high = low = close = run[d];
+            }
+            s.setPrevClose(n > 1 ? run[n - 2] : s.getPrice());
+            s.appendPrices(run, n);
+            startDay(id, s.getPrice());
+            publishTick(id, s.getPrice());
+        }
+        endTick();   // the indices get one point for the whole run
+        market.setDayIndex(market.getDayIndex() + n);
+        market.setLastTickTime(market.getLastTickTime() + n * dayMillis);
+        Metrics.TICK.recordSince(t0);
+        Metrics.TICKS.add(n);
+    }
+
+    // Days that passed while the market was paused: no prices move, only the day phase does
+    public synchronized void skipDays(long days, long dayMillis) {
+        if (days <= 0) return;
+        market.setLastTickTime(market.getLastTickTime() + days * dayMillis);
+    }
+
+    // ---------- Replay of recorded data (data.ReplayDriver) ----------
+
+    /**
+     * One step of recorded bars: each listed stock trades at its bar's close,
+     * and the bar's high and low go into the day's range. firstOfDay[i] marks
+     * a stock's first bar of the day, whose open is the day's open. Stocks
+     * not listed keep their price.
+     */
+    public synchronized void replayBars(int[] ids, double[] open, double[] high, double[] low,
+                                        double[] close, boolean[] firstOfDay, int n) {
+        long t0 = System.nanoTime();
+        Stock[] ss = stocks;
+        for (int i = 0; i < n; i++) {
+            int id = ids[i];
+            Stock s = id < ss.length ? ss[id] : null;
+            if (s == null) continue;
+            if (firstOfDay[i]) {
+                dayOpen[id] = open[i];
+                dayHigh[id] = high[i];
+                dayLow[id] = low[i];
+            } else {
+                if (high[i] > dayHigh[id]) dayHigh[id] = high[i];
+                if (low[i] < dayLow[id]) dayLow[id] = low[i];
+            }
+            s.setPrice(close[i]);
+            publishTick(id, close[i]);
+        }
+        endTick();
+        Metrics.TICK.recordSince(t0);
+        Metrics.TICKS.increment();
+    }
+
+    // End of a recorded day: bars and prevClose as in tickDay, without an overnight move
+    public synchronized void replayCloseDay() {
+        closeDay(false);
+    }
+
+    // Applies `ticks` live ticks back to back (no UI work in between)
+    public synchronized void fastForwardLive(long ticks) {
+        for (long i = 0; i < ticks; i++) tickLive();
+    }
+
+    // Put every stock back to the given prices (indexed by id)
+    public synchronized void resetPrices(double[] prices) {
+        Stock[] ss = stocks;
+        for (int id = 0; id < ss.length && id < prices.length; id++) {
+            if (ss[id] == null) continue;
+            ss[id].resetTo(prices[id]);
+            startDay(id, prices[id]);
+            publishTick(id, prices[id]);
+        }
+        if (indices != null) indices.restart(market);
+        if (tape != null) tape.clear();
+    }
+
+    // Every price change goes through here: indices first, then the bus
+    private void publishTick(int id, double price) {
+        if (indices != null) indices.onPrice(id, price);
+        bus.publishTick(id, price);
+    }
+
+    private void endTick() {
+        if (indices != null) indices.endTick();
+        if (tape != null) tape.record(stocks, marketIndex);
+    }
+
+    private void startDay(int id, double price) {
+        dayOpen[id] = price;
+        dayHigh[id] = price;
+        dayLow[id] = price;
+    }
+
+    private double movePrice(Stock s, double maxPct) {
+        double changePct = (rnd.nextDouble() * 2.0 * maxPct) - maxPct;
+        double p = Math.max(1.0, Math.round(s.getPrice() * (1 + changePct / 100.0)));
+        s.setPrice(p);
+        return p;
+    }
+}
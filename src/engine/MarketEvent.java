@@ -0,0 +1,37 @@
+package engine;
+
+/**
+ * Mutable market-data event. Instances live in the MarketDataBus ring and
+ * are reused; consumers receive their own copy and must not keep it past
+ * the callback.
+ */
+public class MarketEvent {
+
+    public static final byte TICK = 1;   // price change
+    public static final byte TRADE = 2;  // a fill (quantity, side)
+    public static final byte BAR = 3;    // a finished day: open/high/low/close
+
+    public long sequence;
+    public byte type;
+    public int symbolId;
+    public long timeNanos;
+    public double price;      // TICK/TRADE price, BAR close
+    public int quantity;      // TRADE only
+    public byte side;         // TRADE only, Side ordinal
+    public double open;       // BAR only
+    public double high;       // BAR only
+    public double low;        // BAR only
+
+    void copyFrom(MarketEvent o) {
+        sequence = o.sequence;
+        type = o.type;
+        symbolId = o.symbolId;
+        timeNanos = o.timeNanos;
+        price = o.price;
+        quantity = o.quantity;
+        side = o.side;
+        open = o.open;
+        high = o.high;
+        low = o.low;
+    }
+}
@@ -0,0 +1,214 @@
+package engine;
+
+import model.MarketState;
+import model.Stock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Market indices, kept up to date as prices change: the whole market and
+ * each sector, cap-weighted and/or equal-weighted.
+ *
+ * An index level is linear in its members' prices, so each member carries a
+ * weight (index points per rupee) and a price change moves the level by
+ * weight * (new - old). onPrice() does that for the few indices the stock is
+ * in, O(1) per price change and allocation-free. It is called by
+ * MarketEngine under its lock. endTick() appends the level of every index
+ * that moved to its instrument, a Stock that is not part of the market, so
+ * the index has a history, bars and charts like any stock.
+ *
+ *   cap-weighted:   weight = L * shares / sum(shares * price)   (at rebase)
+ *   equal-weighted: weight = L / (members * price)             (at rebase)
+ *
+ * rebase() recomputes the weights from current prices, keeping each level
+ * L where it is. The engine calls it when the universe changes and once a
+ * day, which also clears floating-point drift from the incremental sums.
+ *
+ * There are no share counts in the market data, so cap weights use a
+ * synthetic share count per symbol (stable, derived from the symbol).
+ * Sectors come from Stock.getSector(). Indices have negative ids (-1, -2,
+ * ...) so charts can tell them from stocks.
+ *
+ * Configured with system properties:
+ *   marketsim.index.weighting   cap,equal (default both)
+ *   marketsim.index.sectors     true | false: per-sector indices (default true)
+ */
+public class MarketIndices {
+
+    public enum Weighting { CAP, EQUAL }
+
+    public static final double BASE_LEVEL = 1000;
+    public static final String ALL = "Market";
+
+    private final String[] names;
+    private final String[] sectors;      // null: whole market
+    private final Weighting[] weightings;
+    private final Stock[] instruments;
+    private final double[] level;
+    private final boolean[] changed;
+
+    // per symbol id: the indices it is in and its weight in each
+    private int[][] memberOf = new int[0][];
+    private double[][] weight = new double[0][];
+    private double[] last = new double[0];
+
+    public MarketIndices(List<String> sectorNames, List<Weighting> weightings, boolean perSector) {
+        List<String> n = new ArrayList<>();
+        List<String> sec = new ArrayList<>();
+        List<Weighting> w = new ArrayList<>();
+        List<String> scopes = new ArrayList<>();
+        scopes.add(null);
+        if (perSector) scopes.addAll(sectorNames);
+        for (String scope : scopes) {
+            for (Weighting wt : weightings) {
+                n.add((scope == null ? ALL : scope) + (wt == Weighting.CAP ? " (cap)" : " (equal)"));
+                sec.add(scope);
+                w.add(wt);
+            }
+        }
+        int k = n.size();
+        this.names = n.toArray(new String[0]);
+        this.sectors = sec.toArray(new String[0]);
+        this.weightings = w.toArray(new Weighting[0]);
+        this.instruments = new Stock[k];
+        this.level = new double[k];
+        this.changed = new boolean[k];
+        for (int i = 0; i < k; i++) {
+            level[i] = BASE_LEVEL;
+            instruments[i] = new Stock(names[i], names[i], BASE_LEVEL);
+        }
+    }
+
+    // Indices configured by system properties over the sectors present in the market
+    public static MarketIndices fromProperties(MarketState market) {
+        List<Weighting> weightings = new ArrayList<>();
+        for (String w : System.getProperty("marketsim.index.weighting", "cap,equal").split(",")) {
+            if (!w.isBlank()) weightings.add(Weighting.valueOf(w.trim().toUpperCase()));
+        }
+        boolean perSector = Boolean.parseBoolean(System.getProperty("marketsim.index.sectors", "true"));
+        Map<String, Boolean> sectors = new LinkedHashMap<>();
+        for (Stock s : market.getStocks()) sectors.put(s.getSector(), true);
+        List<String> names = new ArrayList<>(sectors.keySet());
+        names.sort(null);
+        MarketIndices indices = new MarketIndices(names, weightings, perSector);
+        indices.rebase(market);
+        return indices;
+    }
+
+    // ---------- Updates (engine thread, under the engine lock) ----------
+
+    void onPrice(int id, double price) {
+        if (id >= last.length) return;
+        double delta = price - last[id];
+        if (delta == 0) return;
+        last[id] = price;
+        int[] in = memberOf[id];
+        double[] w = weight[id];
+        for (int m = 0; m < in.length; m++) {
+            level[in[m]] += w[m] * delta;
+            changed[in[m]] = true;
+        }
+    }
+
+    // Append the level of each index that moved since the last call to its history
+    void endTick() {
+        for (int i = 0; i < level.length; i++) {
+            if (!changed[i]) continue;
+            changed[i] = false;
+            instruments[i].setPrice(level[i]);
+        }
+    }
+
+    // Recompute members and weights from current prices, levels unchanged
+    void rebase(MarketState market) {
+        int n = market.getStockCount();
+        int k = level.length;
+        double[] capTotal = new double[k];
+        int[] members = new int[k];
+        boolean[][] in = new boolean[n][k];
+        double[] prices = new double[n];
+        for (int id = 0; id < n; id++) {
+            Stock s = market.getStock(id);
+            if (s == null || s.getPrice() <= 0) continue;
+            prices[id] = s.getPrice();
+            String sector = s.getSector();
+            for (int i = 0; i < k; i++) {
+                if (sectors[i] != null && !sectors[i].equals(sector)) continue;
+                in[id][i] = true;
+                members[i]++;
+                capTotal[i] += syntheticShares(s.getSymbol()) * prices[id];
+            }
+        }
+
+        int[][] memberOf = new int[n][];
+        double[][] weight = new double[n][];
+        for (int id = 0; id < n; id++) {
+            int count = 0;
+            for (int i = 0; i < k; i++) if (in[id][i]) count++;
+            memberOf[id] = new int[count];
+            weight[id] = new double[count];
+            Stock s = market.getStock(id);
+            int m = 0;
+            for (int i = 0; i < k; i++) {
+                if (!in[id][i]) continue;
+                memberOf[id][m] = i;
+                weight[id][m] = weightings[i] == Weighting.CAP
+                        ? level[i] * syntheticShares(s.getSymbol()) / capTotal[i]
+                        : level[i] / (members[i] * prices[id]);
+                m++;
+            }
+        }
+        this.memberOf = memberOf;
+        this.weight = weight;
+        this.last = prices;
+    }
+
+    // End of day: today's level becomes each instrument's previous close
+    void closeDay(MarketState market) {
+        for (Stock s : instruments) s.setPrevClose(s.getPrice());
+        rebase(market);
+    }
+
+    // Back to BASE_LEVEL with empty histories (market reset)
+    void restart(MarketState market) {
+        for (int i = 0; i < level.length; i++) {
+            level[i] = BASE_LEVEL;
+            changed[i] = false;
+            instruments[i].resetTo(BASE_LEVEL);
+        }
+        rebase(market);
+    }
+
+    // 10M..99M shares, fixed per symbol
+    public static long syntheticShares(String symbol) {
+        return (Math.floorMod(symbol.hashCode(), 90) + 10) * 1_000_000L;
+    }
+
+    // ---------- Queries ----------
+
+    public int getCount() { return level.length; }
+    public String getName(int index) { return names[index]; }
+    public String getSector(int index) { return sectors[index]; }
+    public Weighting getWeighting(int index) { return weightings[index]; }
+
+    // The index as an instrument: price = level, history = every level it has had
+    public Stock getInstrument(int index) { return instruments[index]; }
+
+    // Chart ids: index i is -(i + 1)
+    public static int chartId(int index) { return -(index + 1); }
+    public Stock byChartId(int chartId) {
+        int i = -chartId - 1;
+        return i >= 0 && i < instruments.length ? instruments[i] : null;
+    }
+
+    // The whole-market index of the given weighting, or -1
+    public int marketIndex(Weighting weighting) {
+        for (int i = 0; i < level.length; i++) {
+            if (sectors[i] == null && weightings[i] == weighting) return i;
+        }
+        return -1;
+    }
+}
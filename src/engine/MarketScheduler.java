@@ -0,0 +1,128 @@
+package engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns all periodic and delayed work in the process.
+ * Periodic and one-shot tasks share a small pool of scheduler threads (timing
+ * is based on System.nanoTime, so fixed-rate tasks do not drift with the wall
+ * clock); blocking per-session work runs on virtual threads when the JDK has
+ * them (21+) and on a cached daemon pool otherwise. Sessions therefore cost
+ * tasks, not OS threads.
+ */
+public class MarketScheduler {
+
+    private static final MarketScheduler SHARED = new MarketScheduler(
+            Integer.getInteger("marketsim.scheduler.threads", 2));
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ExecutorService sessionExecutor;
+    private volatile boolean paused;
+
+    public MarketScheduler(int timerThreads) {
+        timer = new ScheduledThreadPoolExecutor(timerThreads, daemonFactory("market-scheduler"));
+        timer.setRemoveOnCancelPolicy(true);
+        sessionExecutor = newSessionExecutor();
+    }
+
+    // Process-wide instance used by every session
+    public static MarketScheduler shared() { return SHARED; }
+
+    // ---------- Periodic / delayed work ----------
+
+    /**
+     * Runs task every periodNanos after initialDelayNanos. Market tasks are
+     * skipped while the market is paused. An exception is logged instead of
+     * silently cancelling the schedule.
+     */
+    public Handle scheduleAtFixedRate(String name, long initialDelayNanos, long periodNanos,
+                                      boolean marketTask, Runnable task) {
+        Runnable guarded = () -> {
+            if (marketTask && paused) return;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.err.println("Scheduled task '" + name + "' failed: " + t);
+                t.printStackTrace();
+            }
+        };
+        return new Handle(timer.scheduleAtFixedRate(guarded, Math.max(0, initialDelayNanos), periodNanos,
+                TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Drives target from clock: wakes once per clock period and lets the clock
+     * decide how many periods are due and how to apply them. While the market
+     * is paused, due periods of a market task are dropped rather than replayed,
+     * and the target is told through Tickable.skip so a saved phase (the last
+     * day tick) moves past them: paused days are lost for good, and are not
+     * caught up on the next launch either.
+     */
+    public Handle scheduleClock(String name, MarketClock clock, boolean marketTask, MarketClock.Tickable target) {
+        return scheduleAtFixedRate(name, clock.nanosUntilNext(System.nanoTime()), clock.getPeriodNanos(), false, () -> {
+            long now = System.nanoTime();
+            if (marketTask && paused) {
+                long skipped = clock.discardDue(now);
+                if (skipped > 0) target.skip(skipped);
+            } else {
+                clock.advance(now, target);
+            }
+        });
+    }
+
+    public Handle schedule(long delayMillis, Runnable task) {
+        return new Handle(timer.schedule(task, Math.max(0, delayMillis), TimeUnit.MILLISECONDS));
+    }
+
+    // Blocking or long-running per-session work (I/O, DB, client connections)
+    public void runSessionTask(Runnable task) {
+        sessionExecutor.execute(task);
+    }
+
+    // ---------- Market pause ----------
+    public void pauseMarket() { paused = true; }
+    public void resumeMarket() { paused = false; }
+    public boolean isMarketPaused() { return paused; }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        sessionExecutor.shutdownNow();
+    }
+
+    // Cancellable reference to a scheduled task
+    public static class Handle {
+        private final ScheduledFuture<?> future;
+
+        Handle(ScheduledFuture<?> future) { this.future = future; }
+
+        public void cancel() { future.cancel(false); }
+        public boolean isCancelled() { return future.isCancelled(); }
+    }
+
+    // ---------- Helpers ----------
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so the code still builds on JDK 17
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Object exec = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) exec;
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonFactory("market-session"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package engine;
+
+import model.Stock;
+
+/**
+ * Every stock's price at the end of each of the last ticks, one row per
+ * tick, plus the whole-market index level. A stock's history only grows
+ * when its price changes, so the last n entries of two histories are not
+ * the same moments; the rows of the tape are, which is what returns that
+ * are compared across stocks (beta, correlation, portfolio P&L) need.
+ *
+ * MarketEngine writes a row at the end of every tick, under its lock and
+ * without allocating (a ring over one flat array). Readers take a copy().
+ * Memory is capped at MAX_CELLS prices, so a large universe keeps fewer
+ * ticks than asked for.
+ */
+public final class PriceTape {
+
+    private static final int MAX_CELLS = 1 << 22;   // 32 MB of prices
+
+    private final int width;        // stocks per row
+    private final int capacity;     // rows kept
+    private final double[] prices;  // row r at [r * width, (r + 1) * width)
+    private final double[] market;  // index level per row, NaN without one
+    private int next;               // ring position of the next row
+    private int rows;               // rows held, up to capacity
+
+    PriceTape(int stocks, int ticks) {
+        this.width = stocks;
+        this.capacity = Math.max(2, Math.min(ticks, MAX_CELLS / Math.max(1, stocks)));
+        this.prices = new double[capacity * width];
+        this.market = new double[capacity];
+    }
+
+    synchronized void record(Stock[] stocks, Stock marketIndex) {
+        int at = next * width;
+        for (int id = 0; id < width; id++) {
+            Stock s = stocks[id];
+            prices[at + id] = s != null ? s.getPrice() : Double.NaN;
+        }
+        market[next] = marketIndex != null ? marketIndex.getPrice() : Double.NaN;
+        next = next + 1 == capacity ? 0 : next + 1;
+        if (rows < capacity) rows++;
+    }
+
+    // Prices before a reset are not the same series as after it
+    synchronized void clear() {
+        next = 0;
+        rows = 0;
+    }
+
+    // The last `ticks` rows (or all there are), one array per stock, oldest first
+    public synchronized Window copy(int ticks) {
+        int n = Math.min(ticks, rows);
+        int first = Math.floorMod(next - n, capacity);
+        double[][] columns = new double[width][];
+        for (int id = 0; id < width; id++) {
+            if (n > 0 && Double.isNaN(prices[Math.floorMod(next - 1, capacity) * width + id])) continue;
+            double[] c = new double[n];
+            for (int t = 0, r = first; t < n; t++, r = r + 1 == capacity ? 0 : r + 1) c[t] = prices[r * width + id];
+            columns[id] = c;
+        }
+        double[] levels = new double[n];
+        for (int t = 0, r = first; t < n; t++, r = r + 1 == capacity ? 0 : r + 1) levels[t] = market[r];
+        boolean indexed = n > 0;
+        for (int t = 0; t < n; t++) indexed &= !Double.isNaN(levels[t]);
+        return new Window(n, columns, indexed ? levels : null);
+    }
+
+    public int getCapacity() { return capacity; }
+
+    // ---------- Copy ----------
+
+    public static final class Window {
+        private final int ticks;
+        private final double[][] prices;
+        private final double[] market;
+
+        Window(int ticks, double[][] prices, double[] market) {
+            this.ticks = ticks;
+            this.prices = prices;
+            this.market = market;
+        }
+
+        public int getTicks() { return ticks; }
+        public int getSlots() { return prices.length; }
+
+        // Prices of one symbol id on each tick, null if it is not listed
+        public double[] prices(int symbolId) { return prices[symbolId]; }
+
+        // Market index level on each tick, null if there was no index throughout
+        public double[] marketLevels() { return market; }
+    }
+}
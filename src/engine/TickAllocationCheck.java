@@ -0,0 +1,69 @@
+package engine;
+
+import model.MarketState;
+import model.Stock;
+import utils.DoubleSeries;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * GC-churn regression check for the live tick path.
+ * Runs MarketEngine.tickLive() on a synthetic universe (with market indices
+ * and one bus consumer draining the published ticks), measures the bytes the
+ * calling thread allocates per tick (com.sun.management.ThreadMXBean) and
+ * exits with status 1 when the steady-state average exceeds the budget.
+ *
+ * Usage: java -cp out engine.TickAllocationCheck [stocks] [ticks] [maxBytesPerTick]
+ */
+public class TickAllocationCheck {
+
+    public static void main(String[] args) {
+        int stocks = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        double maxBytesPerTick = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation accounting not supported; skipping.");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        MarketState market = new MarketState();
+        for (int i = 0; i < stocks; i++) market.addStock(new Stock("Stock " + i, "S" + i, 100 + i));
+        MarketDataBus bus = new MarketDataBus(1 << 16);
+        MarketEngine engine = new MarketEngine(market, bus, new SplittableRandom(42));
+        MarketIndices indices = MarketIndices.fromProperties(market);
+        engine.setIndices(indices);
+        MarketDataBus.Subscription sub = bus.subscribe();
+        long[] seen = new long[1];
+        MarketDataBus.EventHandler consumer = e -> seen[0] += e.symbolId;
+
+        // warm up (JIT) then reserve history room so series growth is not counted as churn
+        for (int i = 0; i < 20_000; i++) { engine.tickLive(); sub.poll(consumer, Integer.MAX_VALUE); }
+        for (Stock s : market.getStocks()) s.getHistory().ensureCapacity(s.getHistory().size() + ticks + 1);
+        for (int i = 0; i < indices.getCount(); i++) {
+            DoubleSeries h = indices.getInstrument(i).getHistory();
+            h.ensureCapacity(h.size() + ticks + 1);
+        }
+
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < ticks; i++) {
+            engine.tickLive();
+            sub.poll(consumer, Integer.MAX_VALUE);
+        }
+        long after = threads.getThreadAllocatedBytes(tid);
+
+        double perTick = (after - before) / (double) ticks;
+        System.out.printf("tickLive: %d stocks, %d ticks, %.3f bytes/tick allocated (budget %.3f)%n",
+                stocks, ticks, perTick, maxBytesPerTick);
+        if (perTick > maxBytesPerTick) {
+            System.out.println("FAIL: tick path allocates in steady state");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,123 @@
+package engine;
+
+import metrics.Metrics;
+import model.MarketState;
+import model.Side;
+import model.StateStore;
+import model.Stock;
+import model.UserPortfolio;
+import utils.TimeUtils;
+
+import java.io.IOException;
+
+/**
+ * Fills orders against the current market price, adjusted by the
+ * ImpactModel: the fill pays spread and impact, and the permanent part of
+ * the impact moves the stock's price (through the engine, so it is ordered
+ * with the live ticks and ends up in the day's bar).
+ * Shared by the Swing order dialogs and the order-entry gateway, so every
+ * change to a portfolio goes through one lock: fills, and saves of a
+ * portfolio that fills may be touching (see savePortfolio).
+ */
+public class TradeExecutor {
+
+    public enum Result { FILLED, UNKNOWN_SYMBOL, BAD_QUANTITY, INSUFFICIENT_BALANCE, INSUFFICIENT_SHARES, NOT_MARKETABLE }
+
+    // Told about every fill, on the filling thread and under the executor lock
+    public interface FillListener {
+        void onFill(int symbolId, Side side, int quantity, double price);
+    }
+
+    // Price and quantity of the last fill, written by execute(); reusable by the caller
+    public static final class Fill {
+        public double price;
+        public int quantity;
+    }
+
+    private MarketEngine engine;
+    private MarketState market;
+    private final MarketDataBus bus;
+    private final ImpactModel impact;
+    private volatile FillListener fillListener;
+
+    public TradeExecutor(MarketEngine engine) {
+        this(engine, ImpactModel.fromProperties());
+    }
+
+    public TradeExecutor(MarketEngine engine, ImpactModel impact) {
+        this.engine = engine;
+        this.market = engine.getMarket();
+        this.bus = engine.getBus();
+        this.impact = impact;
+    }
+
+    public synchronized MarketState getMarket() { return market; }
+    public ImpactModel getImpactModel() { return impact; }
+
+    // Swap the engine (and its market) after an undo restored a snapshot
+    public synchronized void setEngine(MarketEngine engine) {
+        this.engine = engine;
+        this.market = engine.getMarket();
+    }
+
+    public void setFillListener(FillListener listener) { this.fillListener = listener; }
+
+    /**
+     * Buys or sells qty shares of symbolId for user at the current price
+     * plus impact. On FILLED the fill is recorded in the portfolio, published
+     * on the bus and copied into fill (if given).
+     */
+    public Result execute(UserPortfolio user, int symbolId, Side side, int qty, Fill fill) {
+        return execute(user, symbolId, side, qty, 0, fill);
+    }
+
+    // As above, but only fills if the fill price is at or better than limit (limit <= 0: no limit)
+    public synchronized Result execute(UserPortfolio user, int symbolId, Side side, int qty, double limit, Fill fill) {
+        long t0 = System.nanoTime();
+        Result r = fill(user, symbolId, side, qty, limit, fill);
+        Metrics.ORDER.recordSince(t0);
+        if (r == Result.FILLED) Metrics.ORDERS.increment();
+        return r;
+    }
+
+    private Result fill(UserPortfolio user, int symbolId, Side side, int qty, double limit, Fill fill) {
+        Stock s = market.getStock(symbolId);
+        if (s == null) return Result.UNKNOWN_SYMBOL;
+        if (qty <= 0) return Result.BAD_QUANTITY;
+
+        double mid = s.getPrice();
+        double price = impact.fillPrice(mid, side, qty);
+        if (limit > 0 && (side == Side.BUY ? price > limit : price < limit)) return Result.NOT_MARKETABLE;
+        double total = qty * price;
+        if (side == Side.BUY) {
+            if (user.getBalance() < total) return Result.INSUFFICIENT_BALANCE;
+            user.setBalance(user.getBalance() - total);
+            user.setPosition(symbolId, user.getPosition(symbolId) + qty);
+        } else {
+            int have = user.getPosition(symbolId);
+            if (have < qty) return Result.INSUFFICIENT_SHARES;
+            user.setPosition(symbolId, have - qty);
+            user.setDailyPnL(user.getDailyPnL() + (price - s.getPrevClose()) * qty);
+            user.setBalance(user.getBalance() + total);
+        }
+        user.recordTrade(TimeUtils.epochNanos(), side, symbolId, qty, price);
+        bus.publishTrade(symbolId, price, qty, (byte) side.ordinal());
+        // with an agent market the agents' reaction to the fill is the permanent impact
+        if (engine.getAgentMarket() == null) {
+            double after = impact.priceAfter(mid, side, qty);
+            if (after != mid) engine.applyImpact(symbolId, after);
+        }
+        FillListener l = fillListener;
+        if (l != null) l.onFill(symbolId, side, qty, price);
+        if (fill != null) {
+            fill.price = price;
+            fill.quantity = qty;
+        }
+        return Result.FILLED;
+    }
+
+    // Writes a portfolio's partition without a fill changing it halfway through
+    public synchronized void savePortfolio(UserPortfolio user) throws IOException {
+        StateStore.savePortfolio(user, market.getSymbols());
+    }
+}
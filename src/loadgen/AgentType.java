@@ -0,0 +1,15 @@
+package loadgen;
+
+/**
+ * Trading styles of the synthetic crowd.
+ * RANDOM picks side and symbol uniformly, MOMENTUM trades in the direction
+ * of the last price move, MARKET_MAKER alternates sides to keep its
+ * inventory near zero.
+ */
+public enum AgentType {
+    RANDOM, MOMENTUM, MARKET_MAKER;
+
+    private static final AgentType[] VALUES = values();
+
+    public static AgentType of(int ordinal) { return VALUES[ordinal]; }
+}
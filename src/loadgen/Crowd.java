@@ -0,0 +1,145 @@
+package loadgen;
+
+import engine.MarketScheduler;
+import engine.TradeExecutor;
+import model.MarketState;
+import model.Side;
+import model.Stock;
+import model.UserPortfolio;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A population of synthetic traders submitting market orders through the
+ * TradeExecutor, one order per submitOne() call. Agent state is kept in
+ * arrays indexed by agent number (type, portfolio). Agents get negative user
+ * ids and their portfolios are never saved; their trade logs are cleared
+ * after every fill so a long run does not grow memory.
+ *
+ * Not thread-safe: each thread driving orders owns its own Crowd.
+ * With start() a Crowd trades in the background at a fixed rate on the
+ * shared MarketScheduler ("crowd" liquidity in a normal session).
+ */
+public class Crowd {
+
+    public static final double[] DEFAULT_MIX = {0.5, 0.3, 0.2}; // RANDOM, MOMENTUM, MARKET_MAKER
+
+    private static final double START_CASH = 1e12;
+    private static final int START_SHARES = 1_000_000;   // per symbol, so sells are rarely rejected
+    private static final int MAX_QTY = 100;
+    private static final long STEP_MILLIS = 10;
+
+    private final TradeExecutor executor;
+    private final byte[] type;
+    private final UserPortfolio[] portfolios;
+    private final SplittableRandom rnd;
+
+    // single writer (the thread driving this crowd), read by reporters
+    private volatile long fills;
+    private volatile long rejects;
+
+    private MarketScheduler.Handle handle;
+    private double ordersOwed;   // fractional orders carried between background steps
+
+    public Crowd(TradeExecutor executor, int agents, double[] mix, long seed, int firstUserId) {
+        this.executor = executor;
+        this.rnd = new SplittableRandom(seed);
+        this.type = new byte[agents];
+        this.portfolios = new UserPortfolio[agents];
+        double total = 0;
+        for (double w : mix) total += w;
+        int symbols = executor.getMarket().getStockCount();
+        for (int i = 0; i < agents; i++) {
+            type[i] = (byte) pick(mix, total, rnd.nextDouble());
+            UserPortfolio p = new UserPortfolio(firstUserId - i, START_CASH);
+            for (int id = 0; id < symbols; id++) p.setPosition(id, START_SHARES);
+            portfolios[i] = p;
+        }
+    }
+
+    private static int pick(double[] mix, double total, double u) {
+        double x = u * total;
+        for (int t = 0; t < mix.length; t++) {
+            x -= mix[t];
+            if (x < 0) return t;
+        }
+        return mix.length - 1;
+    }
+
+    public int getAgentCount() { return type.length; }
+    public long getFills() { return fills; }
+    public long getRejects() { return rejects; }
+
+    // One agent decides and sends one market order
+    public TradeExecutor.Result submitOne() {
+        MarketState market = executor.getMarket();   // follows an undo's engine swap
+        int agent = rnd.nextInt(type.length);
+        int symbolId = rnd.nextInt(market.getStockCount());
+        UserPortfolio p = portfolios[agent];
+        Side side;
+        switch (AgentType.of(type[agent])) {
+            case MOMENTUM: {
+                Stock s = market.getStock(symbolId);
+                double m = s == null ? 0 : s.shortMomentum();
+                side = m > 0 ? Side.BUY : m < 0 ? Side.SELL : randomSide();
+                break;
+            }
+            case MARKET_MAKER:
+                side = p.getPosition(symbolId) > START_SHARES ? Side.SELL : Side.BUY;
+                break;
+            default:
+                side = randomSide();
+        }
+        int qty = 1 + rnd.nextInt(MAX_QTY);
+        TradeExecutor.Result r = executor.execute(p, symbolId, side, qty, null);
+        if (r == TradeExecutor.Result.FILLED) {
+            fills++;
+            p.getTodayTransactions().clear();
+            p.getPendingTransactions().clear();
+        } else {
+            rejects++;
+        }
+        return r;
+    }
+
+    private Side randomSide() {
+        return rnd.nextBoolean() ? Side.BUY : Side.SELL;
+    }
+
+    // ---------------- Background mode ----------------
+
+    /**
+     * Starts a crowd if marketsim.crowd.agents is set, trading at
+     * marketsim.crowd.rate orders per second (default 200); returns null otherwise.
+     */
+    public static Crowd startIfConfigured(TradeExecutor executor) {
+        Integer agents = Integer.getInteger("marketsim.crowd.agents");
+        if (agents == null || agents <= 0) return null;
+        double rate = Double.parseDouble(System.getProperty("marketsim.crowd.rate", "200"));
+        Crowd crowd = new Crowd(executor, agents, DEFAULT_MIX, System.nanoTime(), -1);
+        crowd.start(rate);
+        System.out.println("Crowd of " + agents + " agents trading at " + rate + " orders/s");
+        return crowd;
+    }
+
+    // Pauses with the market (it is a market task)
+    public synchronized void start(double ordersPerSecond) {
+        if (handle != null) return;
+        double perStep = ordersPerSecond * STEP_MILLIS / 1000.0;
+        long period = TimeUnit.MILLISECONDS.toNanos(STEP_MILLIS);
+        handle = MarketScheduler.shared().scheduleAtFixedRate("crowd", period, period, true, () -> {
+            ordersOwed += perStep;
+            int n = (int) ordersOwed;
+            ordersOwed -= n;
+            for (int i = 0; i < n; i++) submitOne();
+        });
+    }
+
+    public synchronized void stop() {
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+    }
+}
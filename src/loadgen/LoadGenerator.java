@@ -0,0 +1,155 @@
+package loadgen;
+
+import engine.MarketDataBus;
+import engine.MarketEngine;
+import engine.MarketScheduler;
+import engine.TradeExecutor;
+import metrics.LatencyHistogram;
+import metrics.MetricsReporter;
+import model.MarketState;
+import model.Stock;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Order-flow benchmark against a headless market (no UI, no DB).
+ * Worker threads each drive their own Crowd at an even share of the target
+ * rate while the engine ticks every millisecond. Orders are sent on a fixed
+ * schedule and latency is measured from each order's scheduled send time,
+ * so a stall shows up in the percentiles of every order it delayed
+ * (no coordinated omission). Prints one line per second and a summary.
+ *
+ * Usage: java -cp out loadgen.LoadGenerator [agents=10000] [ordersPerSec=50000] [seconds=10]
+ *        [threads=min(4, cores)] [stocks=100] [mix=50,30,20 (random,momentum,market-maker)]
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws InterruptedException {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 50_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Math.min(4, Runtime.getRuntime().availableProcessors());
+        int stocks = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        double[] mix = args.length > 5 ? parseMix(args[5]) : Crowd.DEFAULT_MIX;
+
+        MarketState market = new MarketState();
+        for (int i = 0; i < stocks; i++) market.addStock(new Stock("Stock " + i, "S" + i, 100 + i));
+        MarketDataBus bus = new MarketDataBus(1 << 16);
+        MarketEngine engine = new MarketEngine(market, bus);
+        TradeExecutor executor = new TradeExecutor(engine);
+
+        // prices keep moving so momentum agents have something to follow
+        MarketScheduler.Handle ticker = MarketScheduler.shared().scheduleAtFixedRate("loadgen-tick",
+                0, TimeUnit.MILLISECONDS.toNanos(1), true, engine::tickLive);
+
+        LatencyHistogram overall = new LatencyHistogram("fill");
+        LatencyHistogram interval = new LatencyHistogram("fill");
+        Crowd[] crowds = new Crowd[threads];
+        Thread[] workers = new Thread[threads];
+        long intervalNanos = (long) (threads * 1e9 / rate);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            int share = agents / threads + (t < agents % threads ? 1 : 0);
+            Crowd crowd = new Crowd(executor, Math.max(1, share), mix, 42 + t, -1 - t * (agents / threads + 1));
+            crowds[t] = crowd;
+            long first = start + t * intervalNanos / threads;   // stagger the workers' schedules
+            workers[t] = new Thread(() -> drive(crowd, first, intervalNanos, end, overall, interval), "loadgen-" + t);
+            workers[t].setDaemon(true);
+        }
+
+        System.out.printf("Load test: %d agents, %.0f orders/s target, %d threads, %d stocks, %ds%n",
+                agents, rate, threads, stocks, seconds);
+        for (Thread w : workers) w.start();
+
+        long lastOrders = 0, lastReport = start;
+        long firstGcCount = gcCount(), firstGcMillis = gcMillis();
+        long lastAllocated = MetricsReporter.totalAllocatedBytes();
+        LockSupport.parkNanos(Math.max(0, start - System.nanoTime()));
+        for (int sec = 1; sec <= seconds; sec++) {
+            LockSupport.parkNanos(Math.max(0, start + TimeUnit.SECONDS.toNanos(sec) - System.nanoTime()));
+            long now = System.nanoTime();
+            long orders = totalOrders(crowds);
+            long allocated = MetricsReporter.totalAllocatedBytes();
+            double secs = (now - lastReport) / 1e9;
+            Runtime rt = Runtime.getRuntime();
+            System.out.printf("[loadgen] t=%ds orders/s=%.0f fills=%d rejects=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus"
+                            + " heap=%dMB alloc=%.1fMB/s gc=%d (%dms)%n",
+                    sec, (orders - lastOrders) / secs, totalFills(crowds), totalRejects(crowds),
+                    interval.getP50Micros(), interval.getP99Micros(), interval.getP999Micros(), interval.getMaxMicros(),
+                    (rt.totalMemory() - rt.freeMemory()) >> 20,
+                    allocated < 0 ? 0 : Math.max(0, allocated - lastAllocated) / secs / (1024.0 * 1024.0),
+                    gcCount() - firstGcCount, gcMillis() - firstGcMillis);
+            interval.reset();
+            lastOrders = orders;
+            lastReport = now;
+            lastAllocated = allocated;
+        }
+        for (Thread w : workers) w.join();
+        ticker.cancel();
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long orders = totalOrders(crowds);
+        System.out.printf("Done: %d orders in %.1fs (%.0f orders/s), %d fills, %d rejects%n",
+                orders, elapsed, orders / elapsed, totalFills(crowds), totalRejects(crowds));
+        System.out.printf("Latency p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                overall.getP50Micros(), overall.getP99Micros(), overall.getP999Micros(), overall.getMaxMicros());
+        MarketScheduler.shared().shutdown();
+    }
+
+    // Sends one order per interval until end, catching up (without sleeping) when behind schedule
+    private static void drive(Crowd crowd, long first, long intervalNanos, long end,
+                              LatencyHistogram overall, LatencyHistogram interval) {
+        long due = first;
+        while (due < end) {
+            long now = System.nanoTime();
+            if (now < due) {
+                long wait = due - now;
+                if (wait > 50_000) LockSupport.parkNanos(wait - 20_000);
+                else Thread.onSpinWait();
+                continue;
+            }
+            crowd.submitOne();
+            long latency = System.nanoTime() - due;
+            overall.record(latency);
+            interval.record(latency);
+            due += intervalNanos;
+        }
+    }
+
+    private static double[] parseMix(String s) {
+        String[] parts = s.split(",");
+        double[] mix = new double[AgentType.values().length];
+        for (int i = 0; i < mix.length && i < parts.length; i++) mix[i] = Double.parseDouble(parts[i].trim());
+        return mix;
+    }
+
+    private static long totalOrders(Crowd[] crowds) { return totalFills(crowds) + totalRejects(crowds); }
+
+    private static long totalFills(Crowd[] crowds) {
+        long n = 0;
+        for (Crowd c : crowds) n += c.getFills();
+        return n;
+    }
+
+    private static long totalRejects(Crowd[] crowds) {
+        long n = 0;
+        for (Crowd c : crowds) n += c.getRejects();
+        return n;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+}
@@ -0,0 +1,28 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter. LongAdder keeps increments cheap under contention.
+ * The per-second rate is derived by MetricsReporter once per reporting period.
+ */
+public class Counter implements CounterMXBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private volatile double ratePerSecond;
+
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    public void increment() { count.increment(); }
+    public void add(long n) { count.add(n); }
+
+    @Override public long getCount() { return count.sum(); }
+    @Override public double getRatePerSecond() { return ratePerSecond; }
+
+    void setRatePerSecond(double rate) { this.ratePerSecond = rate; }
+}
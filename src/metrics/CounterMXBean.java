@@ -0,0 +1,7 @@
+package metrics;
+
+// JMX view of a Counter
+public interface CounterMXBean {
+    long getCount();
+    double getRatePerSecond();
+}
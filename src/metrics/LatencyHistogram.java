@@ -0,0 +1,95 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear latency histogram (HdrHistogram-style bucketing).
+ * Values below 128 ns get their own bucket; above that each power of two is
+ * split into 64 sub-buckets, i.e. about 1.5% relative precision up to Long.MAX_VALUE.
+ * record() is lock-free and allocation-free, so it can stay on in production.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;      // 64
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;           // 128
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    // Record one measurement in nanoseconds
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) { /* retry */ }
+    }
+
+    // Record the time elapsed since startNanos (a System.nanoTime() reading)
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Value (nanos) at or below which the given fraction of samples fall
+    public long percentile(double fraction) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueIn(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR_LIMIT) return (int) v;
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int shift = msb - SUB_BUCKET_BITS;                            // >= 1
+        int mantissa = (int) (v >>> shift) - SUB_BUCKETS;             // 0..63
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static long highestValueIn(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long mantissa = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    // ---------- MXBean view (microseconds) ----------
+    @Override public long getCount() { return total.get(); }
+    @Override public double getMeanMicros() { long n = total.get(); return n == 0 ? 0 : sum.get() / (double) n / 1000.0; }
+    @Override public double getP50Micros() { return percentile(0.50) / 1000.0; }
+    @Override public double getP99Micros() { return percentile(0.99) / 1000.0; }
+    @Override public double getP999Micros() { return percentile(0.999) / 1000.0; }
+    @Override public double getMaxMicros() { return max.get() / 1000.0; }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // One-line summary for the periodic log
+    public String summary() {
+        return String.format("%s n=%d p50=%.0fus p99=%.0fus max=%.0fus",
+                name, getCount(), getP50Micros(), getP99Micros(), getMaxMicros());
+    }
+}
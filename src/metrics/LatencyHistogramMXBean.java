@@ -0,0 +1,12 @@
+package metrics;
+
+// JMX view of a LatencyHistogram
+public interface LatencyHistogramMXBean {
+    long getCount();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+    void reset();
+}
@@ -0,0 +1,59 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics registry.
+ * The hot-path instruments are static fields so recording is a plain field
+ * read plus an atomic increment; everything is also registered with JMX
+ * under the "marketsim" domain.
+ */
+public class Metrics {
+
+    private static final List<LatencyHistogram> HISTOGRAMS = new ArrayList<>();
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+
+    // ---------- Latencies ----------
+    public static final LatencyHistogram TICK = histogram("tick");        // one engine price step
+    public static final LatencyHistogram ORDER = histogram("order");      // validating + applying a trade
+    public static final LatencyHistogram PERSIST = histogram("persist");  // writing state to disk/DB
+    public static final LatencyHistogram RENDER = histogram("render");    // EDT work to refresh the UI
+
+    // ---------- Counters ----------
+    public static final Counter TICKS = counter("ticks");
+    public static final Counter ORDERS = counter("orders");
+
+    private Metrics() {}
+
+    private static LatencyHistogram histogram(String name) {
+        LatencyHistogram h = new LatencyHistogram(name);
+        HISTOGRAMS.add(h);
+        register("marketsim:type=Latency,name=" + name, h);
+        return h;
+    }
+
+    private static Counter counter(String name) {
+        Counter c = new Counter(name);
+        COUNTERS.add(c);
+        register("marketsim:type=Counter,name=" + name, c);
+        return c;
+    }
+
+    static void register(String objectName, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName(objectName);
+            if (!server.isRegistered(on)) server.registerMBean(mbean, on);
+        } catch (Exception e) {
+            System.err.println("Could not register MBean " + objectName + ": " + e.getMessage());
+        }
+    }
+
+    public static List<LatencyHistogram> histograms() { return Collections.unmodifiableList(HISTOGRAMS); }
+    public static List<Counter> counters() { return Collections.unmodifiableList(COUNTERS); }
+}
@@ -0,0 +1,93 @@
+package metrics;
+
+import engine.MarketScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one metrics line per period and refreshes derived values:
+ * counter rates and the JVM-wide allocation rate (sum of per-thread
+ * allocated bytes from com.sun.management.ThreadMXBean). The first report
+ * is preceded by the startup phases.
+ */
+public class MetricsReporter implements MetricsReporterMXBean {
+
+    private final long periodMillis;
+    private MarketScheduler.Handle handle;
+
+    private long lastReportNanos;
+    private long[] lastCounts;
+    private long lastAllocatedBytes;
+    private volatile double allocationRate;
+    private boolean startupReported;
+
+    public MetricsReporter(long periodMillis) {
+        this.periodMillis = periodMillis;
+        Metrics.register("marketsim:type=Reporter", this);
+    }
+
+    public synchronized void start() {
+        if (handle != null) return;
+        lastReportNanos = System.nanoTime();
+        lastCounts = new long[Metrics.counters().size()];
+        lastAllocatedBytes = totalAllocatedBytes();
+        long period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        handle = MarketScheduler.shared().scheduleAtFixedRate("metrics", period, period, false, this::report);
+    }
+
+    public synchronized void stop() {
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+    }
+
+    void report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+
+        if (!startupReported) {
+            startupReported = true;
+            System.out.println(Startup.summary());
+        }
+
+        StringBuilder sb = new StringBuilder("[metrics]");
+        for (int i = 0; i < Metrics.counters().size(); i++) {
+            Counter c = Metrics.counters().get(i);
+            long count = c.getCount();
+            c.setRatePerSecond((count - lastCounts[i]) / seconds);
+            lastCounts[i] = count;
+            sb.append(String.format(" %s/s=%.1f", c.getName(), c.getRatePerSecond()));
+        }
+        long allocated = totalAllocatedBytes();
+        if (allocated >= 0 && lastAllocatedBytes >= 0) {
+            // threads that exit take their counts with them, so clamp at zero
+            allocationRate = Math.max(0, allocated - lastAllocatedBytes) / seconds;
+        }
+        lastAllocatedBytes = allocated;
+        sb.append(String.format(" alloc=%.1fMB/s", allocationRate / (1024.0 * 1024.0)));
+        for (LatencyHistogram h : Metrics.histograms()) {
+            if (h.getCount() > 0) sb.append(" | ").append(h.summary());
+        }
+        System.out.println(sb);
+    }
+
+    // -1 when the JVM does not support per-thread allocation accounting
+    public static long totalAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return -1;
+        long sum = 0;
+        for (long bytes : sun.getThreadAllocatedBytes(sun.getAllThreadIds())) {
+            if (bytes > 0) sum += bytes;
+        }
+        return sum;
+    }
+
+    @Override public double getAllocationRateBytesPerSecond() { return allocationRate; }
+    @Override public long getPeriodMillis() { return periodMillis; }
+}
@@ -0,0 +1,7 @@
+package metrics;
+
+// JMX view of the periodic reporter's derived values
+public interface MetricsReporterMXBean {
+    double getAllocationRateBytesPerSecond();
+    long getPeriodMillis();
+}
@@ -0,0 +1,36 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Startup phases of this run: how long each took, and milestones as time
+ * since JVM start. Recorded once by app.Main and the launcher (phases may
+ * overlap, e.g. DB init runs beside the login window) and printed by
+ * MetricsReporter with its first report. Kept apart from Metrics so that
+ * recording does not pull in the JMX registration during startup.
+ */
+public final class Startup {
+
+    private static final long JVM_START_MILLIS = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private static final Map<String, String> PHASES = new LinkedHashMap<>();
+
+    private Startup() {}
+
+    public static synchronized void recordSince(String phase, long startNanos) {
+        PHASES.put(phase, ((System.nanoTime() - startNanos) / 1_000_000) + "ms");
+    }
+
+    public static synchronized void mark(String milestone) {
+        PHASES.put(milestone, "@" + (System.currentTimeMillis() - JVM_START_MILLIS) + "ms");
+    }
+
+    public static synchronized String summary() {
+        StringBuilder sb = new StringBuilder("[startup]");
+        for (Map.Entry<String, String> e : PHASES.entrySet()) {
+            sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package model;
+
+import utils.DoubleSeries;
+
+import java.util.Arrays;
+
+/**
+ * OHLC bars (plus the sum of prices) over a price series at every
+ * power-of-two bar size, from 2^BASE_LEVEL ticks per bar up to 2^MAX_LEVEL.
+ * Bar b of level k covers ticks [b << k, (b + 1) << k); the last bar of
+ * each level is the one still forming.
+ *
+ * The pyramid follows its series lazily: sync() folds in the ticks added
+ * since the last call, O(levels) per tick, so the price tick itself pays
+ * nothing. A chart asks for the level whose bars are wide enough on
+ * screen, so it draws a few hundred bars whatever the zoom. If the series
+ * is cleared (market reset) the pyramid starts over, even when the series
+ * has regrown past its old length by the next sync.
+ *
+ * query() aggregates any tick range [from, to) in O(log n): the range is
+ * cut into aligned complete blocks, the largest that fit, and fewer than
+ * 2^BASE_LEVEL raw ticks at either end.
+ */
+public class BarPyramid {
+
+    public static final int BASE_LEVEL = 4;    // finest bars: 16 ticks
+    public static final int MAX_LEVEL = 30;
+    private static final int LEVELS = MAX_LEVEL - BASE_LEVEL + 1;
+
+    private final DoubleSeries source;
+    private int consumed;
+    private int generation;     // source generation the bars were built from
+
+    // [level - BASE_LEVEL][bar]
+    private final double[][] open = new double[LEVELS][];
+    private final double[][] high = new double[LEVELS][];
+    private final double[][] low = new double[LEVELS][];
+    private final double[][] close = new double[LEVELS][];
+    private final double[][] sum = new double[LEVELS][];
+    private final int[] count = new int[LEVELS];
+
+    public BarPyramid(DoubleSeries source) {
+        this.source = source;
+        clear();
+    }
+
+    private void clear() {
+        for (int l = 0; l < LEVELS; l++) {
+            open[l] = new double[16];
+            high[l] = new double[16];
+            low[l] = new double[16];
+            close[l] = new double[16];
+            sum[l] = new double[16];
+            count[l] = 0;
+        }
+        consumed = 0;
+    }
+
+    // Fold in ticks appended since the last call; returns the tick count
+    public synchronized int sync() {
+        int g = source.generation();
+        int n = source.size();
+        if (g != generation || n < consumed) {
+            clear();
+            generation = g;
+        }
+        double[] values = source.array();
+        for (int i = consumed; i < n; i++) append(i, values[i]);
+        consumed = n;
+        return n;
+    }
+
+    private void append(int tick, double v) {
+        for (int l = 0; l < LEVELS; l++) {
+            int b = tick >>> (l + BASE_LEVEL);
+            if (b == count[l]) {
+                if (b == open[l].length) grow(l);
+                open[l][b] = high[l][b] = low[l][b] = close[l][b] = sum[l][b] = v;
+                count[l] = b + 1;
+            } else {
+                if (v > high[l][b]) high[l][b] = v;
+                if (v < low[l][b]) low[l][b] = v;
+                close[l][b] = v;
+                sum[l][b] += v;
+            }
+        }
+    }
+
+    private void grow(int l) {
+        int cap = open[l].length * 2;
+        open[l] = Arrays.copyOf(open[l], cap);
+        high[l] = Arrays.copyOf(high[l], cap);
+        low[l] = Arrays.copyOf(low[l], cap);
+        close[l] = Arrays.copyOf(close[l], cap);
+        sum[l] = Arrays.copyOf(sum[l], cap);
+    }
+
+    // ---------- Queries (as of the last sync) ----------
+
+    public synchronized int size() { return consumed; }
+
+    // Smallest level whose bars span at least ticksPerBar ticks
+    public static int levelFor(long ticksPerBar) {
+        int k = 64 - Long.numberOfLeadingZeros(Math.max(1, ticksPerBar) - 1);
+        return Math.max(BASE_LEVEL, Math.min(MAX_LEVEL, k));
+    }
+
+    public synchronized int barCount(int level) { return count[level - BASE_LEVEL]; }
+    public synchronized double open(int level, int bar) { return open[level - BASE_LEVEL][bar]; }
+    public synchronized double high(int level, int bar) { return high[level - BASE_LEVEL][bar]; }
+    public synchronized double low(int level, int bar) { return low[level - BASE_LEVEL][bar]; }
+    public synchronized double close(int level, int bar) { return close[level - BASE_LEVEL][bar]; }
+
+    /**
+     * Copies bars [from, to) of a level into out (o, h, l, c per bar, so
+     * out needs 4 * (to - from) slots); returns how many bars were copied.
+     * One lock round trip for a whole screen of bars.
+     */
+    public synchronized int copyBars(int level, int from, int to, double[] out) {
+        int l = level - BASE_LEVEL;
+        from = Math.max(0, from);
+        to = Math.min(count[l], to);
+        int n = 0;
+        for (int b = from; b < to; b++, n++) {
+            out[4 * n] = open[l][b];
+            out[4 * n + 1] = high[l][b];
+            out[4 * n + 2] = low[l][b];
+            out[4 * n + 3] = close[l][b];
+        }
+        return n;
+    }
+
+    // ---------- Range aggregates ----------
+
+    // Aggregate of a tick range, filled by query()
+    public static final class Stats {
+        public int count;
+        public double first, last, min, max, sum;
+
+        public double mean() { return count == 0 ? Double.NaN : sum / count; }
+
+        void clear() {
+            count = 0;
+            first = last = sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+
+        void add(double f, double l, double lo, double hi, double s, int n) {
+            if (count == 0) first = f;
+            last = l;
+            if (lo < min) min = lo;
+            if (hi > max) max = hi;
+            sum += s;
+            count += n;
+        }
+    }
+
+    /**
+     * Aggregates ticks [from, to) (clamped to what has been synced) into out
+     * and returns it. O(log n) blocks plus at most 2 * 2^BASE_LEVEL raw ticks.
+     */
+    public synchronized Stats query(int from, int to, Stats out) {
+        out.clear();
+        from = Math.max(0, from);
+        to = Math.min(consumed, to);
+        double[] raw = source.array();
+        int i = from;
+        int base = 1 << BASE_LEVEL;
+        // raw ticks up to the first block boundary
+        while (i < to && (i & (base - 1)) != 0) {
+            out.add(raw[i], raw[i], raw[i], raw[i], raw[i], 1);
+            i++;
+        }
+        // the largest aligned complete blocks that fit
+        while (to - i >= base) {
+            int k = Math.min(MAX_LEVEL, Integer.numberOfTrailingZeros(i == 0 ? Integer.MIN_VALUE : i));
+            while (k > BASE_LEVEL && (long) i + (1L << k) > to) k--;
+            int l = k - BASE_LEVEL, b = i >>> k;
+            out.add(open[l][b], close[l][b], low[l][b], high[l][b], sum[l][b], 1 << k);
+            i += 1 << k;
+        }
+        // raw tail
+        for (; i < to; i++) out.add(raw[i], raw[i], raw[i], raw[i], raw[i], 1);
+        return out;
+    }
+
+    /**
+     * Min and max of each of `columns` equal slices of [from, to), for
+     * drawing a range at one column per pixel: O(columns * log n).
+     */
+    public synchronized void downsample(int from, int to, int columns, double[] outMin, double[] outMax) {
+        Stats st = new Stats();
+        double step = (to - from) / (double) columns;
+        for (int c = 0; c < columns; c++) {
+            int a = from + (int) Math.floor(c * step);
+            int b = Math.max(a + 1, from + (int) Math.floor((c + 1) * step));
+            query(a, b, st);
+            outMin[c] = st.min;
+            outMax[c] = st.max;
+        }
+    }
+}
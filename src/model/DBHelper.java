@@ -1,7 +1,13 @@
 package model;
 
+import utils.TimeUtils;
+
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class DBHelper {
 
@@ -10,8 +16,22 @@ public class DBHelper {
     private static final String DB_PATH = DB_FOLDER + File.separator + "market_simulator.db";
     private static final String DB_URL = "jdbc:sqlite:" + DB_PATH;
 
-    // Load driver + ensure folder exists + create table
-    static {
+    // Driver + folder + tables, prepared once; every connection waits for it
+    private static CompletableFuture<Void> init;
+
+    // Starts the setup on a background thread (call early, e.g. beside the login window)
+    public static synchronized CompletableFuture<Void> initAsync() {
+        if (init == null) init = CompletableFuture.runAsync(DBHelper::initialize);
+        return init;
+    }
+
+    private static Connection connect() throws SQLException {
+        initAsync().join();
+        return DriverManager.getConnection(DB_URL);
+    }
+
+    // Load driver + ensure folder exists + create tables
+    private static void initialize() {
         try {
             // 1) Load SQLite JDBC driver
             Class.forName("org.sqlite.JDBC");
@@ -32,6 +52,19 @@ public class DBHelper {
                         + ");";
 
                 stmt.execute(sql);
+
+                // Trade history, one row per fill; ts is epoch millis
+                stmt.execute("CREATE TABLE IF NOT EXISTS transactions ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "user_id INTEGER NOT NULL,"
+                        + "ts INTEGER NOT NULL,"
+                        + "symbol TEXT NOT NULL,"
+                        + "type TEXT NOT NULL,"
+                        + "quantity INTEGER NOT NULL,"
+                        + "price REAL NOT NULL"
+                        + ");");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_transactions_user_time ON transactions (user_id, ts);");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_transactions_user_symbol ON transactions (user_id, symbol);");
             }
 
             System.out.println("SQLite DB initialized at: " + DB_PATH);
@@ -46,7 +79,7 @@ public class DBHelper {
     // Check if user exists
     public static boolean userExists(String username) throws SQLException {
         String sql = "SELECT id FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, username);
             ResultSet rs = pstmt.executeQuery();
@@ -57,7 +90,7 @@ public class DBHelper {
     // Insert new user
     public static void insertUser(User user) throws SQLException {
         String sql = "INSERT INTO users (username, password, balance) VALUES (?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setString(2, user.getPassword());
@@ -69,7 +102,7 @@ public class DBHelper {
     // Authenticate user
     public static User authenticateUser(String username, String password) throws SQLException {
         String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, username);
             pstmt.setString(2, password);
@@ -90,11 +123,103 @@ public class DBHelper {
     // Update user balance
     public static void updateUserBalance(User user) throws SQLException {
         String sql = "UPDATE users SET balance = ? WHERE id = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setDouble(1, user.getBalance());
             pstmt.setInt(2, user.getId());
             pstmt.executeUpdate();
         }
     }
+
+    // ---------------------- TRANSACTIONS ----------------------
+
+    // Insert a batch of fills in a single SQLite transaction
+    public static void insertTransactions(int userId, TradeLog txs, SymbolRegistry symbols) throws SQLException {
+        if (txs == null || txs.isEmpty()) return;
+        String sql = "INSERT INTO transactions (user_id, ts, symbol, type, quantity, price) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < txs.size(); i++) {
+                    pstmt.setInt(1, userId);
+                    pstmt.setLong(2, TimeUtils.nanosToMillis(txs.timeNanos(i)));
+                    pstmt.setString(3, symbols.symbol(txs.symbolId(i)));
+                    pstmt.setString(4, txs.side(i).name());
+                    pstmt.setInt(5, txs.quantity(i));
+                    pstmt.setDouble(6, txs.price(i));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Number of stored fills for a user (served from the user_id index)
+    public static int countTransactions(int userId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM transactions WHERE user_id = ?";
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // One page of fills in time order; rows [offset, offset + limit)
+    public static List<StockTransaction> getTransactionsPage(int userId, int offset, int limit) throws SQLException {
+        String sql = "SELECT ts, symbol, type, quantity, price FROM transactions "
+                + "WHERE user_id = ? ORDER BY ts, id LIMIT ? OFFSET ?";
+        List<StockTransaction> page = new ArrayList<>(limit);
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, limit);
+            pstmt.setInt(3, offset);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                page.add(new StockTransaction(
+                        rs.getString("symbol"),
+                        Side.valueOf(rs.getString("type")),
+                        rs.getInt("quantity"),
+                        rs.getDouble("price"),
+                        TimeUtils.millisToNanos(rs.getLong("ts"))
+                ));
+            }
+        }
+        return page;
+    }
+
+    public interface TransactionVisitor {
+        void visit(long tsMillis, String symbol, String type, int quantity, double price) throws IOException;
+    }
+
+    // Every fill of a user in time order from one cursor, for exports of any size
+    public static void forEachTransaction(int userId, TransactionVisitor visitor) throws SQLException, IOException {
+        String sql = "SELECT ts, symbol, type, quantity, price FROM transactions WHERE user_id = ? ORDER BY ts, id";
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setFetchSize(4096);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getDouble(5));
+                }
+            }
+        }
+    }
+
+    // Remove the fills of a user made before a market reset; later fills are kept
+    public static void deleteTransactionsBefore(int userId, long tsMillis) throws SQLException {
+        String sql = "DELETE FROM transactions WHERE user_id = ? AND ts < ?";
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setLong(2, tsMillis);
+            pstmt.executeUpdate();
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package model;
+
+import utils.DoubleSeries;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * One stock's price history on disk: raw little-endian doubles, appended
+ * to on every save. The market header records how many of them belong to
+ * the history (anything past that is a save that did not finish) and the
+ * last few prices, so a stock can run before its history is read.
+ */
+final class HistorySegment {
+
+    private static final int CHUNK = 1 << 16;   // doubles per read/write
+
+    final File file;
+    int count;          // prices in the file that belong to the history
+    double[] recent;    // the last of them, oldest first
+
+    HistorySegment(File file, int count, double[] recent) {
+        this.file = file;
+        this.count = count;
+        this.recent = recent != null ? recent : new double[0];
+    }
+
+    // Reads the first n persisted prices into a series with room for extra more
+    DoubleSeries read(int n, int extra) throws IOException {
+        DoubleSeries out = new DoubleSeries(n + extra);
+        forEach(n, (prices, from, to) -> out.addAll(prices, from, to - from));
+        return out;
+    }
+
+    // Passes the first n persisted prices to the visitor, a chunk at a time
+    void forEach(int n, Stock.PriceVisitor visitor) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long available = ch.size() / Double.BYTES;
+            if (available < n) {
+                throw new IOException(file + " has " + available + " prices, expected " + n);
+            }
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            double[] chunk = new double[CHUNK];
+            int done = 0;
+            while (done < n) {
+                int m = Math.min(CHUNK, n - done);
+                buf.clear().limit(m * Double.BYTES);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf) < 0) throw new IOException("Unexpected end of " + file);
+                }
+                buf.flip();
+                buf.asDoubleBuffer().get(chunk, 0, m);
+                visitor.visit(chunk, 0, m);
+                done += m;
+            }
+        }
+    }
+
+    // Writes prices[from, to) as history entries [at, at + to - from); drops anything after them
+    void write(int at, double[] prices, int from, int to, int recentCount) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.position((long) at * Double.BYTES);
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = from; i < to; ) {
+                int m = Math.min(CHUNK, to - i);
+                buf.clear();
+                buf.asDoubleBuffer().put(prices, i, m);
+                buf.limit(m * Double.BYTES);
+                while (buf.hasRemaining()) ch.write(buf);
+                i += m;
+            }
+            count = at + to - from;
+            ch.truncate((long) count * Double.BYTES);
+        }
+        if (at == 0) recent = new double[0];
+        int k = Math.min(recentCount, to - from);
+        if (k > 0) {
+            double[] r = Arrays.copyOf(recent, recent.length + k);
+            System.arraycopy(prices, to - k, r, recent.length, k);
+            recent = Arrays.copyOfRange(r, Math.max(0, r.length - recentCount), r.length);
+        }
+    }
+}
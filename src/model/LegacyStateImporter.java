@@ -0,0 +1,226 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the single-file sim_state.dat of the layout before the market/user
+ * split: one serialized SimulatorState holding the stocks, one (login-less)
+ * portfolio and its transactions. Both writers of that file are understood,
+ * the launcher before the split (model.SimulatorState) and the standalone
+ * working_complete.MarketSimulator. Their classes no longer exist or are
+ * not reachable from here, so the stream is read into mirror classes with
+ * the same fields (readClassDescriptor swaps the descriptors).
+ *
+ * Stocks are matched to the market by symbol, then by name; unknown ones
+ * are added. The file itself is left in place.
+ */
+final class LegacyStateImporter {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private LegacyStateImporter() {}
+
+    // Applies the file to market and portfolio (either may be null); returns a summary, or null if unreadable
+    static String importInto(File file, MarketState market, UserPortfolio portfolio) {
+        State legacy;
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file));
+             ObjectInputStream in = new MirrorInputStream(raw)) {
+            Object obj = in.readObject();
+            if (!(obj instanceof State)) return null;
+            legacy = (State) obj;
+        } catch (Exception e) {
+            System.err.println("Could not read legacy " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        int stocks = 0, holdings = 0, trades = 0;
+        Map<String, Stock> byKey = new HashMap<>();
+        for (Map.Entry<?, ?> e : legacy.stocks.entrySet()) {
+            String key = String.valueOf(e.getKey());
+            Stock s = resolve(market, key, e.getValue());
+            if (s == null) continue;
+            byKey.put(key, s);
+            stocks++;
+        }
+        if (market != null) {
+            market.setDayIndex(legacy.dayIndex);
+            market.setLastTickTime(legacy.lastTickTime);
+        }
+
+        if (portfolio != null) {
+            portfolio.setBalance(legacy.balance);
+            portfolio.setDailyPnL(legacy.dailyPnL);
+            for (Map.Entry<?, ?> e : legacy.portfolio.entrySet()) {
+                Stock s = lookup(market, byKey, String.valueOf(e.getKey()));
+                if (s == null || !(e.getValue() instanceof Integer)) continue;
+                portfolio.setPosition(s.getId(), (Integer) e.getValue());
+                holdings++;
+            }
+            trades = appendTrades(legacy.allTransactions, market, byKey, portfolio.getPendingTransactions());
+            appendTrades(legacy.todayTransactions, market, byKey, portfolio.getTodayTransactions());
+        }
+        return String.format("%d stocks, %d holdings, %d transactions", stocks, holdings, trades);
+    }
+
+    // The market's stock for a legacy entry, with the legacy prices applied (added if the market lacks it)
+    private static Stock resolve(MarketState market, String key, Object value) {
+        String name, symbol;
+        double price, prevClose;
+        List<Double> history;
+        if (value instanceof SymbolStock) {
+            SymbolStock o = (SymbolStock) value;
+            name = o.name;
+            symbol = o.symbol;
+            price = o.price;
+            prevClose = o.prevClose;
+            history = o.history;
+        } else if (value instanceof NamedStock) {
+            NamedStock o = (NamedStock) value;
+            name = o.name;
+            symbol = key.toUpperCase().replaceAll("[^A-Z0-9]", "");
+            price = o.price;
+            prevClose = o.prevClose;
+            history = o.history;
+        } else {
+            return null;
+        }
+        if (market == null) return null;
+        Stock s = lookup(market, null, symbol != null ? symbol : key);
+        if (s == null && name != null) s = lookup(market, null, name);
+        if (s == null) s = market.addStock(new Stock(name != null ? name : key, symbol != null ? symbol : key, price));
+
+        int n = history != null ? history.size() : 0;
+        double[] prices = new double[Math.max(1, n)];
+        for (int i = 0; i < n; i++) prices[i] = history.get(i);
+        if (n == 0) prices[0] = price;
+        s.resetTo(prices[0]);
+        s.appendPrices(Arrays.copyOfRange(prices, 1, prices.length), prices.length - 1);
+        if (s.getPrice() != price) s.setPrice(price);
+        s.setPrevClose(prevClose);
+        return s;
+    }
+
+    // By legacy key, symbol, then name
+    private static Stock lookup(MarketState market, Map<String, Stock> byKey, String key) {
+        if (byKey != null && byKey.containsKey(key)) return byKey.get(key);
+        if (market == null || key == null) return null;
+        Stock s = market.getStock(key);
+        if (s != null) return s;
+        for (Stock c : market.getStocks()) {
+            if (key.equals(c.getName())) return c;
+        }
+        return null;
+    }
+
+    private static int appendTrades(List<?> trades, MarketState market, Map<String, Stock> byKey, TradeLog log) {
+        if (trades == null) return 0;
+        int n = 0;
+        for (Object t : trades) {
+            String stock, type, time;
+            int quantity;
+            double price;
+            if (t instanceof Trade) {
+                Trade o = (Trade) t;
+                stock = o.stockName; type = o.type; quantity = o.quantity; price = o.price; time = o.timestamp;
+            } else if (t instanceof ShortTrade) {
+                ShortTrade o = (ShortTrade) t;
+                stock = o.stock; type = o.type; quantity = o.qty; price = o.price; time = o.time;
+            } else {
+                continue;
+            }
+            Stock s = lookup(market, byKey, stock);
+            if (s == null) continue;
+            Side side = "SELL".equalsIgnoreCase(type) ? Side.SELL : Side.BUY;
+            log.append(epochNanos(time), side, s.getId(), quantity, price);
+            n++;
+        }
+        return n;
+    }
+
+    private static long epochNanos(String timestamp) {
+        try {
+            return LocalDateTime.parse(timestamp, TIMESTAMP).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    * 1_000_000L;
+        } catch (RuntimeException e) {
+            return System.currentTimeMillis() * 1_000_000L;
+        }
+    }
+
+    // ---------- Mirrors of the legacy classes (same field names and types) ----------
+
+    private static final Map<String, Class<?>> MIRRORS = Map.of(
+            "model.SimulatorState", State.class,
+            "model.Stock", SymbolStock.class,
+            "model.StockTransaction", Trade.class,
+            "working_complete.MarketSimulator$SimulatorState", State.class,
+            "working_complete.MarketSimulator$Stock", NamedStock.class,
+            "working_complete.MarketSimulator$Transaction", ShortTrade.class);
+
+    private static final class MirrorInputStream extends ObjectInputStream {
+        MirrorInputStream(InputStream in) throws IOException { super(in); }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            Class<?> mirror = MIRRORS.get(desc.getName());
+            return mirror != null ? ObjectStreamClass.lookup(mirror) : desc;
+        }
+    }
+
+    private static final class State implements Serializable {
+        Map<?, ?> stocks;
+        Map<?, ?> portfolio;
+        List<?> todayTransactions;
+        List<?> allTransactions;
+        double balance;
+        double dailyPnL;
+        long lastTickTime;
+        int dayIndex;
+    }
+
+    private static final class SymbolStock implements Serializable {
+        String name;
+        String symbol;
+        double price;
+        double prevClose;
+        List<Double> history;
+    }
+
+    private static final class NamedStock implements Serializable {
+        String name;
+        double price;
+        double prevClose;
+        LinkedList<Double> history;
+    }
+
+    private static final class Trade implements Serializable {
+        String stockName;
+        String type;
+        int quantity;
+        double price;
+        String timestamp;
+    }
+
+    private static final class ShortTrade implements Serializable {
+        String stock;
+        String type;
+        int qty;
+        double price;
+        String time;
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Market-wide data shared by every user: the stock universe and the day clock.
+ * Persisted once by StateStore, independent of how many users exist.
+ * Every stock gets a dense id from the SymbolRegistry; hot paths index
+ * arrays by that id, while the symbol map is only for text lookups.
+ */
+public class MarketState implements Serializable {
+    private final Map<String, Stock> bySymbol;
+    private Stock[] byId;
+    private final SymbolRegistry symbols;
+    private long lastTickTime;
+    private int dayIndex;
+
+    public MarketState() {
+        this.bySymbol = new LinkedHashMap<>();
+        this.byId = new Stock[16];
+        this.symbols = new SymbolRegistry();
+        this.lastTickTime = System.currentTimeMillis();
+        this.dayIndex = 0;
+    }
+
+    // Registers a stock under its symbol and assigns its id
+    public Stock addStock(Stock s) {
+        int id = symbols.intern(s.getSymbol());
+        s.setId(id);
+        if (id >= byId.length) byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+        byId[id] = s;
+        bySymbol.put(s.getSymbol(), s);
+        return s;
+    }
+
+    // ---------- Getters ----------
+    public Stock getStock(int id) { return (id >= 0 && id < byId.length) ? byId[id] : null; }
+    public Stock getStock(String symbol) { return bySymbol.get(symbol); }
+    public Collection<Stock> getStocks() { return Collections.unmodifiableCollection(bySymbol.values()); }
+    public int getStockCount() { return symbols.size(); }
+    public SymbolRegistry getSymbols() { return symbols; }
+    public long getLastTickTime() { return lastTickTime; }
+    public int getDayIndex() { return dayIndex; }
+
+    // ---------- Setters ----------
+    public void setLastTickTime(long lastTickTime) { this.lastTickTime = lastTickTime; }
+    public void setDayIndex(int dayIndex) { this.dayIndex = dayIndex; }
+}
@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * Fallback sector for stocks without a classification (markets saved
+ * before Stock had one), guessed from the company name. Use Stock.getSector().
+ */
+public final class Sectors {
+
+    private Sectors() {}
+
+    public static String guess(String name) {
+        if (name == null) return "Unknown";
+        name = name.toLowerCase();
+        if (name.contains("bank") || name.contains("icici") || name.contains("hdfc")) return "Banking & Finance";
+        if (name.contains("tech") || name.contains("tcs") || name.contains("infosys")) return "IT Services";
+        if (name.contains("reliance") || name.contains("ongc") || name.contains("adani")) return "Energy / Infrastructure";
+        if (name.contains("pharma") || name.contains("sun")) return "Healthcare / Pharma";
+        return "Conglomerate";
+    }
+}
@@ -0,0 +1,12 @@
+package model;
+
+// Direction of a trade
+public enum Side {
+    BUY,
+    SELL;
+
+    private static final Side[] VALUES = values();
+
+    // Lookup by ordinal without cloning values() each call
+    public static Side of(int ordinal) { return VALUES[ordinal]; }
+}
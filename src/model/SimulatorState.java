@@ -3,41 +3,37 @@ package model;
 import java.io.Serializable;
 import java.util.*;
 
+/**
+ * Runtime view for one logged-in session: the shared MarketState plus the
+ * current user's UserPortfolio. The two halves are persisted separately.
+ */
 public class SimulatorState implements Serializable {
-    private Map<String, Stock> stocks;
-    private Map<String, Integer> portfolio;
-    private List<StockTransaction> todayTransactions;
-    private List<StockTransaction> allTransactions;
-    private double balance;
-    private double dailyPnL;
-    private long lastTickTime;
-    private int dayIndex;
+    private MarketState market;
+    private UserPortfolio user;
 
-    public SimulatorState() {
-        this.stocks = new LinkedHashMap<>();
-        this.portfolio = new HashMap<>();
-        this.todayTransactions = new ArrayList<>();
-        this.allTransactions = new ArrayList<>();
-        this.balance = 100000;
-        this.dailyPnL = 0.0;
-        this.lastTickTime = System.currentTimeMillis();
-        this.dayIndex = 0;
+    public SimulatorState(MarketState market, UserPortfolio user) {
+        this.market = market;
+        this.user = user;
     }
 
+    // ---------- Partitions ----------
+    public MarketState getMarket() { return market; }
+    public UserPortfolio getUser() { return user; }
+
     // ---------- Getters ----------
-    public Map<String, Stock> getStocks() { return stocks; }
-    public Map<String, Integer> getPortfolio() { return portfolio; }
-    public List<StockTransaction> getTodayTransactions() { return todayTransactions; }
-    public List<StockTransaction> getAllTransactions() { return allTransactions; }
-    public double getBalance() { return balance; }
-    public double getDailyPnL() { return dailyPnL; }
-    public long getLastTickTime() { return lastTickTime; }
-    public int getDayIndex() { return dayIndex; }
+    public Collection<Stock> getStocks() { return market.getStocks(); }
+    public Stock getStock(int id) { return market.getStock(id); }
+    public TradeLog getTodayTransactions() { return user.getTodayTransactions(); }
+    public TradeLog getPendingTransactions() { return user.getPendingTransactions(); }
+    public SymbolRegistry getSymbols() { return market.getSymbols(); }
+    public double getBalance() { return user.getBalance(); }
+    public double getDailyPnL() { return user.getDailyPnL(); }
+    public long getLastTickTime() { return market.getLastTickTime(); }
+    public int getDayIndex() { return market.getDayIndex(); }
 
     // ---------- Setters ----------
-    public void setStocks(Map<String, Stock> stocks) { this.stocks = stocks; }  // <-- add this
-    public void setBalance(double balance) { this.balance = balance; }
-    public void setDailyPnL(double dailyPnL) { this.dailyPnL = dailyPnL; }
-    public void setLastTickTime(long lastTickTime) { this.lastTickTime = lastTickTime; }
-    public void setDayIndex(int dayIndex) { this.dayIndex = dayIndex; }
+    public void setBalance(double balance) { user.setBalance(balance); }
+    public void setDailyPnL(double dailyPnL) { user.setDailyPnL(dailyPnL); }
+    public void setLastTickTime(long lastTickTime) { market.setLastTickTime(lastTickTime); }
+    public void setDayIndex(int dayIndex) { market.setDayIndex(dayIndex); }
 }
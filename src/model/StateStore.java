@@ -0,0 +1,181 @@
+package model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+public class StateStore {
+
+    // Storage layout: shared market once, one small file per user
+    private static final File DATA_FOLDER = new File("data");
+    private static final File MARKET_FILE = new File(DATA_FOLDER, "market.dat");
+    private static final File USERS_FOLDER = new File(DATA_FOLDER, "users");
+    private static final File HISTORY_FOLDER = new File(DATA_FOLDER, "history");
+    // segments of the market before a reset, kept while the reset can still be undone
+    private static final File RETIRED_HISTORY_FOLDER = new File(DATA_FOLDER, "history.undo");
+    // single file of the layout before the market/user split (still used by working_complete)
+    private static final File LEGACY_FILE = new File("sim_state.dat");
+
+    private StateStore() {}
+
+    // ---------------------- MARKET ----------------------
+
+    // Returns null when no market has been saved yet (or it is unreadable).
+    // Only the header is read; each stock's history stays in its segment until used.
+    public static MarketState loadMarket() {
+        long t0 = System.nanoTime();
+        Object obj = readObject(MARKET_FILE, true);
+        if (!(obj instanceof MarketState)) return null;
+        System.out.printf("Loaded market header in %.1f ms%n", (System.nanoTime() - t0) / 1e6);
+        return (MarketState) obj;
+    }
+
+    // Segments first (only the prices added since the last save), then the header that counts them
+    public static void saveMarket(MarketState market) throws IOException {
+        if (!HISTORY_FOLDER.exists()) HISTORY_FOLDER.mkdirs();
+        for (Stock s : market.getStocks()) s.saveHistory(HISTORY_FOLDER);
+        writeObject(MARKET_FILE, market, true);
+    }
+
+    // ---------------------- USER PARTITIONS ----------------------
+
+    // Only the requested user's file is touched, so login cost does not depend on user count
+    public static UserPortfolio loadPortfolio(int userId) {
+        Object obj = readObject(portfolioFile(userId));
+        if (obj instanceof UserPortfolio && ((UserPortfolio) obj).getUserId() == userId) {
+            return (UserPortfolio) obj;
+        }
+        return null;
+    }
+
+    // Pending fills are written to the DB in one batch before the partition itself
+    public static void savePortfolio(UserPortfolio portfolio, SymbolRegistry symbols) throws IOException {
+        flushTransactions(portfolio, symbols);
+        writeObject(portfolioFile(portfolio.getUserId()), portfolio);
+    }
+
+    public static void flushTransactions(UserPortfolio portfolio, SymbolRegistry symbols) throws IOException {
+        TradeLog pending = portfolio.getPendingTransactions();
+        if (pending.isEmpty()) return;
+        try {
+            DBHelper.insertTransactions(portfolio.getUserId(), pending, symbols);
+            pending.clear();
+        } catch (SQLException e) {
+            throw new IOException("Could not store transactions: " + e.getMessage(), e);
+        }
+    }
+
+    private static File portfolioFile(int userId) {
+        return new File(USERS_FOLDER, "user_" + userId + ".dat");
+    }
+
+    // ---------------------- RESET UNDO ----------------------
+
+    // Undo snapshot of a just-saved state: only the market header, each history stays in its segment.
+    // Pair with retireHistory() before the reset writes new segments.
+    public static byte[] snapshot(Serializable state) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new HeaderOutputStream(bout)) {
+            out.writeObject(state);
+        }
+        return bout.toByteArray();
+    }
+
+    // Moves the segments aside (the reset rewrites every history from scratch), for restoreSnapshot()
+    public static void retireHistory() throws IOException {
+        deleteFolder(RETIRED_HISTORY_FOLDER);   // left over from a session that ended inside the undo window
+        if (HISTORY_FOLDER.exists()) {
+            Files.move(HISTORY_FOLDER.toPath(), RETIRED_HISTORY_FOLDER.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Undo: the retired segments replace those written since, and the snapshot is read against them
+    public static Object restoreSnapshot(byte[] snapshot) throws IOException, ClassNotFoundException {
+        deleteFolder(HISTORY_FOLDER);
+        if (RETIRED_HISTORY_FOLDER.exists()) {
+            Files.move(RETIRED_HISTORY_FOLDER.toPath(), HISTORY_FOLDER.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        try (ObjectInputStream in = new HeaderInputStream(new ByteArrayInputStream(snapshot))) {
+            return in.readObject();
+        }
+    }
+
+    // Undo window over
+    public static void discardRetiredHistory() {
+        deleteFolder(RETIRED_HISTORY_FOLDER);
+    }
+
+    // ---------------------- LEGACY ----------------------
+
+    // First run without a saved market: take prices, the day clock and (if a portfolio is given) the
+    // one login-less portfolio over from sim_state.dat, and save both partitions so it happens once
+    public static boolean importLegacyState(MarketState market, UserPortfolio portfolio) {
+        if (MARKET_FILE.exists() || !LEGACY_FILE.exists()) return false;
+        String summary = LegacyStateImporter.importInto(LEGACY_FILE, market, portfolio);
+        if (summary == null) return false;
+        System.out.println("Imported " + LEGACY_FILE + ": " + summary);
+        try {
+            saveMarket(market);
+            if (portfolio != null) savePortfolio(portfolio, market.getSymbols());
+        } catch (IOException e) {
+            System.err.println("Could not save imported state: " + e.getMessage());
+        }
+        return true;
+    }
+
+    // ---------------------- HELPERS ----------------------
+
+    private static Object readObject(File file) {
+        return readObject(file, false);
+    }
+
+    private static Object readObject(File file, boolean header) {
+        if (!file.exists()) return null;
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file));
+             ObjectInputStream in = header ? new HeaderInputStream(raw) : new ObjectInputStream(raw)) {
+            return in.readObject();
+        } catch (Exception e) {
+            System.err.println("Error loading " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Segment folders are flat
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files == null) return;
+        for (File f : files) f.delete();
+        folder.delete();
+    }
+
+    // Write to a temp file first so a crash mid-save never leaves a truncated partition
+    private static void writeObject(File file, Object obj) throws IOException {
+        writeObject(file, obj, false);
+    }
+
+    private static void writeObject(File file, Object obj, boolean header) throws IOException {
+        File folder = file.getParentFile();
+        if (!folder.exists()) folder.mkdirs();
+        File tmp = new File(folder, file.getName() + ".tmp");
+        OutputStream raw = new BufferedOutputStream(new FileOutputStream(tmp));
+        try (ObjectOutputStream out = header ? new HeaderOutputStream(raw) : new ObjectOutputStream(raw)) {
+            out.writeObject(obj);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Market header: a Stock written here leaves its history to the segment files
+    static final class HeaderOutputStream extends ObjectOutputStream {
+        HeaderOutputStream(OutputStream out) throws IOException { super(out); }
+    }
+
+    // Market header: a Stock read here gets its history from the segment files, on first use
+    static final class HeaderInputStream extends ObjectInputStream {
+        HeaderInputStream(InputStream in) throws IOException { super(in); }
+
+        void attach(Stock s, int count, double[] recent) {
+            s.attachHistory(HISTORY_FOLDER, count, recent);
+        }
+    }
+}
@@ -1,43 +1,246 @@
 package model;
 
+import utils.DoubleSeries;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * A listed stock: current price, previous close and every price it has had.
+ *
+ * A saved market keeps each history in its own segment file (StateStore);
+ * the header only holds the last few prices. Such a history is read the
+ * first time getHistory() or getBars() is called, so startup does not grow
+ * with the age of the session. Until then new prices collect in memory
+ * (under the stock's lock, which the loader takes to splice them on); after
+ * the load setPrice() is lock-free again. Code that only needs to go over
+ * the prices once (export) uses forEachPrice(), which streams
+ * a history that is still on disk instead of loading it.
+ */
 public class Stock implements Serializable {
+    // the value computed before sectors were added, so markets saved by older versions still read
+    private static final long serialVersionUID = 6878424037186605451L;
+    static final int RECENT_PRICES = 8;  // kept in the header: momentum, tooltips
+
+    private int id = -1; // SymbolRegistry id, set by MarketState.addStock
     private String name;
     private String symbol;
-    private double price;
+    private String sector;      // classification; null in markets saved before it existed
+    private String industry;
+    private volatile double price;
     private double prevClose;
-    private List<Double> history; // ← add this
+    private transient DoubleSeries history; // every price, or those after `base` while the rest is on disk
+    private transient volatile boolean onDisk; // prices [0, base) are still only in the segment
+    private transient int base;
+    private transient HistorySegment segment;  // where the history is saved, null until first saved
+    private transient boolean segmentStale;    // segment no longer a prefix of history (reset, failed read)
+    private transient BarPyramid bars; // OHLC over history, built on first use
 
     public Stock(String name, String symbol, double price) {
+        this(name, symbol, price, null, null);
+    }
+
+    public Stock(String name, String symbol, double price, String sector, String industry) {
         this.name = name;
         this.symbol = symbol;
+        this.sector = sector;
+        this.industry = industry;
         this.price = price;
         this.prevClose = price;
-        this.history = new ArrayList<>();
+        this.history = new DoubleSeries();
         this.history.add(price); // initial price
     }
 
+    public int getId() { return id; }
+    void setId(int id) { this.id = id; }
     public String getName() { return name; }
     public String getSymbol() { return symbol; }
+    public String getSector() { return sector != null ? sector : Sectors.guess(name); }
+    public String getIndustry() { return industry != null ? industry : getSector(); }
     public double getPrice() { return price; }
     public void setPrice(double price) {
         this.price = price;
-        this.history.add(price); // add to history whenever price changes
+        if (onDisk) appendWhileOnDisk(price);
+        else history.add(price); // add to history whenever price changes
+    }
+
+    // Append a run of prices at once (fast-forward); the last one becomes the current price
+    public void appendPrices(double[] prices, int len) {
+        if (len <= 0) return;
+        if (onDisk) appendWhileOnDisk(prices, len);
+        else this.history.addAll(prices, 0, len);
+        this.price = prices[len - 1];
+    }
+
+    private synchronized void appendWhileOnDisk(double price) {
+        history.add(price);
+    }
+
+    private synchronized void appendWhileOnDisk(double[] prices, int len) {
+        history.addAll(prices, 0, len);
     }
 
     public double getPrevClose() { return prevClose; }
     public void setPrevClose(double prevClose) { this.prevClose = prevClose; }
 
-    public List<Double> getHistory() { return history; } // ← getter for MainSimulatorLauncher
+    // Receives a run of prices, prices[from, to); the array is only valid during the call
+    public interface PriceVisitor {
+        void visit(double[] prices, int from, int to) throws IOException;
+    }
+
+    // Every price this stock has had; reads the saved history on first call
+    // (if that fails, only the prices since the last load are there, and the segment is left alone)
+    public DoubleSeries getHistory() {
+        if (onDisk) loadHistory();
+        return history;
+    }
+
+    public boolean isHistoryLoaded() { return !onDisk; }
+
+    // Every price, oldest first, without loading a history that is on disk (read from its segment in chunks)
+    public void forEachPrice(PriceVisitor visitor) throws IOException {
+        HistorySegment seg;
+        int persisted;
+        DoubleSeries h;
+        synchronized (this) {
+            seg = onDisk ? segment : null;
+            persisted = base;
+            h = history;     // the tail stays valid up to n even if a load replaces it meanwhile
+        }
+        int n = h.size();
+        if (seg != null) seg.forEach(persisted, visitor);
+        visitor.visit(h.array(), 0, n);
+    }
+
+    // Multi-resolution bars over the history (charts); call sync() on it before reading
+    public synchronized BarPyramid getBars() {
+        if (bars == null) bars = new BarPyramid(getHistory());
+        return bars;
+    }
+
+    // Start over from a single price (market reset)
+    public synchronized void resetTo(double price) {
+        this.price = price;
+        this.prevClose = price;
+        this.history.clear();
+        this.history.add(price);
+        onDisk = false;
+        bars = null;
+        segmentStale = true;
+    }
 
-    // Short-term momentum (last 3 prices)
+    // Short-term momentum (last 2 prices)
     public double shortMomentum() {
-        if(history.size()<2) return 0;
-        double last = history.get(history.size()-1);
-        double prev = history.get(history.size()-2);
+        double last = recentPrice(0);
+        double prev = recentPrice(1);
+        if (Double.isNaN(last) || Double.isNaN(prev)) return 0;
         return (last-prev)/prev;
     }
+
+    // The price `back` changes ago (0 = current), NaN if there is none; never reads the segment
+    public double recentPrice(int back) {
+        boolean disk = onDisk;
+        DoubleSeries h = history;
+        int n = h.size();
+        if (back < n) return h.get(n - 1 - back);
+        if (!disk) return Double.NaN;
+        double[] r = segment.recent;
+        int k = back - n;
+        return k < r.length ? r[r.length - 1 - k] : Double.NaN;
+    }
+
+    // ---------- Segment persistence (StateStore) ----------
+
+    private synchronized void loadHistory() {
+        if (!onDisk) return;
+        DoubleSeries tail = history;
+        int n = tail.size();
+        try {
+            DoubleSeries full = segment.read(base, Math.max(64, n * 2));   // past base: the tail again
+            full.addAll(tail.array(), 0, n);
+            history = full;
+            onDisk = false;
+        } catch (IOException e) {
+            // stay on disk: the next save still appends after `base`, and a later call may read it
+            System.err.println("Could not read history of " + symbol + ": " + e.getMessage());
+        }
+    }
+
+    // Appends the prices added since the last save to the segment in dir (rewrites it if stale)
+    synchronized void saveHistory(File dir) throws IOException {
+        File file = new File(dir, "stock_" + id + ".bin");
+        if (segment == null || !segment.file.equals(file)) {
+            segment = new HistorySegment(file, 0, null);
+            segmentStale = true;
+        }
+        DoubleSeries h = history;
+        int n = h.size();
+        int offset = onDisk ? base : 0;
+        int from = segmentStale ? 0 : segment.count - offset;
+        if (from == n) return;
+        segment.write(offset + from, h.array(), from, n, RECENT_PRICES);
+        segmentStale = false;
+    }
+
+    // After loading the header: the history is in the segment in dir, read on first use
+    synchronized void attachHistory(File dir, int count, double[] recent) {
+        segment = new HistorySegment(new File(dir, "stock_" + id + ".bin"), count, recent);
+        segmentStale = false;
+        base = count;
+        onDisk = count > 0;
+    }
+
+    // ---------- Serialization ----------
+    // StateStore writes a header (the history goes to segments; the reset undo snapshot too); any other
+    // stream carries the full history inline. Markets saved before segments existed have the history as
+    // a plain field, and nothing after the fields.
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        boolean header = out instanceof StateStore.HeaderOutputStream;
+        out.writeBoolean(header);
+        if (header) {
+            out.writeInt(segment != null ? segment.count : 0);
+            out.writeObject(segment != null ? segment.recent : new double[0]);
+        } else {
+            // runs of prices, then 0; streamed, so writing does not load the history
+            forEachPrice((prices, from, to) -> {
+                if (to == from) return;
+                out.writeInt(to - from);
+                for (int i = from; i < to; i++) out.writeDouble(prices[i]);
+            });
+            out.writeInt(0);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", -1);
+        name = (String) fields.get("name", null);
+        symbol = (String) fields.get("symbol", null);
+        sector = (String) fields.get("sector", null);
+        industry = (String) fields.get("industry", null);
+        price = fields.get("price", 0.0);
+        prevClose = fields.get("prevClose", 0.0);
+        if (fields.getObjectStreamClass().getField("history") != null) {
+            history = (DoubleSeries) fields.get("history", null);   // written next save, as a new segment
+        } else if (in.readBoolean()) {
+            history = new DoubleSeries();
+            if (in instanceof StateStore.HeaderInputStream) {
+                ((StateStore.HeaderInputStream) in).attach(this, in.readInt(), (double[]) in.readObject());
+            } else {
+                in.readInt();
+                in.readObject();
+            }
+        } else {
+            history = new DoubleSeries();
+            for (int m; (m = in.readInt()) > 0; ) {
+                history.ensureCapacity(history.size() + m);
+                for (int i = 0; i < m; i++) history.add(in.readDouble());
+            }
+        }
+    }
 }
@@ -1,27 +1,32 @@
 package model;
 
-import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import utils.TimeUtils;
 
-public class StockTransaction implements Serializable {
-    private String stockName;
-    private String type; // BUY or SELL
-    private int quantity;
-    private double price;
-    private String timestamp;
+/**
+ * Display row for a single fill (e.g. one row of a transactions page).
+ * Fills are recorded in a TradeLog; this object only exists while shown.
+ */
+public class StockTransaction {
+    private final String stockName;
+    private final Side side;
+    private final int quantity;
+    private final double price;
+    private final long timeNanos; // epoch nanos
 
-    public StockTransaction(String stockName, String type, int quantity, double price) {
+    public StockTransaction(String stockName, Side side, int quantity, double price, long timeNanos) {
         this.stockName = stockName;
-        this.type = type;
+        this.side = side;
         this.quantity = quantity;
         this.price = price;
-        this.timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        this.timeNanos = timeNanos;
     }
 
     public String getStockName() { return stockName; }
-    public String getType() { return type; }
+    public Side getSide() { return side; }
     public int getQuantity() { return quantity; }
     public double getPrice() { return price; }
-    public String getTimestamp() { return timestamp; }
+    public long getTimeNanos() { return timeNanos; }
+
+    // Formatted on demand
+    public String getTimestamp() { return TimeUtils.format(timeNanos); }
 }
@@ -0,0 +1,35 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns ticker symbols to dense integer ids (0, 1, 2, ...).
+ * Ids are stable for the life of the market because the registry is saved with it.
+ */
+public class SymbolRegistry implements Serializable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] symbols = new String[16];
+    private int size;
+
+    // Returns the id for symbol, assigning the next free id on first sight
+    public synchronized int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) return id;
+        if (size == symbols.length) symbols = Arrays.copyOf(symbols, size * 2);
+        symbols[size] = symbol;
+        ids.put(symbol, size);
+        return size++;
+    }
+
+    // -1 when the symbol was never interned
+    public synchronized int idOf(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    public synchronized String symbol(int id) { return symbols[id]; }
+    public synchronized int size() { return size; }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Append-only trade log stored as parallel primitive columns.
+ * A fill costs no object allocation (apart from occasional column growth);
+ * timestamps and symbols are only turned into text when displayed.
+ */
+public class TradeLog implements Serializable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private transient long[] timeNanos;  // epoch nanos
+    private transient byte[] side;       // Side ordinal
+    private transient int[] symbolId;    // SymbolRegistry id
+    private transient int[] quantity;
+    private transient double[] price;
+    private transient int size;
+
+    public TradeLog() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public void append(long timeNanos, Side side, int symbolId, int quantity, double price) {
+        if (size == this.timeNanos.length) grow();
+        this.timeNanos[size] = timeNanos;
+        this.side[size] = (byte) side.ordinal();
+        this.symbolId[size] = symbolId;
+        this.quantity[size] = quantity;
+        this.price[size] = price;
+        size++;
+    }
+
+    // ---------- Column access ----------
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public long timeNanos(int i) { return timeNanos[i]; }
+    public Side side(int i) { return Side.of(side[i]); }
+    public int symbolId(int i) { return symbolId[i]; }
+    public int quantity(int i) { return quantity[i]; }
+    public double price(int i) { return price[i]; }
+
+    // Keeps the columns, so a cleared log refills without reallocating
+    public void clear() { size = 0; }
+
+    private void allocate(int capacity) {
+        timeNanos = new long[capacity];
+        side = new byte[capacity];
+        symbolId = new int[capacity];
+        quantity = new int[capacity];
+        price = new double[capacity];
+    }
+
+    private void grow() {
+        int capacity = timeNanos.length * 2;
+        timeNanos = Arrays.copyOf(timeNanos, capacity);
+        side = Arrays.copyOf(side, capacity);
+        symbolId = Arrays.copyOf(symbolId, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        price = Arrays.copyOf(price, capacity);
+    }
+
+    // ---------- Serialization: only the used part of each column ----------
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(timeNanos[i]);
+            out.writeByte(side[i]);
+            out.writeInt(symbolId[i]);
+            out.writeInt(quantity[i]);
+            out.writeDouble(price[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        allocate(Math.max(INITIAL_CAPACITY, n));
+        for (int i = 0; i < n; i++) {
+            timeNanos[i] = in.readLong();
+            side[i] = in.readByte();
+            symbolId[i] = in.readInt();
+            quantity[i] = in.readInt();
+            price[i] = in.readDouble();
+        }
+        size = n;
+    }
+}
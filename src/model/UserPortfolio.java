@@ -0,0 +1,55 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Per-user partition: cash, holdings and today's transactions for a single User id.
+ * Loaded only for the user that logs in. The full trade history lives in the
+ * DBHelper transactions table; fills not yet written there wait in pendingTransactions.
+ * Holdings are indexed by SymbolRegistry id.
+ */
+public class UserPortfolio implements Serializable {
+    private final int userId;
+    private int[] positions;
+    private TradeLog todayTransactions;
+    private transient TradeLog pendingTransactions;
+    private double balance;
+    private double dailyPnL;
+
+    public UserPortfolio(int userId, double balance) {
+        this.userId = userId;
+        this.positions = new int[16];
+        this.todayTransactions = new TradeLog();
+        this.pendingTransactions = new TradeLog();
+        this.balance = balance;
+        this.dailyPnL = 0.0;
+    }
+
+    // ---------- Getters ----------
+    public int getUserId() { return userId; }
+    public int getPosition(int symbolId) { return symbolId < positions.length ? positions[symbolId] : 0; }
+    public int getPositionSlots() { return positions.length; }
+    public TradeLog getTodayTransactions() { return todayTransactions; }
+    public TradeLog getPendingTransactions() {
+        if (pendingTransactions == null) pendingTransactions = new TradeLog(); // transient, null after load
+        return pendingTransactions;
+    }
+    public double getBalance() { return balance; }
+    public double getDailyPnL() { return dailyPnL; }
+
+    // Record a fill in today's log and in the not-yet-stored log
+    public void recordTrade(long timeNanos, Side side, int symbolId, int quantity, double price) {
+        todayTransactions.append(timeNanos, side, symbolId, quantity, price);
+        getPendingTransactions().append(timeNanos, side, symbolId, quantity, price);
+    }
+
+    // ---------- Setters ----------
+    public void setPosition(int symbolId, int quantity) {
+        if (symbolId >= positions.length) positions = Arrays.copyOf(positions, Math.max(symbolId + 1, positions.length * 2));
+        positions[symbolId] = quantity;
+    }
+    public void clearPositions() { Arrays.fill(positions, 0); }
+    public void setBalance(double balance) { this.balance = balance; }
+    public void setDailyPnL(double dailyPnL) { this.dailyPnL = dailyPnL; }
+}
@@ -0,0 +1,29 @@
+package net;
+
+/**
+ * Wire format of the market-data feed (big-endian).
+ *
+ * Every message: [int length of the rest][byte type][long sequence] then:
+ *   SNAPSHOT: [int count] then count x ([int symbolId][short len][len bytes UTF-8 symbol][double price])
+ *   UPDATE:   [int symbolId][double price]
+ *   TRADE:    [int symbolId][double price][int quantity][byte side]
+ *
+ * A client gets one SNAPSHOT on connect, then UPDATEs. Sequence numbers are
+ * MarketDataBus sequences. For one symbol they increase, with gaps where
+ * updates were conflated. Across symbols they need not: a client that fell
+ * behind gets its conflated UPDATEs in the order the symbols first changed,
+ * each with the sequence of the symbol's latest price, so a message may
+ * carry a lower sequence than the one before it.
+ */
+public final class FeedProtocol {
+
+    public static final byte SNAPSHOT = 1;
+    public static final byte UPDATE = 2;
+    public static final byte TRADE = 3;
+
+    public static final int HEADER_BYTES = 4 + 1 + 8;
+    public static final int UPDATE_BYTES = HEADER_BYTES + 4 + 8;
+    public static final int TRADE_BYTES = HEADER_BYTES + 4 + 8 + 4 + 1;
+
+    private FeedProtocol() {}
+}
@@ -0,0 +1,99 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal blocking reader for the market-data feed, for tooling and
+ * smoke tests. Prints the snapshot and then every update.
+ *
+ * Usage: java -cp out net.MarketDataFeedClient [port] [maxMessages]
+ */
+public class MarketDataFeedClient {
+
+    // Receives decoded feed messages
+    public interface Listener {
+        void onSnapshot(long seq, int symbolId, String symbol, double price);
+        void onUpdate(long seq, int symbolId, double price);
+        void onTrade(long seq, int symbolId, double price, int quantity, byte side);
+    }
+
+    private final SocketChannel channel;
+    private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+
+    public MarketDataFeedClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        buf.flip();
+    }
+
+    // Blocks for and decodes one message; returns false when the server closed the connection
+    public boolean readMessage(Listener l) throws IOException {
+        if (!fill(4)) return false;
+        int len = buf.getInt();
+        if (!fill(len)) return false;
+        byte type = buf.get();
+        long seq = buf.getLong();
+        switch (type) {
+            case FeedProtocol.SNAPSHOT: {
+                int count = buf.getInt();
+                for (int i = 0; i < count; i++) {
+                    int id = buf.getInt();
+                    byte[] name = new byte[buf.getShort()];
+                    buf.get(name);
+                    l.onSnapshot(seq, id, new String(name, StandardCharsets.UTF_8), buf.getDouble());
+                }
+                break;
+            }
+            case FeedProtocol.UPDATE:
+                l.onUpdate(seq, buf.getInt(), buf.getDouble());
+                break;
+            case FeedProtocol.TRADE:
+                l.onTrade(seq, buf.getInt(), buf.getDouble(), buf.getInt(), buf.get());
+                break;
+            default:
+                buf.position(buf.position() + len - 9); // unknown message: skip
+        }
+        return true;
+    }
+
+    public void close() throws IOException { channel.close(); }
+
+    // Make at least n bytes readable, growing the buffer for large snapshots
+    private boolean fill(int n) throws IOException {
+        if (buf.remaining() >= n) return true;
+        if (n > buf.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(n);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < n) {
+            if (channel.read(buf) < 0) return false;
+        }
+        buf.flip();
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9401;
+        long max = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+        MarketDataFeedClient client = new MarketDataFeedClient("127.0.0.1", port);
+        Listener printer = new Listener() {
+            public void onSnapshot(long seq, int id, String symbol, double price) {
+                System.out.printf("SNAP  seq=%d %s(%d) %.2f%n", seq, symbol, id, price);
+            }
+            public void onUpdate(long seq, int id, double price) {
+                System.out.printf("UPD   seq=%d id=%d %.2f%n", seq, id, price);
+            }
+            public void onTrade(long seq, int id, double price, int qty, byte side) {
+                System.out.printf("TRADE seq=%d id=%d %d @ %.2f side=%d%n", seq, id, qty, price, side);
+            }
+        };
+        for (long i = 0; i < max && client.readMessage(printer); i++) { /* keep reading */ }
+        client.close();
+    }
+}
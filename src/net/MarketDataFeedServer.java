@@ -0,0 +1,380 @@
+package net;
+
+import engine.MarketDataBus;
+import engine.MarketEvent;
+import engine.MarketScheduler;
+import model.MarketState;
+import model.Stock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Binary market-data feed over local TCP (see FeedProtocol).
+ * One selector thread serves every client with non-blocking I/O. It drains
+ * its own MarketDataBus subscription, keeps the latest price per symbol and
+ * fans updates out to clients. A client whose socket buffer is full is not
+ * queued for; its changed symbols are remembered in a per-client dirty set
+ * and it gets only the latest price for each once it can take more
+ * (per-client conflation). Trades are sent only to clients that keep up.
+ *
+ * The bus does not wake the selector, so with clients connected the loop
+ * wakes once per FRAME_MILLIS to drain it; with none it blocks until one
+ * connects. If the server's own subscription fell behind and lost events,
+ * prices are re-read from the market and every client gets a fresh
+ * SNAPSHOT in place of its pending updates.
+ */
+public class MarketDataFeedServer {
+
+    private static final int CLIENT_BUFFER_BYTES = 16 * 1024;
+    private static final long FRAME_MILLIS = 5;   // longest an update waits on the bus
+
+    private final MarketState market;
+    private final MarketDataBus.Subscription feed;
+    private final int port;
+
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel server;
+
+    // latest state, indexed by symbol id
+    private double[] lastPrice = new double[0];
+    private long[] lastSeq = new long[0];
+    // symbols changed in the current bus drain, deduplicated
+    private int[] batch = new int[64];
+    private int batchSize;
+    private boolean[] inBatch = new boolean[0];
+    private boolean hadTrades;
+    private long drainedSeq = -1;   // last bus sequence folded into lastPrice
+    private long dropped;           // bus events this server has missed so far
+    private final List<Client> clients = new ArrayList<>();
+
+    private final MarketDataBus.EventHandler onEvent = this::onBusEvent;
+
+    public MarketDataFeedServer(MarketState market, MarketDataBus bus, int port) {
+        this.market = market;
+        this.feed = bus.subscribe();
+        this.port = port;
+    }
+
+    // Starts a feed on marketsim.feed.port if that property is set; returns null otherwise
+    public static MarketDataFeedServer startIfConfigured(MarketState market, MarketDataBus bus) {
+        Integer port = Integer.getInteger("marketsim.feed.port");
+        if (port == null) return null;
+        MarketDataFeedServer s = new MarketDataFeedServer(market, bus, port);
+        try {
+            s.start();
+            return s;
+        } catch (IOException e) {
+            System.err.println("Could not start market-data feed on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        ensureSymbols(market.getStockCount());
+        for (Stock s : market.getStocks()) lastPrice[s.getId()] = s.getPrice();
+        running = true;
+        MarketScheduler.shared().runSessionTask(this::loop);
+        System.out.println("Market-data feed listening on 127.0.0.1:" + getPort());
+    }
+
+    public void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (Exception e) {
+            return port;
+        }
+    }
+
+    public int getClientCount() {
+        synchronized (clients) { return clients.size(); }
+    }
+
+    // ---------------- I/O loop ----------------
+
+    private void loop() {
+        Thread.currentThread().setName("feed-io");
+        try {
+            while (running) {
+                if (getClientCount() == 0) selector.select();
+                else selector.select(FRAME_MILLIS);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        // a client that keeps sending must not hold up its own outgoing frames
+                        if (key.isWritable()) flush((Client) key.attachment());
+                        if (key.isValid() && key.isReadable()) read(key);
+                    }
+                }
+                drainBus();
+            }
+        } catch (IOException e) {
+            System.err.println("Market-data feed stopped: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        drainBus();   // the snapshot starts from current prices (the bus is not read while nobody is connected)
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            Client c = new Client(ch, lastPrice.length);
+            c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            writeSnapshot(c);
+            synchronized (clients) { clients.add(c); }
+            flush(c);
+        }
+    }
+
+    // Clients do not send anything; reading only detects disconnects
+    private void read(SelectionKey key) {
+        Client c = (Client) key.attachment();
+        try {
+            c.in.clear();
+            if (c.channel.read(c.in) < 0) close(c);
+        } catch (IOException e) {
+            close(c);
+        }
+    }
+
+    private void drainBus() {
+        batchSize = 0;
+        hadTrades = false;
+        feed.poll(onEvent, Integer.MAX_VALUE);
+        if (feed.getDropped() != dropped) {
+            dropped = feed.getDropped();
+            resync();
+        } else if (batchSize == 0 && !hadTrades) {
+            return;
+        }
+        synchronized (clients) {
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                Client c = clients.get(i);
+                for (int b = 0; b < batchSize; b++) c.markDirty(batch[b]);
+                flush(c);
+            }
+        }
+        for (int b = 0; b < batchSize; b++) inBatch[batch[b]] = false;
+    }
+
+    private void onBusEvent(MarketEvent e) {
+        if (e.symbolId >= lastPrice.length) ensureSymbols(e.symbolId + 1);
+        drainedSeq = e.sequence;
+        if (e.type == MarketEvent.TRADE) {
+            // encoded straight into each client's trade buffer; e is only valid during this call
+            hadTrades = true;
+            synchronized (clients) {
+                for (Client c : clients) c.offerTrade(e);
+            }
+            return;
+        }
+        // TICK and BAR both carry the latest price
+        lastPrice[e.symbolId] = e.price;
+        lastSeq[e.symbolId] = e.sequence;
+        if (!inBatch[e.symbolId]) {
+            inBatch[e.symbolId] = true;
+            if (batchSize == batch.length) batch = java.util.Arrays.copyOf(batch, batchSize * 2);
+            batch[batchSize++] = e.symbolId;
+        }
+    }
+
+    // Events were lost: take prices from the market and give every client a new snapshot
+    private void resync() {
+        for (Stock s : market.getStocks()) {
+            ensureSymbols(s.getId() + 1);
+            lastPrice[s.getId()] = s.getPrice();
+        }
+        synchronized (clients) {
+            for (Client c : clients) c.needsSnapshot = true;
+        }
+    }
+
+    private void ensureSymbols(int n) {
+        if (n <= lastPrice.length) return;
+        lastPrice = java.util.Arrays.copyOf(lastPrice, n);
+        lastSeq = java.util.Arrays.copyOf(lastSeq, n);
+        inBatch = java.util.Arrays.copyOf(inBatch, n);
+    }
+
+    // ---------------- Encoding ----------------
+
+    private void writeSnapshot(Client c) {
+        List<Stock> stocks = new ArrayList<>(market.getStocks());
+        int size = FeedProtocol.HEADER_BYTES + 4;
+        List<byte[]> names = new ArrayList<>(stocks.size());
+        for (Stock s : stocks) {
+            byte[] name = s.getSymbol().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += 4 + 2 + name.length + 8;
+        }
+        ByteBuffer snap = ByteBuffer.allocate(size);
+        snap.putInt(size - 4).put(FeedProtocol.SNAPSHOT).putLong(drainedSeq);
+        snap.putInt(stocks.size());
+        for (int i = 0; i < stocks.size(); i++) {
+            Stock s = stocks.get(i);
+            snap.putInt(s.getId()).putShort((short) names.get(i).length).put(names.get(i));
+            snap.putDouble(s.getId() < lastPrice.length ? lastPrice[s.getId()] : s.getPrice());
+        }
+        snap.flip();
+        c.pending = snap;
+    }
+
+    /**
+     * Writes as much as the socket takes: first any pending snapshot, then
+     * one UPDATE per dirty symbol with its latest price. Whatever does not
+     * fit stays dirty and OP_WRITE is requested. A resync snapshot goes out
+     * once the bytes already encoded are written, and replaces the dirty set.
+     */
+    private void flush(Client c) {
+        if (!c.channel.isOpen()) return;
+        try {
+            while (true) {
+                if (c.needsSnapshot && c.pending == null && !c.out.hasRemaining()) {
+                    c.needsSnapshot = false;
+                    c.clearDirty();
+                    writeSnapshot(c);
+                }
+                if (c.pending != null) {
+                    c.channel.write(c.pending);
+                    if (c.pending.hasRemaining()) break;
+                    c.pending = null;
+                }
+                ByteBuffer out = c.out;
+                if (!c.needsSnapshot) {     // nothing new is encoded ahead of a snapshot
+                    out.compact();
+                    c.fillUpdates(out, lastPrice, lastSeq);
+                    out.flip();
+                }
+                if (!out.hasRemaining()) break;
+                c.channel.write(out);
+                if (out.hasRemaining()) break;
+                if (!c.needsSnapshot && !c.hasDirty() && c.tradeBytes == 0) break;
+            }
+            boolean backlog = c.pending != null || c.out.hasRemaining() || c.hasDirty() || c.needsSnapshot;
+            c.key.interestOps(backlog ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close(c);
+        }
+    }
+
+    private void close(Client c) {
+        synchronized (clients) { clients.remove(c); }
+        try { c.channel.close(); } catch (IOException ignored) {}
+    }
+
+    private void closeAll() {
+        synchronized (clients) {
+            for (Client c : clients) {
+                try { c.channel.close(); } catch (IOException ignored) {}
+            }
+            clients.clear();
+        }
+        try { server.close(); } catch (IOException ignored) {}
+        try { selector.close(); } catch (IOException ignored) {}
+    }
+
+    // ---------------- Per-client state ----------------
+
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(256);
+        final ByteBuffer out = ByteBuffer.allocateDirect(CLIENT_BUFFER_BYTES);
+        ByteBuffer pending;             // snapshot still being sent
+        boolean needsSnapshot;          // the server lost bus events: send a new snapshot next
+        SelectionKey key;
+
+        boolean[] dirty;                // symbols with an unsent price
+        int[] dirtyList;                // [dirtyHead, dirtyTail): in the order they changed
+        int dirtyHead, dirtyTail;
+        final ByteBuffer trades = ByteBuffer.allocate(CLIENT_BUFFER_BYTES / 4);
+        int tradeBytes;
+        long droppedTrades;
+
+        Client(SocketChannel channel, int symbols) {
+            this.channel = channel;
+            this.dirty = new boolean[Math.max(16, symbols)];
+            this.dirtyList = new int[dirty.length];
+            this.out.flip(); // start empty, in read mode
+        }
+
+        void markDirty(int id) {
+            if (id >= dirty.length) {
+                int n = Math.max(id + 1, dirty.length * 2);
+                dirty = java.util.Arrays.copyOf(dirty, n);
+                dirtyList = java.util.Arrays.copyOf(dirtyList, n);
+            }
+            if (!dirty[id]) {
+                dirty[id] = true;
+                if (dirtyTail == dirtyList.length) {        // room was used up at the head: move down
+                    System.arraycopy(dirtyList, dirtyHead, dirtyList, 0, dirtyTail - dirtyHead);
+                    dirtyTail -= dirtyHead;
+                    dirtyHead = 0;
+                }
+                dirtyList[dirtyTail++] = id;
+            }
+        }
+
+        boolean hasDirty() { return dirtyHead < dirtyTail; }
+
+        void clearDirty() {
+            for (int i = dirtyHead; i < dirtyTail; i++) dirty[dirtyList[i]] = false;
+            dirtyHead = dirtyTail = 0;
+        }
+
+        // Trades are not conflated; a client without room loses them
+        void offerTrade(MarketEvent t) {
+            if (trades.remaining() < FeedProtocol.TRADE_BYTES) {
+                droppedTrades++;
+                return;
+            }
+            trades.putInt(FeedProtocol.TRADE_BYTES - 4).put(FeedProtocol.TRADE).putLong(t.sequence)
+                    .putInt(t.symbolId).putDouble(t.price).putInt(t.quantity).put(t.side);
+            tradeBytes = trades.position();
+        }
+
+        // Encode queued trades and as many dirty symbols as fit into buf (write mode), oldest change first
+        void fillUpdates(ByteBuffer buf, double[] lastPrice, long[] lastSeq) {
+            if (tradeBytes > 0 && buf.remaining() >= tradeBytes) {
+                trades.flip();
+                buf.put(trades);
+                trades.clear();
+                tradeBytes = 0;
+            }
+            while (dirtyHead < dirtyTail && buf.remaining() >= FeedProtocol.UPDATE_BYTES) {
+                int id = dirtyList[dirtyHead++];
+                dirty[id] = false;
+                buf.putInt(FeedProtocol.UPDATE_BYTES - 4).put(FeedProtocol.UPDATE).putLong(lastSeq[id])
+                        .putInt(id).putDouble(lastPrice[id]);
+            }
+            if (dirtyHead == dirtyTail) dirtyHead = dirtyTail = 0;
+        }
+    }
+}
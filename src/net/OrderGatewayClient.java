@@ -0,0 +1,159 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal blocking client for the order gateway, for load-test tools and
+ * smoke tests. Requests are buffered and only sent on flush(), so callers
+ * can pipeline as many as they like before reading the responses.
+ *
+ * Usage: java -cp out net.OrderGatewayClient username password [port=9402] [orders=100000] [window=1000]
+ * sends market orders (buy then sell of symbol 0) keeping up to window in flight.
+ */
+public class OrderGatewayClient {
+
+    // Receives decoded gateway responses
+    public interface Listener {
+        void onLoginAck(byte status, int userId, double balance);
+        void onExec(long clOrdId, byte execType, byte reason);
+        void onFill(long clOrdId, int symbolId, byte side, int quantity, double price, double balance);
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+
+    public OrderGatewayClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        in.flip();
+    }
+
+    // ---------- Requests (buffered) ----------
+
+    public void login(String username, String password) throws IOException {
+        byte[] u = username.getBytes(StandardCharsets.UTF_8);
+        byte[] p = password.getBytes(StandardCharsets.UTF_8);
+        room(4 + 1 + 2 + u.length + 2 + p.length);
+        out.putInt(1 + 2 + u.length + 2 + p.length).put(OrderProtocol.LOGIN)
+                .putShort((short) u.length).put(u).putShort((short) p.length).put(p);
+    }
+
+    // limitPrice <= 0 sends a market order
+    public void newOrder(long clOrdId, int symbolId, byte side, int quantity, double limitPrice) throws IOException {
+        room(OrderProtocol.NEW_BYTES);
+        out.putInt(OrderProtocol.NEW_BYTES - 4).put(OrderProtocol.NEW)
+                .putLong(clOrdId).putInt(symbolId).put(side).putInt(quantity).putDouble(limitPrice);
+    }
+
+    public void cancel(long clOrdId) throws IOException {
+        room(OrderProtocol.CANCEL_BYTES);
+        out.putInt(OrderProtocol.CANCEL_BYTES - 4).put(OrderProtocol.CANCEL).putLong(clOrdId);
+    }
+
+    public void replace(long clOrdId, int quantity, double limitPrice) throws IOException {
+        room(OrderProtocol.REPLACE_BYTES);
+        out.putInt(OrderProtocol.REPLACE_BYTES - 4).put(OrderProtocol.REPLACE)
+                .putLong(clOrdId).putInt(quantity).putDouble(limitPrice);
+    }
+
+    // Send everything buffered so far
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    private void room(int bytes) throws IOException {
+        if (out.remaining() < bytes) flush();
+    }
+
+    // ---------- Responses ----------
+
+    // Blocks for and decodes one message; returns false when the server closed the connection
+    public boolean readMessage(Listener l) throws IOException {
+        if (!fill(4)) return false;
+        int len = in.getInt();
+        if (!fill(len)) return false;
+        int end = in.position() + len;
+        switch (in.get()) {
+            case OrderProtocol.LOGIN_ACK:
+                l.onLoginAck(in.get(), in.getInt(), in.getDouble());
+                break;
+            case OrderProtocol.EXEC:
+                l.onExec(in.getLong(), in.get(), in.get());
+                break;
+            case OrderProtocol.FILL:
+                l.onFill(in.getLong(), in.getInt(), in.get(), in.getInt(), in.getDouble(), in.getDouble());
+                break;
+            default:
+                break; // unknown message: skipped below
+        }
+        in.position(end);
+        return true;
+    }
+
+    public void close() throws IOException { channel.close(); }
+
+    // Make at least n bytes readable (messages are far smaller than the buffer)
+    private boolean fill(int n) throws IOException {
+        if (in.remaining() >= n) return true;
+        in.compact();
+        while (in.position() < n) {
+            if (channel.read(in) < 0) return false;
+        }
+        in.flip();
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OrderGatewayClient username password [port] [orders] [window]");
+            System.exit(2);
+        }
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 9402;
+        int orders = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        int window = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        OrderGatewayClient client = new OrderGatewayClient("127.0.0.1", port);
+        final long[] counts = new long[3]; // fills, rejects, logged in
+        Listener counter = new Listener() {
+            public void onLoginAck(byte status, int userId, double balance) {
+                counts[2] = status == OrderProtocol.OK ? 1 : -1;
+                System.out.printf("Login %s user=%d balance=%.2f%n", status == OrderProtocol.OK ? "ok" : "failed", userId, balance);
+            }
+            public void onExec(long clOrdId, byte execType, byte reason) {
+                if (execType == OrderProtocol.EXEC_REJECTED) counts[1]++;
+            }
+            public void onFill(long clOrdId, int symbolId, byte side, int quantity, double price, double balance) {
+                counts[0]++;
+            }
+        };
+        client.login(args[0], args[1]);
+        client.flush();
+        if (!client.readMessage(counter) || counts[2] < 0) {
+            client.close();
+            System.exit(1);
+        }
+
+        long t0 = System.nanoTime();
+        long sent = 0, answered = 0;
+        while (answered < orders) {
+            while (sent < orders && sent - answered < window) {
+                client.newOrder(sent, 0, (byte) (sent & 1), 1, 0); // alternate buy / sell
+                sent++;
+            }
+            client.flush();
+            if (!client.readMessage(counter)) break;
+            answered++;
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%d orders in %.2fs (%.0f orders/s), %d fills, %d rejects%n",
+                answered, secs, answered / secs, counts[0], counts[1]);
+        client.close();
+    }
+}
@@ -0,0 +1,550 @@
+package net;
+
+import engine.MarketDataBus;
+import engine.MarketEvent;
+import engine.MarketScheduler;
+import engine.TradeExecutor;
+import model.DBHelper;
+import model.Side;
+import model.StateStore;
+import model.Stock;
+import model.User;
+import model.UserPortfolio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary order-entry gateway over local TCP (see OrderProtocol).
+ * One selector thread reads every session with non-blocking I/O. Each read
+ * decodes all complete requests in the buffer (pipelining), executes them
+ * through the shared TradeExecutor and answers with one socket write for the
+ * whole batch. A session whose responses are not being read stops being read
+ * until it catches up, so a client cannot make the gateway buffer without bound.
+ *
+ * Market orders fill at the current price or are rejected. Limit orders that
+ * are not marketable rest in the gateway and are checked whenever the bus
+ * reports a new price for their symbol; they are cancelled on disconnect.
+ * Users log in with their DBHelper credentials; the DB lookup runs on a
+ * session task, and the session is not read again until its LOGIN_ACK has
+ * been queued, so pipelined requests still follow the login in order. All
+ * sessions of one user, and the Swing window of that user, share a single
+ * UserPortfolio; changed portfolios are saved on the gateway's own I/O
+ * thread every few seconds and when the gateway stops.
+ */
+public class OrderGatewayServer {
+
+    private static final int IN_BUFFER_BYTES = 64 * 1024;
+    private static final int OUT_BUFFER_BYTES = 64 * 1024;
+    private static final long SELECT_MILLIS = 1;
+    private static final long SAVE_PERIOD_MILLIS = 5000;
+
+    private final TradeExecutor executor;
+    private final MarketDataBus.Subscription prices;
+    private final int port;
+
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private ScheduledExecutorService io;      // portfolio saves, off the market scheduler
+    private ScheduledFuture<?> saveTask;
+    private final List<Session> sessions = new ArrayList<>();
+    // work finished by session tasks (logins), applied on the selector thread
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+    // one portfolio per user id; touched ones wait in unsaved for the next save
+    private final Map<Integer, UserPortfolio> portfolios = new ConcurrentHashMap<>();
+    private final Set<UserPortfolio> unsaved = ConcurrentHashMap.newKeySet();
+
+    // resting limit orders by symbol id, and symbols with a new price in the current drain
+    private List<List<Order>> resting = new ArrayList<>();
+    private boolean[] priceChanged = new boolean[0];
+    private long pricesDropped;
+
+    private final TradeExecutor.Fill fill = new TradeExecutor.Fill();
+    private final MarketDataBus.EventHandler onEvent = this::onBusEvent;
+
+    public OrderGatewayServer(TradeExecutor executor, MarketDataBus bus, int port) {
+        this.executor = executor;
+        this.prices = bus.subscribe();
+        this.port = port;
+    }
+
+    // Starts a gateway on marketsim.gateway.port if that property is set; returns null otherwise
+    public static OrderGatewayServer startIfConfigured(TradeExecutor executor, MarketDataBus bus) {
+        Integer port = Integer.getInteger("marketsim.gateway.port");
+        if (port == null) return null;
+        OrderGatewayServer s = new OrderGatewayServer(executor, bus, port);
+        try {
+            s.start();
+            return s;
+        } catch (IOException e) {
+            System.err.println("Could not start order gateway on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        MarketScheduler.shared().runSessionTask(this::loop);
+        io = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gateway-io");
+            t.setDaemon(true);
+            return t;
+        });
+        saveTask = io.scheduleAtFixedRate(this::saveTouched, SAVE_PERIOD_MILLIS, SAVE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        System.out.println("Order gateway listening on 127.0.0.1:" + getPort());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+        if (io != null) {
+            saveTask.cancel(false);
+            io.shutdown();
+            try {
+                io.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        saveTouched();
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (Exception e) {
+            return port;
+        }
+    }
+
+    public int getSessionCount() {
+        synchronized (sessions) { return sessions.size(); }
+    }
+
+    /**
+     * Makes the gateway trade on this portfolio object for its user (the
+     * logged-in Swing user), instead of loading a separate copy.
+     */
+    public void registerPortfolio(UserPortfolio portfolio) {
+        portfolios.put(portfolio.getUserId(), portfolio);
+        // a replaced copy (e.g. before an undo) must not be saved over this one
+        unsaved.removeIf(p -> p.getUserId() == portfolio.getUserId() && p != portfolio);
+    }
+
+    private void saveTouched() {
+        for (Iterator<UserPortfolio> it = unsaved.iterator(); it.hasNext(); ) {
+            UserPortfolio p = it.next();
+            it.remove();
+            if (portfolios.get(p.getUserId()) != p) continue;   // replaced since it was touched
+            try {
+                executor.savePortfolio(p);
+            } catch (IOException e) {
+                System.err.println("Error saving portfolio " + p.getUserId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // ---------------- I/O loop ----------------
+
+    private void loop() {
+        Thread.currentThread().setName("order-gateway");
+        try {
+            while (running) {
+                selector.select(SELECT_MILLIS);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Session s = (Session) key.attachment();
+                        if (key.isWritable()) flush(s);
+                        if (key.isValid() && key.isReadable()) read(s);
+                    }
+                }
+                for (Runnable r; (r = completions.poll()) != null; ) r.run();
+                drainPrices();
+            }
+        } catch (IOException e) {
+            System.err.println("Order gateway stopped: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            Session s = new Session(ch);
+            s.key = ch.register(selector, SelectionKey.OP_READ, s);
+            synchronized (sessions) { sessions.add(s); }
+        }
+    }
+
+    private void read(Session s) {
+        try {
+            if (s.channel.read(s.in) < 0) {
+                close(s);
+                return;
+            }
+        } catch (IOException e) {
+            close(s);
+            return;
+        }
+        process(s);
+    }
+
+    // Decode every complete request in the buffer, then answer them with one write;
+    // requests after a LOGIN wait in the buffer until the login is answered
+    private void process(Session s) {
+        ByteBuffer in = s.in;
+        in.flip();
+        while (!s.loginPending && in.remaining() >= OrderProtocol.HEADER_BYTES) {
+            int len = in.getInt(in.position());
+            if (len < 1 || len > OrderProtocol.MAX_MESSAGE_BYTES) {
+                close(s);
+                return;
+            }
+            if (in.remaining() < 4 + len) break;
+            int end = in.position() + 4 + len;
+            in.getInt();
+            handle(s, in.get(), in, end);
+            in.position(end);
+            if (!s.channel.isOpen()) return;
+        }
+        in.compact();
+        flush(s);
+    }
+
+    private void handle(Session s, byte type, ByteBuffer in, int end) {
+        if (type == OrderProtocol.LOGIN) {
+            login(s, in, end);
+            return;
+        }
+        long clOrdId = end - in.position() >= 8 ? in.getLong() : 0;
+        if (s.userId < 0) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.NOT_LOGGED_IN);
+            return;
+        }
+        switch (type) {
+            case OrderProtocol.NEW:
+                if (end - in.position() < 4 + 1 + 4 + 8) break;
+                newOrder(s, clOrdId, in.getInt(), in.get(), in.getInt(), in.getDouble());
+                return;
+            case OrderProtocol.CANCEL:
+                cancel(s, clOrdId);
+                return;
+            case OrderProtocol.REPLACE:
+                if (end - in.position() < 4 + 8) break;
+                replace(s, clOrdId, in.getInt(), in.getDouble());
+                return;
+            default:
+                break;
+        }
+        s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.BAD_MESSAGE);
+    }
+
+    // ---------------- Requests ----------------
+
+    // Credentials and portfolio are looked up on a session task, never on the selector thread
+    private void login(Session s, ByteBuffer in, int end) {
+        if (s.userId >= 0) {
+            s.loginAck(OrderProtocol.ALREADY_LOGGED_IN, s.userId, portfolios.get(s.userId).getBalance());
+            return;
+        }
+        String username = readString(in, end);
+        String password = readString(in, end);
+        if (username == null || password == null) {
+            s.loginAck(OrderProtocol.BAD_LOGIN, -1, 0);
+            return;
+        }
+        s.loginPending = true;
+        MarketScheduler.shared().runSessionTask(() -> {
+            User user = null;
+            UserPortfolio loaded = null;
+            try {
+                user = DBHelper.authenticateUser(username, password);
+                if (user != null && !portfolios.containsKey(user.getId())) loaded = StateStore.loadPortfolio(user.getId());
+            } catch (Exception e) {
+                System.err.println("Gateway login failed: " + e.getMessage());
+            }
+            User u = user;
+            UserPortfolio p = loaded;
+            completions.add(() -> finishLogin(s, u, p));
+            selector.wakeup();
+        });
+    }
+
+    // On the selector thread: answer the login, then carry on with what the client sent after it
+    private void finishLogin(Session s, User user, UserPortfolio loaded) {
+        s.loginPending = false;
+        if (!s.channel.isOpen()) return;
+        if (user == null) {
+            s.loginAck(OrderProtocol.BAD_LOGIN, -1, 0);
+        } else {
+            UserPortfolio p = portfolios.computeIfAbsent(user.getId(),
+                    id -> loaded != null ? loaded : new UserPortfolio(id, user.getBalance()));
+            s.userId = user.getId();
+            s.loginAck(OrderProtocol.OK, s.userId, p.getBalance());
+        }
+        process(s);
+    }
+
+    private static String readString(ByteBuffer in, int end) {
+        if (end - in.position() < 2) return null;
+        int len = in.getShort() & 0xFFFF;
+        if (end - in.position() < len) return null;
+        String str = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return str;
+    }
+
+    private void newOrder(Session s, long clOrdId, int symbolId, byte sideCode, int qty, double limit) {
+        if (sideCode != 0 && sideCode != 1) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.BAD_MESSAGE);
+            return;
+        }
+        Side side = Side.of(sideCode);
+        if (limit <= 0) {
+            execute(s, clOrdId, symbolId, side, qty, 0);
+            return;
+        }
+        Stock stock = executor.getMarket().getStock(symbolId);
+        if (stock == null) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.UNKNOWN_SYMBOL);
+            return;
+        }
+        if (qty <= 0) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.BAD_QUANTITY);
+            return;
+        }
+        if (s.orders.containsKey(clOrdId)) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.DUPLICATE_ID);
+            return;
+        }
+        // fills now if the price including impact is within the limit, otherwise rests
+        if (execute(s, clOrdId, symbolId, side, qty, limit) != TradeExecutor.Result.NOT_MARKETABLE) return;
+        Order o = new Order(s, clOrdId, symbolId, side, qty, limit);
+        s.orders.put(clOrdId, o);
+        restingFor(symbolId).add(o);
+        s.exec(clOrdId, OrderProtocol.EXEC_NEW, OrderProtocol.OK);
+    }
+
+    private void cancel(Session s, long clOrdId) {
+        Order o = s.orders.remove(clOrdId);
+        if (o == null) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.UNKNOWN_ORDER);
+            return;
+        }
+        restingFor(o.symbolId).remove(o);
+        s.exec(clOrdId, OrderProtocol.EXEC_CANCELED, OrderProtocol.OK);
+    }
+
+    private void replace(Session s, long clOrdId, int qty, double limit) {
+        Order o = s.orders.get(clOrdId);
+        if (o == null) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.UNKNOWN_ORDER);
+            return;
+        }
+        if (qty <= 0 || limit <= 0) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.BAD_QUANTITY);
+            return;
+        }
+        o.quantity = qty;
+        o.limit = limit;
+        s.exec(clOrdId, OrderProtocol.EXEC_REPLACED, OrderProtocol.OK);
+        Stock stock = executor.getMarket().getStock(o.symbolId);
+        if (stock != null && marketable(o.side, o.limit, stock.getPrice())) tryFill(o);
+    }
+
+    // Sends a FILL or a reject; NOT_MARKETABLE (limit not reached) sends nothing
+    private TradeExecutor.Result execute(Session s, long clOrdId, int symbolId, Side side, int qty, double limit) {
+        UserPortfolio p = portfolios.get(s.userId);
+        TradeExecutor.Result r = executor.execute(p, symbolId, side, qty, limit, fill);
+        if (r == TradeExecutor.Result.FILLED) {
+            unsaved.add(p);
+            s.fill(clOrdId, symbolId, side, fill.quantity, fill.price, p.getBalance());
+        } else if (r != TradeExecutor.Result.NOT_MARKETABLE) {
+            s.exec(clOrdId, OrderProtocol.EXEC_REJECTED, OrderProtocol.reasonOf(r));
+        }
+        return r;
+    }
+
+    // ---------------- Resting limit orders ----------------
+
+    // Cheap pre-check on the mid price; the executor decides with impact included
+    private static boolean marketable(Side side, double limit, double price) {
+        return side == Side.BUY ? price <= limit : price >= limit;
+    }
+
+    private List<Order> restingFor(int symbolId) {
+        while (resting.size() <= symbolId) resting.add(new ArrayList<>());
+        return resting.get(symbolId);
+    }
+
+    // Tries to fill a resting order; it stays resting only while the limit is not reached
+    private boolean tryFill(Order o) {
+        TradeExecutor.Result r = execute(o.session, o.clOrdId, o.symbolId, o.side, o.quantity, o.limit);
+        if (r == TradeExecutor.Result.NOT_MARKETABLE) return false;
+        o.session.orders.remove(o.clOrdId);
+        restingFor(o.symbolId).remove(o);
+        return true;
+    }
+
+    private void drainPrices() {
+        prices.poll(onEvent, Integer.MAX_VALUE);
+        boolean all = prices.getDropped() != pricesDropped;   // missed events: check every symbol
+        pricesDropped = prices.getDropped();
+        boolean filled = false;
+        for (int id = 0; id < resting.size(); id++) {
+            boolean changed = id < priceChanged.length && priceChanged[id];
+            if (changed) priceChanged[id] = false;
+            List<Order> orders = resting.get(id);
+            if ((!changed && !all) || orders.isEmpty()) continue;
+            Stock stock = executor.getMarket().getStock(id);
+            if (stock == null) continue;
+            double price = stock.getPrice();
+            for (int i = orders.size() - 1; i >= 0; i--) {
+                Order o = orders.get(i);
+                if (marketable(o.side, o.limit, price) && tryFill(o)) filled = true;
+            }
+        }
+        if (!filled) return;
+        synchronized (sessions) {
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                Session s = sessions.get(i);
+                if (s.out.position() > 0) flush(s);
+            }
+        }
+    }
+
+    // Our own fills come back as TRADE events; only price changes matter here
+    private void onBusEvent(MarketEvent e) {
+        if (e.type == MarketEvent.TRADE) return;
+        if (e.symbolId >= priceChanged.length) priceChanged = Arrays.copyOf(priceChanged, e.symbolId + 16);
+        priceChanged[e.symbolId] = true;
+    }
+
+    // ---------------- Output ----------------
+
+    /**
+     * Writes buffered responses. If the socket does not take them all the
+     * session stops being read until they are written.
+     */
+    private void flush(Session s) {
+        if (!s.channel.isOpen()) return;
+        try {
+            s.out.flip();
+            s.channel.write(s.out);
+            boolean backlog = s.out.hasRemaining();
+            s.out.compact();
+            s.key.interestOps(backlog ? SelectionKey.OP_WRITE : s.loginPending ? 0 : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close(s);
+        }
+    }
+
+    private void close(Session s) {
+        synchronized (sessions) { sessions.remove(s); }
+        for (Order o : s.orders.values()) restingFor(o.symbolId).remove(o);
+        s.orders.clear();
+        try { s.channel.close(); } catch (IOException ignored) {}
+    }
+
+    private void closeAll() {
+        List<Session> all;
+        synchronized (sessions) { all = new ArrayList<>(sessions); }
+        for (Session s : all) close(s);
+        try { server.close(); } catch (IOException ignored) {}
+        try { selector.close(); } catch (IOException ignored) {}
+    }
+
+    // ---------------- Per-session state ----------------
+
+    private static class Order {
+        final Session session;
+        final long clOrdId;
+        final int symbolId;
+        final Side side;
+        int quantity;
+        double limit;
+
+        Order(Session session, long clOrdId, int symbolId, Side side, int quantity, double limit) {
+            this.session = session;
+            this.clOrdId = clOrdId;
+            this.symbolId = symbolId;
+            this.side = side;
+            this.quantity = quantity;
+            this.limit = limit;
+        }
+    }
+
+    private static class Session {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(IN_BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(OUT_BUFFER_BYTES);   // write mode, grows
+        SelectionKey key;
+        int userId = -1;
+        boolean loginPending;   // LOGIN being checked; the session is not read meanwhile
+        final Map<Long, Order> orders = new HashMap<>();   // resting orders by clOrdId
+
+        Session(SocketChannel channel) { this.channel = channel; }
+
+        private ByteBuffer room(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            return out;
+        }
+
+        void loginAck(byte status, int userId, double balance) {
+            room(OrderProtocol.LOGIN_ACK_BYTES).putInt(OrderProtocol.LOGIN_ACK_BYTES - 4).put(OrderProtocol.LOGIN_ACK)
+                    .put(status).putInt(userId).putDouble(balance);
+        }
+
+        void exec(long clOrdId, byte execType, byte reason) {
+            room(OrderProtocol.EXEC_BYTES).putInt(OrderProtocol.EXEC_BYTES - 4).put(OrderProtocol.EXEC)
+                    .putLong(clOrdId).put(execType).put(reason);
+        }
+
+        void fill(long clOrdId, int symbolId, Side side, int qty, double price, double balance) {
+            room(OrderProtocol.FILL_BYTES).putInt(OrderProtocol.FILL_BYTES - 4).put(OrderProtocol.FILL)
+                    .putLong(clOrdId).putInt(symbolId).put((byte) side.ordinal()).putInt(qty)
+                    .putDouble(price).putDouble(balance);
+        }
+    }
+}
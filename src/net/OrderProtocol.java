@@ -0,0 +1,84 @@
+package net;
+
+import engine.TradeExecutor;
+
+/**
+ * Wire format of the order-entry gateway (big-endian).
+ *
+ * Every message: [int length of the rest][byte type] then:
+ *
+ * Client to server
+ *   LOGIN:   [short len][len bytes UTF-8 username][short len][len bytes UTF-8 password]
+ *   NEW:     [long clOrdId][int symbolId][byte side][int quantity][double limitPrice]
+ *            (limitPrice <= 0 is a market order)
+ *   CANCEL:  [long clOrdId]
+ *   REPLACE: [long clOrdId][int quantity][double limitPrice]
+ *
+ * Server to client
+ *   LOGIN_ACK: [byte status][int userId][double balance]
+ *   EXEC:      [long clOrdId][byte execType][byte reason]
+ *   FILL:      [long clOrdId][int symbolId][byte side][int quantity][double price][double balance]
+ *
+ * Requests may be pipelined: a client can send any number of messages
+ * without waiting, and responses come back in request order (fills of
+ * resting limit orders are interleaved as they happen). clOrdIds are chosen
+ * by the client and must be unique among its live orders. A session logs in
+ * once: a second LOGIN is answered with status ALREADY_LOGGED_IN and the
+ * session stays with its first user.
+ */
+public final class OrderProtocol {
+
+    // client -> server
+    public static final byte LOGIN = 1;
+    public static final byte NEW = 2;
+    public static final byte CANCEL = 3;
+    public static final byte REPLACE = 4;
+
+    // server -> client
+    public static final byte LOGIN_ACK = 11;
+    public static final byte EXEC = 12;
+    public static final byte FILL = 13;
+
+    // EXEC types
+    public static final byte EXEC_NEW = 0;        // accepted and resting (limit orders)
+    public static final byte EXEC_CANCELED = 1;
+    public static final byte EXEC_REPLACED = 2;
+    public static final byte EXEC_REJECTED = 3;
+
+    // reject reasons (LOGIN_ACK status uses OK / BAD_LOGIN)
+    public static final byte OK = 0;
+    public static final byte NOT_LOGGED_IN = 1;
+    public static final byte UNKNOWN_SYMBOL = 2;
+    public static final byte BAD_QUANTITY = 3;
+    public static final byte INSUFFICIENT_BALANCE = 4;
+    public static final byte INSUFFICIENT_SHARES = 5;
+    public static final byte UNKNOWN_ORDER = 6;
+    public static final byte DUPLICATE_ID = 7;
+    public static final byte BAD_LOGIN = 8;
+    public static final byte BAD_MESSAGE = 9;
+    public static final byte ALREADY_LOGGED_IN = 10;
+
+    public static final int HEADER_BYTES = 4 + 1;
+    public static final int NEW_BYTES = HEADER_BYTES + 8 + 4 + 1 + 4 + 8;
+    public static final int CANCEL_BYTES = HEADER_BYTES + 8;
+    public static final int REPLACE_BYTES = HEADER_BYTES + 8 + 4 + 8;
+    public static final int LOGIN_ACK_BYTES = HEADER_BYTES + 1 + 4 + 8;
+    public static final int EXEC_BYTES = HEADER_BYTES + 8 + 1 + 1;
+    public static final int FILL_BYTES = HEADER_BYTES + 8 + 4 + 1 + 4 + 8 + 8;
+
+    // Largest message the gateway accepts (LOGIN is the only variable one)
+    public static final int MAX_MESSAGE_BYTES = 1024;
+
+    private OrderProtocol() {}
+
+    public static byte reasonOf(TradeExecutor.Result r) {
+        switch (r) {
+            case FILLED: return OK;
+            case UNKNOWN_SYMBOL: return UNKNOWN_SYMBOL;
+            case BAD_QUANTITY: return BAD_QUANTITY;
+            case INSUFFICIENT_BALANCE: return INSUFFICIENT_BALANCE;
+            case INSUFFICIENT_SHARES: return INSUFFICIENT_SHARES;
+            default: return OK;   // NOT_MARKETABLE: the order rests, nothing is rejected
+        }
+    }
+}
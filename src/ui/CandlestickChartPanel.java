@@ -0,0 +1,240 @@
+package ui;
+
+import engine.MarketDataBus;
+import model.BarPyramid;
+import model.Stock;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.function.IntFunction;
+
+/**
+ * Live candlestick chart of one stock over its whole tick history.
+ *
+ * Candles come from the stock's BarPyramid, never from raw ticks. The
+ * visible range is `ticksPerPx` ticks per pixel ending at `rightTick`
+ * (or at the newest tick while following live). Bars are read from the
+ * level the user picked; if that would make candles narrower than
+ * MIN_CANDLE_PX, a coarser level is used (level of detail). A frame
+ * therefore draws at most a few hundred candles, whether the view spans
+ * a minute or years.
+ *
+ * A moving average of the last SMA_BARS bars is drawn over the candles.
+ * Each point is one pyramid range query, so it costs O(log n) per candle
+ * whatever the bar size.
+ *
+ * The panel has its own MarketDataBus subscription. A timer drains it
+ * every frame and repaints only when the shown stock ticked. Negative ids
+ * are market indices (see MarketIndices); they repaint on any tick.
+ * Mouse wheel: zoom around the pointer. Drag: pan. Double-click: back to live.
+ */
+public class CandlestickChartPanel extends JPanel {
+
+    public static final int AUTO = 0;   // resolution: pick the level from the zoom
+
+    private static final int REFRESH_MILLIS = 33;
+    private static final int MIN_CANDLE_PX = 3;
+    private static final int AUTO_CANDLE_PX = 8;
+    private static final int AXIS_WIDTH = 64;
+    private static final int TOP = 24, BOTTOM = 12;
+    private static final double MIN_TICKS_PER_PX = 0.25;
+    private static final int SMA_BARS = 20;
+
+    private static final Color BACKGROUND = new Color(20, 20, 20);
+    private static final Color GRID = new Color(50, 50, 50);
+    private static final Color TEXT = new Color(170, 170, 170);
+    private static final Color UP = new Color(34, 139, 34);
+    private static final Color DOWN = new Color(178, 34, 34);
+    private static final Color AVERAGE = new Color(230, 190, 60);
+
+    private final IntFunction<Stock> stocks;
+    private final MarketDataBus.Subscription feed;
+    private final Timer refresh;
+    private boolean dirty;
+
+    private int symbolId;
+    private Stock stock;                // looked up every frame
+    private int resolution = AUTO;      // bar level, or AUTO
+    private double ticksPerPx = 2;
+    private long rightTick = -1;        // last visible tick; -1 follows live
+    private int shownTicks;             // tick count at the last paint
+
+    private double[] bars = new double[4 * 512];
+    private final BarPyramid.Stats window = new BarPyramid.Stats();
+    private int dragX;
+    private long dragRight;
+
+    // stocks looks a stock up by id each frame, so the chart follows a market swapped by undo
+    public CandlestickChartPanel(MarketDataBus bus, IntFunction<Stock> stocks, int symbolId) {
+        this.stocks = stocks;
+        this.symbolId = symbolId;
+        this.feed = bus.subscribe();
+        setBackground(BACKGROUND);
+        // an index (negative id) can move with any tick
+        MarketDataBus.EventHandler onEvent = e -> { if (e.symbolId == this.symbolId || this.symbolId < 0) dirty = true; };
+        refresh = new Timer(REFRESH_MILLIS, e -> {
+            feed.poll(onEvent, Integer.MAX_VALUE);
+            if (dirty) {
+                dirty = false;
+                repaint();
+            }
+        });
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragRight = visibleRight();
+            }
+            @Override public void mouseDragged(MouseEvent e) {
+                long right = dragRight + Math.round((dragX - e.getX()) * ticksPerPx);
+                rightTick = right >= shownTicks - 1 ? -1 : Math.max(0, right);
+                repaint();
+            }
+            @Override public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) followLive();
+            }
+            @Override public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(1.25, e.getPreciseWheelRotation()), e.getX());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    public void setSymbol(int symbolId) {
+        this.symbolId = symbolId;
+        followLive();
+    }
+
+    // Bar size as a pyramid level (ticks per bar = 2^level), or AUTO
+    public void setResolution(int level) {
+        this.resolution = level;
+        repaint();
+    }
+
+    public void followLive() {
+        rightTick = -1;
+        repaint();
+    }
+
+    @Override public void addNotify() {
+        super.addNotify();
+        refresh.start();
+    }
+
+    @Override public void removeNotify() {
+        refresh.stop();
+        super.removeNotify();
+    }
+
+    @Override public Dimension getPreferredSize() { return new Dimension(860, 420); }
+
+    private long visibleRight() {
+        return rightTick < 0 ? shownTicks - 1 : Math.min(rightTick, shownTicks - 1);
+    }
+
+    // Zoom keeping the tick under the pointer in place (the right edge while live)
+    private void zoom(double factor, int x) {
+        int plotRight = getWidth() - AXIS_WIDTH;
+        double maxTicksPerPx = Math.max(MIN_TICKS_PER_PX, shownTicks / (double) Math.max(1, plotRight) * 1.1);
+        double next = Math.max(MIN_TICKS_PER_PX, Math.min(maxTicksPerPx, ticksPerPx * factor));
+        if (rightTick >= 0) {
+            double anchor = rightTick - (plotRight - x) * ticksPerPx;
+            long right = Math.round(anchor + (plotRight - x) * next);
+            rightTick = right >= shownTicks - 1 ? -1 : Math.max(0, right);
+        }
+        ticksPerPx = next;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        stock = stocks.apply(symbolId);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setFont(getFont().deriveFont(11f));
+        if (stock == null) return;
+
+        BarPyramid pyramid = stock.getBars();
+        shownTicks = pyramid.sync();
+        int plotW = getWidth() - AXIS_WIDTH;
+        int plotH = getHeight() - TOP - BOTTOM;
+        if (plotW < 10 || plotH < 10 || shownTicks == 0) return;
+
+        long right = visibleRight();
+        double left = right - plotW * ticksPerPx;
+        int level = resolution != AUTO ? resolution : BarPyramid.levelFor(Math.round(AUTO_CANDLE_PX * ticksPerPx));
+        while ((1L << level) / ticksPerPx < MIN_CANDLE_PX && level < BarPyramid.MAX_LEVEL) level++;
+
+        int from = (int) (Math.max(0, (long) Math.floor(left)) >> level);
+        int to = (int) (right >> level) + 1;
+        if (bars.length < 4 * (to - from)) bars = new double[4 * (to - from)];
+        int n = pyramid.copyBars(level, from, to, bars);
+        if (n == 0) return;
+
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            lo = Math.min(lo, bars[4 * i + 2]);
+            hi = Math.max(hi, bars[4 * i + 1]);
+        }
+        double pad = Math.max((hi - lo) * 0.05, 0.5);
+        lo -= pad;
+        hi += pad;
+
+        drawGrid(g2, plotW, plotH, lo, hi);
+
+        long ticksPerBar = 1L << level;
+        int candleW = (int) Math.max(1, Math.min(40, ticksPerBar / ticksPerPx * 0.7));
+        for (int i = 0; i < n; i++) {
+            long mid = ((long) (from + i) << level) + ticksPerBar / 2;
+            int x = (int) Math.round(plotW - (right - mid) / ticksPerPx);
+            if (x < -candleW || x > plotW + candleW) continue;
+            double o = bars[4 * i], h = bars[4 * i + 1], l = bars[4 * i + 2], c = bars[4 * i + 3];
+            int yo = y(o, lo, hi, plotH), yh = y(h, lo, hi, plotH), yl = y(l, lo, hi, plotH), yc = y(c, lo, hi, plotH);
+            g2.setColor(c >= o ? UP : DOWN);
+            g2.drawLine(x, yh, x, yl);
+            g2.fillRect(x - candleW / 2, Math.min(yo, yc), candleW, Math.max(1, Math.abs(yc - yo)));
+        }
+
+        // moving average: mean of the SMA_BARS bars ending with each candle
+        g2.setColor(AVERAGE);
+        int prevX = 0, prevY = -1;
+        for (int i = 0; i < n; i++) {
+            long end = Math.min(shownTicks, ((long) (from + i) + 1) << level);
+            long start = end - SMA_BARS * ticksPerBar;
+            if (start < 0) continue;
+            double mean = pyramid.query((int) start, (int) end, window).mean();
+            long mid = ((long) (from + i) << level) + ticksPerBar / 2;
+            int x = (int) Math.round(plotW - (right - mid) / ticksPerPx);
+            int y = y(mean, lo, hi, plotH);
+            if (prevY >= 0) g2.drawLine(prevX, prevY, x, y);
+            prevX = x;
+            prevY = y;
+        }
+
+        g2.setColor(TEXT);
+        String header = String.format("%s  ₹%.2f   %d ticks/bar%s   SMA %d   %s", stock.getSymbol(), stock.getPrice(), ticksPerBar,
+                resolution != AUTO && level != resolution ? " (zoomed out)" : "", SMA_BARS, rightTick < 0 ? "LIVE" : "paused");
+        g2.drawString(header, 8, 16);
+    }
+
+    private void drawGrid(Graphics2D g2, int plotW, int plotH, double lo, double hi) {
+        for (int i = 0; i <= 4; i++) {
+            double v = lo + (hi - lo) * i / 4;
+            int y = y(v, lo, hi, plotH);
+            g2.setColor(GRID);
+            g2.drawLine(0, y, plotW, y);
+            g2.setColor(TEXT);
+            g2.drawString(String.format("%.2f", v), plotW + 6, y + 4);
+        }
+    }
+
+    private static int y(double v, double lo, double hi, int plotH) {
+        return TOP + (int) Math.round((1 - (v - lo) / (hi - lo)) * plotH);
+    }
+}
@@ -0,0 +1,112 @@
+package ui;
+
+import analytics.MonteCarlo;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Fan chart of a Monte Carlo projection: the 5-95% and 25-75% bands of
+ * portfolio value by day, with the median as a line. Shows a message
+ * until setProjection() is called (the simulation runs off the EDT).
+ */
+public class FanChartPanel extends JPanel {
+
+    public static final double[] FRACTIONS = {0.05, 0.25, 0.50, 0.75, 0.95};
+
+    private static final int PAD = 6;
+    private static final int AXIS_WIDTH = 70;
+    private static final int HEADER = 16;
+    private static final Color BACKGROUND = new Color(20, 20, 20);
+    private static final Color OUTER = new Color(0, 120, 170, 90);
+    private static final Color INNER = new Color(0, 170, 230, 140);
+    private static final Color MEDIAN = new Color(230, 230, 230);
+    private static final Color TEXT = new Color(170, 170, 170);
+
+    private double[][] bands;       // [day][FRACTIONS index]
+    private String header;
+    private String message = "Simulating…";
+
+    public FanChartPanel(String title) {
+        setBackground(BACKGROUND);
+        if (title != null) setBorder(BorderFactory.createTitledBorder(title));
+    }
+
+    @Override public Dimension getPreferredSize() { return new Dimension(380, 170); }
+
+    public void setProjection(MonteCarlo.Projection p) {
+        bands = p.bands(FRACTIONS);
+        int days = p.getDays();
+        header = String.format("%d paths, %d days: median ₹%.0f (5%% ₹%.0f, 95%% ₹%.0f)",
+                p.getPaths(), days, bands[days][2], bands[days][0], bands[days][4]);
+        message = null;
+        repaint();
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+        bands = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setFont(getFont().deriveFont(11f));
+        Insets in = getInsets();
+        int x0 = in.left + PAD, top = in.top + PAD + HEADER;
+        int w = getWidth() - in.left - in.right - 2 * PAD - AXIS_WIDTH;
+        int h = getHeight() - in.top - in.bottom - 2 * PAD - HEADER;
+        g2.setColor(TEXT);
+        if (message != null || bands == null) {
+            g2.drawString(message != null ? message : "", x0, top);
+            return;
+        }
+        if (w < 10 || h < 10) return;
+        g2.drawString(header, x0, top - 4);
+
+        int days = bands.length - 1;
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (double[] d : bands) {
+            lo = Math.min(lo, d[0]);
+            hi = Math.max(hi, d[FRACTIONS.length - 1]);
+        }
+        if (hi <= lo) hi = lo + 1;
+
+        int[] xs = new int[2 * (days + 1)], ys = new int[2 * (days + 1)];
+        fillBand(g2, 0, 4, days, x0, top, w, h, lo, hi, xs, ys, OUTER);
+        fillBand(g2, 1, 3, days, x0, top, w, h, lo, hi, xs, ys, INNER);
+        g2.setColor(MEDIAN);
+        for (int d = 1; d <= days; d++) {
+            g2.drawLine(x(d - 1, days, x0, w), y(bands[d - 1][2], lo, hi, top, h), x(d, days, x0, w), y(bands[d][2], lo, hi, top, h));
+        }
+
+        g2.setColor(TEXT);
+        for (double v : new double[]{lo, (lo + hi) / 2, hi}) {
+            g2.drawString(String.format("₹%.0f", v), x0 + w + 4, y(v, lo, hi, top, h) + 4);
+        }
+    }
+
+    // Polygon between two quantile lines: the upper one left to right, the lower one back
+    private void fillBand(Graphics2D g2, int lower, int upper, int days, int x0, int top, int w, int h,
+                          double lo, double hi, int[] xs, int[] ys, Color color) {
+        for (int d = 0; d <= days; d++) {
+            xs[d] = x(d, days, x0, w);
+            ys[d] = y(bands[d][upper], lo, hi, top, h);
+            xs[2 * days + 1 - d] = xs[d];
+            ys[2 * days + 1 - d] = y(bands[d][lower], lo, hi, top, h);
+        }
+        g2.setColor(color);
+        g2.fillPolygon(xs, ys, xs.length);
+    }
+
+    private static int x(int day, int days, int x0, int w) {
+        return x0 + (int) Math.round(day * (double) w / Math.max(1, days));
+    }
+
+    private static int y(double v, double lo, double hi, int top, int h) {
+        return top + (int) Math.round((1 - (v - lo) / (hi - lo)) * h);
+    }
+}
@@ -0,0 +1,51 @@
+package ui;
+
+import javax.swing.ImageIcon;
+import java.io.File;
+import java.net.URL;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Window and menu icons, each decoded once and shared. Looked up on the
+ * classpath (/icons/) first, then in icons/ or src/icons/ under the working
+ * directory; a missing icon is remembered, so it is not searched for again.
+ */
+public final class Icons {
+
+    public static final String MAIN = "icons8-trading-80.png";
+    public static final String PORTFOLIO = "icons8-portfolio-48.png";
+    public static final String TRANSACTIONS = "icons8-transaction-50.png";
+    public static final String DAILY = "icons8-daily-50.png";
+    public static final String INSIGHTS = "icons8-combo-chart-50.png";
+
+    private static final String[] DIRS = { "icons", "src" + File.separator + "icons" };
+    private static final Map<String, Optional<ImageIcon>> CACHE = new ConcurrentHashMap<>();
+
+    private Icons() {}
+
+    // The icon, or null if it cannot be found
+    public static ImageIcon get(String name) {
+        return CACHE.computeIfAbsent(name, Icons::load).orElse(null);
+    }
+
+    // Decodes every icon on a background thread while the login window is up
+    public static void preloadAsync() {
+        CompletableFuture.runAsync(() -> {
+            for (String name : new String[] { MAIN, PORTFOLIO, TRANSACTIONS, DAILY, INSIGHTS }) get(name);
+        });
+    }
+
+    private static Optional<ImageIcon> load(String name) {
+        URL url = Icons.class.getResource("/icons/" + name);
+        if (url != null) return Optional.of(new ImageIcon(url));
+        for (String dir : DIRS) {
+            File f = new File(dir, name);
+            if (f.isFile()) return Optional.of(new ImageIcon(f.getAbsolutePath()));
+        }
+        System.out.println("Could not load icon: " + name);
+        return Optional.empty();
+    }
+}
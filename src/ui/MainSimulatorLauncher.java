@@ -1,15 +1,42 @@
 package ui;
 
+import analytics.MonteCarlo;
+import analytics.RiskAnalytics;
+import analytics.RiskReport;
+import analytics.SectorAggregator;
+import data.BarStore;
+import data.HistoricalMarket;
+import data.ReplayDriver;
+import data.SessionExporter;
+import engine.AgentMarket;
+import engine.MarketClock;
+import engine.MarketDataBus;
+import engine.MarketEngine;
+import engine.MarketEvent;
+import engine.MarketIndices;
+import engine.MarketScheduler;
+import engine.PriceTape;
+import engine.TradeExecutor;
+import loadgen.Crowd;
+import metrics.Metrics;
+import metrics.MetricsReporter;
+import metrics.Startup;
 import model.*;
+import net.MarketDataFeedServer;
+import net.OrderGatewayServer;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
+import utils.DoubleSeries;
+import utils.TimeUtils;
+
 import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Final MainSimulatorLauncher
@@ -18,151 +45,221 @@ import java.util.List;
  */
 public class MainSimulatorLauncher {
 
-    private static final long DAY_MILLIS = 60 * 60 * 1000L; // 1 hour (adjust for testing)
-    private static final File STATE_FILE = new File("sim_state.dat");
+    private static final long DAY_MILLIS = Long.getLong("marketsim.day.ms", 60 * 60 * 1000L); // 1 hour (adjust for testing)
+    private static final long LIVE_TICK_MILLIS = Math.max(1L, Long.getLong("marketsim.tick.ms", 1000L));
+    // missed-period handling: days missed while closed are computed in one pass, late live ticks are dropped
+    private static final MarketClock.CatchUpPolicy DAY_CATCH_UP = MarketClock.CatchUpPolicy.valueOf(
+            System.getProperty("marketsim.day.catchup", "FAST_FORWARD"));
+    private static final MarketClock.CatchUpPolicy LIVE_CATCH_UP = MarketClock.CatchUpPolicy.valueOf(
+            System.getProperty("marketsim.tick.catchup", "SKIP"));
+    private static final int BUS_CAPACITY = Integer.getInteger("marketsim.bus.capacity", 1 << 16);
+    private static final long UI_FRAME_MILLIS = 33; // UI drains the bus at most ~30 times a second
+    private static final long METRICS_PERIOD_MILLIS = Long.getLong("marketsim.metrics.periodMs", 30_000L);
+    private static final int RISK_WINDOW_TICKS = 10_000; // Insights risk figures use the last N ticks
+    private static final int MC_PATHS = 200_000;          // Monte Carlo projection in Insights
+    private static final int MC_DAYS = 30;
 
     // Icon paths - adjust if your icons live elsewhere
-    private static final String ICON_MAIN = "icons8-trading-80.png";
-    private static final String ICON_PORTFOLIO = "icons8-portfolio-48.png";
-    private static final String ICON_TRANSACTIONS = "icons8-transaction-50.png";
-    private static final String ICON_DAILY = "icons8-daily-50.png";
-    private static final String ICON_INSIGHTS = "icons8-combo-chart-50.png";
+    private static final String ICON_MAIN = Icons.MAIN;
+    private static final String ICON_PORTFOLIO = Icons.PORTFOLIO;
+    private static final String ICON_TRANSACTIONS = Icons.TRANSACTIONS;
+    private static final String ICON_DAILY = Icons.DAILY;
+    private static final String ICON_INSIGHTS = Icons.INSIGHTS;
+
+    // Row colors (shared, not re-created on every repaint)
+    private static final Color UP_COLOR = new Color(34,139,34);
+    private static final Color DOWN_COLOR = new Color(178,34,34);
+    private static final Color FLAT_COLOR = new Color(200,200,200);
 
     // runtime state
     private final User currentUser;
     private SimulatorState state;
-    private final Map<String, Double> initialPrices = new HashMap<>();
-    private final Map<String, JButton> priceButtons = new HashMap<>();
-    private final Map<String, JLabel> momentumBadges = new HashMap<>();
+    private volatile MarketEngine engine;
+    private final MarketDataBus bus = new MarketDataBus(BUS_CAPACITY);
+    private MarketDataBus.Subscription uiFeed;
+    private MarketDataFeedServer feedServer; // only when marketsim.feed.port is set
+    private TradeExecutor executor;
+    private MarketIndices indices;           // market and sector indices, kept by the engine
+    private OrderGatewayServer gateway;      // only when marketsim.gateway.port is set
+    private Crowd crowd;                     // only when marketsim.crowd.agents is set
+    private BarStore replayData;             // only when marketsim.history.mode=replay
+    private ReplayDriver replay;
+    private boolean tradedSinceRefresh;      // gateway fills may have moved this user's balance
+    private long uiFeedDropped;
+    // per-stock UI/runtime data, indexed by Stock.getId()
+    private double[] initialPrices;
+    private JButton[] priceButtons;
+    private JLabel[] momentumBadges;
+    // last values pushed into the row widgets, so unchanged rows skip formatting
+    private long[] shownPrice;
+    private int[] shownMomentumBp;
+    private boolean[] changedScratch;
+
+    // at most one UI refresh is queued on the EDT at a time; ticks in between coalesce
+    private final AtomicBoolean uiRefreshQueued = new AtomicBoolean();
+    private final Runnable uiRefresh = this::refreshChangedRows;
+    private final MarketDataBus.EventHandler uiFeedHandler = e -> {
+        if (e.symbolId < changedScratch.length) changedScratch[e.symbolId] = true;
+        if (e.type == MarketEvent.TRADE) tradedSinceRefresh = true;
+    };
 
     private JFrame mainFrame;
     private JLabel balanceLabel;
 
-    private java.util.Timer dayTimer;
-    private java.util.Timer liveFluctTimer;
+    private final MarketScheduler scheduler = MarketScheduler.shared();
+    private MarketScheduler.Handle dayTask;
+    private MarketScheduler.Handle liveTask;
+    private MarketScheduler.Handle uiFeedTask;
+    private final MetricsReporter metricsReporter = new MetricsReporter(METRICS_PERIOD_MILLIS);
 
     // serialized snapshot for undo
     private byte[] preResetSnapshotBytes = null;
+    // stored transactions from before the last reset (epoch millis, -1 for none) are only
+    // deleted once the undo window has passed; fills made inside the window are kept
+    private long transactionPurgeBefore = -1;
 
     public MainSimulatorLauncher(User user) {
         this.currentUser = user;
+        long t0 = System.nanoTime();
         loadOrCreateState();
+        Startup.recordSince("load-state", t0);
+        t0 = System.nanoTime();
         buildUI();
-        startDayTimer();
-        startLiveFluctuations();
+        Startup.recordSince("build-ui", t0);
+        if (replayData != null) {
+            startReplay();
+        } else {
+            startDayTimer();
+            startLiveFluctuations();
+        }
+        startUiFeed();
+        // network services and load generation start once the first frame has been painted (see buildUI)
+    }
+
+    private void startServices() {
+        long t0 = System.nanoTime();
+        feedServer = MarketDataFeedServer.startIfConfigured(state.getMarket(), bus);
+        gateway = OrderGatewayServer.startIfConfigured(executor, bus);
+        if (gateway != null) gateway.registerPortfolio(state.getUser());
+        crowd = Crowd.startIfConfigured(executor);
+        Startup.recordSince("services", t0);
+        metricsReporter.start();
     }
 
     // =====================================================================
     // REQUIRED ICON HELPERS (FRAME + BUTTON VERSION)
     // =====================================================================
 
-    // Safe icon setter for buttons (JButton, AbstractButton)
+    // Icons come from the shared cache (decoded once, missing ones not searched for again)
     // For JButton, JToggleButton, JMenuItem, etc.
-    private void safeSetIcon(AbstractButton btn, String path) {
-        try {
-            // Try multiple possible locations
-            File iconFile = new File(path);
-            if (!iconFile.exists()) {
-                // Try without src/ prefix
-                String altPath = path.replace("src/", "");
-                iconFile = new File(altPath);
-                if (!iconFile.exists()) {
-                    // Try in current directory
-                    altPath = path.substring(path.lastIndexOf("/") + 1);
-                    iconFile = new File(altPath);
-                }
-            }
-            if (iconFile.exists()) {
-                ImageIcon icon = new ImageIcon(iconFile.getAbsolutePath());
-                btn.setIcon(icon);
-            }
-        } catch (Exception ignored) {
-            System.out.println("Could not load icon: " + path);
-        }
+    private void safeSetIcon(AbstractButton btn, String name) {
+        ImageIcon icon = Icons.get(name);
+        if (icon != null) btn.setIcon(icon);
     }
 
     // For JFrame windows (your Portfolio, Transactions, etc.)
-    private void safeSetIcon(JFrame frame, String path) {
-        try {
-            File iconFile = new File(path);
-            if (!iconFile.exists()) {
-                String altPath = path.replace("src/", "");
-                iconFile = new File(altPath);
-            }
-            if (iconFile.exists()) {
-                ImageIcon icon = new ImageIcon(iconFile.getAbsolutePath());
-                frame.setIconImage(icon.getImage());
-            }
-        } catch (Exception ignored) {
-            System.out.println("Could not load frame icon: " + path);
-        }
+    private void safeSetIcon(JFrame frame, String name) {
+        ImageIcon icon = Icons.get(name);
+        if (icon != null) frame.setIconImage(icon.getImage());
     }
 
     // -------------------- State load/create/save --------------------
 
     private void loadOrCreateState() {
-        if (STATE_FILE.exists()) {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(STATE_FILE))) {
-                Object obj = in.readObject();
-                if (obj instanceof SimulatorState) {
-                    state = (SimulatorState) obj;
-                    // Validate loaded state
-                    if (state.getStocks() == null) {
-                        createFreshState();
-                    }
-                } else {
-                    createFreshState();
-                }
-            } catch (Exception e) {
-                System.err.println("Error loading state: " + e.getMessage());
-                createFreshState();
-            }
+        // shared market data (one file for everyone), unless recorded data is configured
+        BarStore history = HistoricalMarket.readIfConfigured();
+        MarketState market;
+        if (history != null) {
+            boolean replaying = HistoricalMarket.isReplay();
+            market = HistoricalMarket.newMarket(history, !replaying);
+            if (replaying) replayData = history;
         } else {
-            createFreshState();
+            market = StateStore.loadMarket();
         }
+        boolean freshMarket = false;
+        if (market == null || market.getStockCount() == 0) {
+            market = createFreshMarket();
+            freshMarket = history == null;
+        }
+
+        // only this user's partition is read
+        UserPortfolio portfolio = StateStore.loadPortfolio(currentUser.getId());
+        boolean freshPortfolio = portfolio == null;
+        if (freshPortfolio) {
+            portfolio = new UserPortfolio(currentUser.getId(), currentUser.getBalance());
+        }
+        // first run after the single-file layout: its market and portfolio are brought over once
+        if (freshMarket) StateStore.importLegacyState(market, freshPortfolio ? portfolio : null);
+        state = new SimulatorState(market, portfolio);
+        engine = new MarketEngine(market, bus);
+        indices = MarketIndices.fromProperties(market);
+        engine.setIndices(indices);
+        engine.recordPrices(RISK_WINDOW_TICKS + 1);
+        executor = new TradeExecutor(engine);
+        // marketsim.price.model=agents: prices come from agent order flow, user fills included
+        AgentMarket agents = AgentMarket.createIfConfigured(market);
+        engine.setAgentMarket(agents);
+        executor.setFillListener(agents);
+        uiFeed = bus.subscribe();
 
         // remember initial prices
-        if (state.getStocks() != null) {
-            for (Stock s : state.getStocks().values()) {
-                if (s != null) {
-                    initialPrices.put(s.getSymbol(), s.getPrice());
-                }
-            }
+        int n = market.getStockCount();
+        initialPrices = new double[n];
+        priceButtons = new JButton[n];
+        momentumBadges = new JLabel[n];
+        shownPrice = new long[n];
+        shownMomentumBp = new int[n];
+        changedScratch = new boolean[n];
+        Arrays.fill(shownPrice, Long.MIN_VALUE);
+        Arrays.fill(shownMomentumBp, Integer.MIN_VALUE);
+        for (Stock s : state.getStocks()) {
+            initialPrices[s.getId()] = s.getPrice();
         }
     }
 
-    private void createFreshState() {
-        state = new SimulatorState();
-        // initialize balance from user if available
-        try {
-            state.setBalance(currentUser.getBalance());
-        } catch (Exception ignored) { /* ignore if user has no balance */ }
-
-        Map<String, Stock> stocks = new LinkedHashMap<>();
-        stocks.put("Reliance", new Stock("Reliance", "RELIANCE", 2500));
-        stocks.put("TCS", new Stock("TCS", "TCS", 3500));
-        stocks.put("Infosys", new Stock("Infosys", "INFY", 1450));
-        stocks.put("HDFC Bank", new Stock("HDFC Bank", "HDFCB", 1600));
-        stocks.put("ICICI Bank", new Stock("ICICI Bank", "ICICIB", 970));
-        stocks.put("Adani Ports", new Stock("Adani Ports", "ADANIP", 1200));
-        stocks.put("Bajaj Finance", new Stock("Bajaj Finance", "BAJFIN", 7800));
-        stocks.put("Wipro", new Stock("Wipro", "WIPRO", 400));
-        stocks.put("ONGC", new Stock("ONGC", "ONGC", 210));
-        stocks.put("Coal India", new Stock("Coal India", "COALIND", 285));
-        stocks.put("Maruti", new Stock("Maruti", "MARUTI", 11000));
-        stocks.put("Tata Motors", new Stock("Tata Motors", "TATAM", 875));
-        stocks.put("NTPC", new Stock("NTPC", "NTPC", 310));
-        stocks.put("Tech Mahindra", new Stock("Tech Mahindra", "TECHM", 1300));
-        stocks.put("Sun Pharma", new Stock("Sun Pharma", "SUNP", 1250));
-        state.setStocks(stocks);
+    private MarketState createFreshMarket() {
+        MarketState market = new MarketState();
+        market.addStock(new Stock("Reliance", "RELIANCE", 2500, "Energy", "Oil & Gas Refining"));
+        market.addStock(new Stock("TCS", "TCS", 3500, "Information Technology", "IT Services"));
+        market.addStock(new Stock("Infosys", "INFY", 1450, "Information Technology", "IT Services"));
+        market.addStock(new Stock("HDFC Bank", "HDFCB", 1600, "Financials", "Private Banks"));
+        market.addStock(new Stock("ICICI Bank", "ICICIB", 970, "Financials", "Private Banks"));
+        market.addStock(new Stock("Adani Ports", "ADANIP", 1200, "Industrials", "Ports & Logistics"));
+        market.addStock(new Stock("Bajaj Finance", "BAJFIN", 7800, "Financials", "Consumer Finance"));
+        market.addStock(new Stock("Wipro", "WIPRO", 400, "Information Technology", "IT Services"));
+        market.addStock(new Stock("ONGC", "ONGC", 210, "Energy", "Oil & Gas Exploration"));
+        market.addStock(new Stock("Coal India", "COALIND", 285, "Energy", "Coal Mining"));
+        market.addStock(new Stock("Maruti", "MARUTI", 11000, "Consumer Discretionary", "Automobiles"));
+        market.addStock(new Stock("Tata Motors", "TATAM", 875, "Consumer Discretionary", "Automobiles"));
+        market.addStock(new Stock("NTPC", "NTPC", 310, "Utilities", "Power Generation"));
+        market.addStock(new Stock("Tech Mahindra", "TECHM", 1300, "Information Technology", "IT Services"));
+        market.addStock(new Stock("Sun Pharma", "SUNP", 1250, "Health Care", "Pharmaceuticals"));
+        return market;
     }
 
+    // Saves both partitions (market ticks, resets)
     private void saveState() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(STATE_FILE))) {
-            out.writeObject(state);
+        long t0 = System.nanoTime();
+        try {
+            StateStore.saveMarket(state.getMarket());
+            executor.savePortfolio(state.getUser());
             System.out.println("Saved state at day " + state.getDayIndex());
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            Metrics.PERSIST.recordSince(t0);
+        }
+    }
+
+    // Saves only the current user's partition (trades)
+    private void savePortfolio() {
+        long t0 = System.nanoTime();
+        try {
+            executor.savePortfolio(state.getUser());
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            Metrics.PERSIST.recordSince(t0);
         }
     }
 
@@ -173,7 +270,19 @@ public class MainSimulatorLauncher {
         mainFrame = new JFrame("Market Simulator - " + currentUser.getUsername());
         mainFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         mainFrame.setSize(900, 600);
-        mainFrame.setLayout(new BorderLayout());
+        // the first paint of the window is the "first-frame" milestone; services start right after it
+        mainFrame.setContentPane(new JPanel(new BorderLayout()) {
+            private boolean painted;
+
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (painted) return;
+                painted = true;
+                Startup.mark("first-frame");
+                SwingUtilities.invokeLater(MainSimulatorLauncher.this::startServices);
+            }
+        });
         mainFrame.setLocationRelativeTo(null);
 
         // main icon
@@ -183,7 +292,12 @@ public class MainSimulatorLauncher {
             public void windowClosing(WindowEvent e) {
                 // stop timers, save, persist balance to DB, then exit
                 stopTimers();
+                metricsReporter.stop();
+                if (feedServer != null) feedServer.stop();
+                if (gateway != null) gateway.stop();
+                if (crowd != null) crowd.stop();
                 saveState();
+                endUndoWindow();
                 if (currentUser != null) {
                     currentUser.setBalance(state.getBalance());
                     try {
@@ -205,24 +319,36 @@ public class MainSimulatorLauncher {
         JMenuItem miTransactions = new JMenuItem("TRANSACTIONS");
         JMenuItem miDailyPnL = new JMenuItem("DAILY PNL");
         JMenuItem miInsights = new JMenuItem("INSIGHTS");
+        JMenuItem miIndices = new JMenuItem("INDICES");
+        JMenuItem miHeatmap = new JMenuItem("HEATMAP");
+        JMenuItem miExport = new JMenuItem("EXPORT");
 
         safeSetIcon(miMainChart, ICON_MAIN);
         safeSetIcon(miPortfolio, ICON_PORTFOLIO);
         safeSetIcon(miTransactions, ICON_TRANSACTIONS);
         safeSetIcon(miDailyPnL, ICON_DAILY);
         safeSetIcon(miInsights, ICON_INSIGHTS);
+        safeSetIcon(miIndices, ICON_MAIN);
+        safeSetIcon(miHeatmap, ICON_MAIN);
+        safeSetIcon(miExport, ICON_TRANSACTIONS);
 
-        miMainChart.addActionListener(e -> openMainChartWindow());
+        miMainChart.addActionListener(e -> openMainChartWindow(0));
         miPortfolio.addActionListener(e -> openPortfolioWindow());
         miTransactions.addActionListener(e -> openTransactionsWindow());
         miDailyPnL.addActionListener(e -> openDailyPnLWindow());
-        miInsights.addActionListener(e -> openInsightsWindow(null));
+        miInsights.addActionListener(e -> openInsightsWindow(-1));
+        miIndices.addActionListener(e -> openIndicesWindow());
+        miHeatmap.addActionListener(e -> openHeatmapWindow());
+        miExport.addActionListener(e -> exportSession());
 
         menuBar.add(miMainChart);
         menuBar.add(miPortfolio);
         menuBar.add(miTransactions);
         menuBar.add(miDailyPnL);
         menuBar.add(miInsights);
+        menuBar.add(miIndices);
+        menuBar.add(miHeatmap);
+        menuBar.add(miExport);
         mainFrame.setJMenuBar(menuBar);
 
         // TOP: balance + reset
@@ -252,6 +378,22 @@ public class MainSimulatorLauncher {
         leftTop.setOpaque(false);
         leftTop.add(resetBtn);
 
+        JButton pauseBtn = new JButton("PAUSE");
+        pauseBtn.setBackground(new Color(44,44,44));
+        pauseBtn.setForeground(Color.WHITE);
+        pauseBtn.setFont(new Font("SansSerif", Font.BOLD, 12));
+        pauseBtn.setToolTipText("Pause / resume market ticks.");
+        pauseBtn.addActionListener(e -> {
+            if (scheduler.isMarketPaused()) {
+                scheduler.resumeMarket();
+                pauseBtn.setText("PAUSE");
+            } else {
+                scheduler.pauseMarket();
+                pauseBtn.setText("RESUME");
+            }
+        });
+        leftTop.add(pauseBtn);
+
         balanceLabel = new JLabel(String.format("Balance = ₹%.0f", state.getBalance()));
         balanceLabel.setForeground(new Color(0,220,120));
         balanceLabel.setFont(new Font("Consolas", Font.BOLD, 20));
@@ -289,13 +431,9 @@ public class MainSimulatorLauncher {
         listPanel.setLayout(new GridLayout(0,1,0,6));
         listPanel.setBackground(new Color(28,28,28));
         boolean light = true;
-        if (state.getStocks() != null) {
-            for (Stock s : state.getStocks().values()) {
-                if (s != null) {
-                    listPanel.add(makeStockRowUI(s, light));
-                    light = !light;
-                }
-            }
+        for (Stock s : state.getStocks()) {
+            listPanel.add(makeStockRowUI(s, light));
+            light = !light;
         }
 
         JScrollPane scroll = new JScrollPane(listPanel);
@@ -308,7 +446,10 @@ public class MainSimulatorLauncher {
 
     // Creates the stock row UI (keeps original look/logic)
     private JPanel makeStockRowUI(Stock s, boolean lightRow) {
-        JPanel row = new JPanel(null);
+        // tooltip: last N price points, built when shown
+        JPanel row = new JPanel(null) {
+            @Override public String getToolTipText(MouseEvent e) { return makeTooltipFromHistory(s); }
+        };
         row.setPreferredSize(new Dimension(780, 44));
         row.setBackground(lightRow ? new Color(44,44,44) : new Color(36,36,36));
         row.setBorder(BorderFactory.createLineBorder(new Color(60,60,60)));
@@ -318,7 +459,7 @@ public class MainSimulatorLauncher {
         nameBtn.setBackground(randomNiceColorFor(s.getSymbol()));
         nameBtn.setForeground(Color.BLACK);
         nameBtn.setFont(new Font("Verdana", Font.BOLD, 13));
-        nameBtn.addActionListener(e -> openInsightsWindow(s.getSymbol()));
+        nameBtn.addActionListener(e -> openInsightsWindow(s.getId()));
         row.add(nameBtn);
 
         JButton priceBtn = new JButton(String.format("₹%.0f", s.getPrice()));
@@ -327,7 +468,7 @@ public class MainSimulatorLauncher {
         priceBtn.setForeground(Color.BLACK);
         priceBtn.setFont(new Font("Verdana", Font.PLAIN, 13));
         updatePriceButtonColor(priceBtn, s);
-        priceButtons.put(s.getSymbol(), priceBtn);
+        priceButtons[s.getId()] = priceBtn;
         row.add(priceBtn);
 
         JButton buyBtn = new JButton("Buy");
@@ -335,7 +476,7 @@ public class MainSimulatorLauncher {
         buyBtn.setBackground(new Color(34,139,34));
         buyBtn.setForeground(Color.WHITE);
         buyBtn.setFont(new Font("Verdana", Font.BOLD, 12));
-        buyBtn.addActionListener(e -> onBuySell(s.getSymbol(), "BUY"));
+        buyBtn.addActionListener(e -> onBuySell(s.getId(), Side.BUY));
         row.add(buyBtn);
 
         JButton sellBtn = new JButton("Sell");
@@ -343,32 +484,26 @@ public class MainSimulatorLauncher {
         sellBtn.setBackground(new Color(178,34,34));
         sellBtn.setForeground(Color.WHITE);
         sellBtn.setFont(new Font("Verdana", Font.BOLD, 12));
-        sellBtn.addActionListener(e -> onBuySell(s.getSymbol(), "SELL"));
+        sellBtn.addActionListener(e -> onBuySell(s.getId(), Side.SELL));
         row.add(sellBtn);
 
         JLabel mom = new JLabel();
         mom.setBounds(560, 10, 120, 24);
         mom.setFont(new Font("Consolas", Font.PLAIN, 12));
-        momentumBadges.put(s.getSymbol(), mom);
+        momentumBadges[s.getId()] = mom;
         updateMomentumBadge(s, mom);
         row.add(mom);
 
-        // tooltip: last N price points
-        row.setToolTipText(makeTooltipFromHistory(s));
-
-        // right-click quick menu
-        JPopupMenu popup = new JPopupMenu();
-        JMenuItem miBuy = new JMenuItem("Quick Buy");
-        JMenuItem miSell = new JMenuItem("Quick Sell");
-        JMenuItem miInsights = new JMenuItem("Show Insights");
-        miBuy.addActionListener(e -> onBuySell(s.getSymbol(), "BUY"));
-        miSell.addActionListener(e -> onBuySell(s.getSymbol(), "SELL"));
-        miInsights.addActionListener(e -> openInsightsWindow(s.getSymbol()));
-        popup.add(miBuy); popup.add(miSell); popup.addSeparator(); popup.add(miInsights);
+        ToolTipManager.sharedInstance().registerComponent(row);
 
+        // right-click quick menu, built on first use
         row.addMouseListener(new MouseAdapter() {
+            private JPopupMenu popup;
+
             public void mouseClicked(MouseEvent e) {
-                if (SwingUtilities.isRightMouseButton(e)) popup.show(row, e.getX(), e.getY());
+                if (!SwingUtilities.isRightMouseButton(e)) return;
+                if (popup == null) popup = makeQuickMenu(s);
+                popup.show(row, e.getX(), e.getY());
             }
             public void mouseEntered(MouseEvent e) { row.setBackground(new Color(70,70,70)); }
             public void mouseExited(MouseEvent e) { row.setBackground(lightRow ? new Color(44,44,44) : new Color(36,36,36)); }
@@ -377,36 +512,105 @@ public class MainSimulatorLauncher {
         return row;
     }
 
+    private JPopupMenu makeQuickMenu(Stock s) {
+        JPopupMenu popup = new JPopupMenu();
+        JMenuItem miBuy = new JMenuItem("Quick Buy");
+        JMenuItem miSell = new JMenuItem("Quick Sell");
+        JMenuItem miInsights = new JMenuItem("Show Insights");
+        miBuy.addActionListener(e -> onBuySell(s.getId(), Side.BUY));
+        miSell.addActionListener(e -> onBuySell(s.getId(), Side.SELL));
+        miInsights.addActionListener(e -> openInsightsWindow(s.getId()));
+        popup.add(miBuy); popup.add(miSell); popup.addSeparator(); popup.add(miInsights);
+        return popup;
+    }
+
+    // Check the bus once per frame; only wake the EDT when something was published
+    private void startUiFeed() {
+        uiFeedTask = scheduler.scheduleAtFixedRate("ui-feed", 0, TimeUnit.MILLISECONDS.toNanos(UI_FRAME_MILLIS), false,
+                () -> { if (uiFeed.hasPending()) requestUiRefresh(); });
+    }
+
+    // Ask the EDT to drain the UI feed; no-op if a refresh is already queued
+    private void requestUiRefresh() {
+        if (uiRefreshQueued.compareAndSet(false, true)) SwingUtilities.invokeLater(uiRefresh);
+    }
+
+    // Drains the bus, conflating to one repaint per changed stock
+    private void refreshChangedRows() {
+        uiRefreshQueued.set(false);
+        long r0 = System.nanoTime();
+        uiFeed.poll(uiFeedHandler, Integer.MAX_VALUE);
+        if (uiFeed.getDropped() != uiFeedDropped) {
+            // fell a whole ring behind: repaint everything from current prices
+            uiFeedDropped = uiFeed.getDropped();
+            Arrays.fill(changedScratch, true);
+        }
+        for (int id = 0; id < changedScratch.length; id++) {
+            if (changedScratch[id]) {
+                changedScratch[id] = false;
+                refreshStockRow(state.getStock(id));
+            }
+        }
+        if (tradedSinceRefresh) {
+            tradedSinceRefresh = false;
+            balanceLabel.setText(String.format("Balance = ₹%.0f", state.getBalance()));
+        }
+        Metrics.RENDER.recordSince(r0);
+    }
+
+    // Push a stock's current price/momentum into its row widgets
+    private void refreshStockRow(Stock s) {
+        if (s == null) return;
+        int id = s.getId();
+        JButton pb = priceButtons[id];
+        if (pb != null) {
+            long rounded = Math.round(s.getPrice());
+            if (rounded != shownPrice[id]) {
+                shownPrice[id] = rounded;
+                pb.setText("₹" + rounded);
+            }
+            updatePriceButtonColor(pb, s);
+        }
+        JLabel mb = momentumBadges[id];
+        if (mb != null) {
+            int bp = (int) Math.round(s.shortMomentum() * 10_000);
+            if (bp != shownMomentumBp[id]) {
+                shownMomentumBp[id] = bp;
+                updateMomentumBadge(s, mb);
+            }
+        }
+    }
+
     private void updatePriceButtonColor(JButton btn, Stock s) {
         if (btn == null || s == null) return;
 
         if (s.getPrice() > s.getPrevClose()) {
             btn.setForeground(Color.WHITE);
-            btn.setBackground(new Color(34,139,34));
+            btn.setBackground(UP_COLOR);
         } else if (s.getPrice() < s.getPrevClose()) {
             btn.setForeground(Color.WHITE);
-            btn.setBackground(new Color(178,34,34));
+            btn.setBackground(DOWN_COLOR);
         } else {
             btn.setForeground(Color.BLACK);
-            btn.setBackground(new Color(200,200,200));
+            btn.setBackground(FLAT_COLOR);
         }
     }
 
-    // format tooltip from history
+    // format tooltip from the latest prices (never reads a saved history)
     private String makeTooltipFromHistory(Stock s) {
         if (s == null) return "<html>No data</html>";
 
         StringBuilder sb = new StringBuilder("<html>Last prices:<br>");
-        List<Double> h = s.getHistory();
-        if (h == null || h.isEmpty()) {
+        int n = 0;
+        while (n < 6 && !Double.isNaN(s.recentPrice(n))) n++;
+        if (n == 0) {
             sb.append("No history</html>");
             return sb.toString();
         }
 
-        int start = Math.max(0, h.size() - 6);
-        for (int i = start; i < h.size(); i++) {
-            sb.append(String.format("₹%.0f", h.get(i)));
-            if (i < h.size() - 1) sb.append(", ");
+        for (int back = n - 1; back >= 0; back--) {
+            sb.append(String.format("₹%.0f", s.recentPrice(back)));
+            if (back > 0) sb.append(", ");
         }
         sb.append("</html>");
         return sb.toString();
@@ -418,13 +622,13 @@ public class MainSimulatorLauncher {
         double m = s.shortMomentum();
         if (m > 0.01) {
             badge.setText("\u2191 Momentum +" + String.format("%.2f%%", m*100));
-            badge.setForeground(new Color(34,139,34));
+            badge.setForeground(UP_COLOR);
         } else if (m < -0.01) {
             badge.setText("\u2193 Momentum " + String.format("%.2f%%", m*100));
-            badge.setForeground(new Color(178,34,34));
+            badge.setForeground(DOWN_COLOR);
         } else {
             badge.setText("Momentum ~0");
-            badge.setForeground(new Color(200,200,200));
+            badge.setForeground(FLAT_COLOR);
         }
     }
 
@@ -438,14 +642,15 @@ public class MainSimulatorLauncher {
 
     // ---------------- Buy/Sell flow ----------------
 
-    private void onBuySell(String symbol, String type) {
-        Stock s = state.getStocks().get(symbol);
+    private void onBuySell(int symbolId, Side side) {
+        Stock s = state.getStock(symbolId);
         if (s == null) {
-            JOptionPane.showMessageDialog(mainFrame, "Stock not found: " + symbol);
+            JOptionPane.showMessageDialog(mainFrame, "Stock not found: " + symbolId);
             return;
         }
+        String symbol = s.getSymbol();
 
-        String qtyStr = JOptionPane.showInputDialog(mainFrame, "Enter quantity to " + type + " of " + symbol + ":", "Quantity", JOptionPane.PLAIN_MESSAGE);
+        String qtyStr = JOptionPane.showInputDialog(mainFrame, "Enter quantity to " + side + " of " + symbol + ":", "Quantity", JOptionPane.PLAIN_MESSAGE);
         if (qtyStr == null || qtyStr.trim().isEmpty()) return;
 
         int qty;
@@ -460,75 +665,46 @@ public class MainSimulatorLauncher {
             return;
         }
 
-        double total = qty * s.getPrice();
-        if ("BUY".equals(type)) {
-            if (state.getBalance() < total) {
-                JOptionPane.showMessageDialog(mainFrame, "Insufficient balance.");
-                return;
-            }
-            state.setBalance(state.getBalance() - total);
-            state.getPortfolio().put(symbol, state.getPortfolio().getOrDefault(symbol, 0) + qty);
-            StockTransaction t = new StockTransaction(symbol, "BUY", qty, s.getPrice());
-            state.getTodayTransactions().add(t);
-            state.getAllTransactions().add(t);
-        } else {
-            int have = state.getPortfolio().getOrDefault(symbol, 0);
-            if (have < qty) {
-                JOptionPane.showMessageDialog(mainFrame, "Not enough shares to sell.");
-                return;
-            }
-            state.getPortfolio().put(symbol, have - qty);
-            double pnl = (s.getPrice() - s.getPrevClose()) * qty;
-            state.setDailyPnL(state.getDailyPnL() + pnl);
-            state.setBalance(state.getBalance() + total);
-            StockTransaction t = new StockTransaction(symbol, "SELL", qty, s.getPrice());
-            state.getTodayTransactions().add(t);
-            state.getAllTransactions().add(t);
+        TradeExecutor.Result result = executor.execute(state.getUser(), symbolId, side, qty, null);
+        if (result == TradeExecutor.Result.INSUFFICIENT_BALANCE) {
+            JOptionPane.showMessageDialog(mainFrame, "Insufficient balance.");
+            return;
+        }
+        if (result == TradeExecutor.Result.INSUFFICIENT_SHARES) {
+            JOptionPane.showMessageDialog(mainFrame, "Not enough shares to sell.");
+            return;
+        }
+        if (result != TradeExecutor.Result.FILLED) {
+            JOptionPane.showMessageDialog(mainFrame, "Order rejected: " + result);
+            return;
         }
 
+        long r0 = System.nanoTime();
         balanceLabel.setText(String.format("Balance = ₹%.0f", state.getBalance()));
-        JButton pb = priceButtons.get(symbol);
-        if (pb != null) {
-            pb.setText(String.format("₹%.0f", s.getPrice()));
-            updatePriceButtonColor(pb, s);
-        }
-        JLabel mb = momentumBadges.get(symbol);
-        if (mb != null) updateMomentumBadge(s, mb);
+        refreshStockRow(s);
+        Metrics.RENDER.recordSince(r0);
 
-        // persist
-        saveState();
+        // persist (market data is unchanged by a trade)
+        savePortfolio();
     }
 
     // ---------------- Timers ----------------
 
     private void startDayTimer() {
-        long now = System.currentTimeMillis();
-        long delay = Math.max(0, DAY_MILLIS - (now - state.getLastTickTime()));
-        dayTimer = new java.util.Timer();
-        dayTimer.scheduleAtFixedRate(new java.util.TimerTask() {
-            @Override public void run() { SwingUtilities.invokeLater(() -> tickDay()); }
-        }, delay, DAY_MILLIS);
+        // continues the day phase from the last saved tick; days missed while closed are due at once
+        MarketClock dayClock = MarketClock.resumeFrom(state.getLastTickTime(), DAY_MILLIS, DAY_CATCH_UP);
+        dayTask = scheduler.scheduleClock("day-tick", dayClock, true, new MarketClock.Tickable() {
+            @Override public void tick() { SwingUtilities.invokeLater(() -> tickDay(1)); }
+            @Override public void fastForward(long days) { SwingUtilities.invokeLater(() -> tickDay(days)); }
+            // paused days are dropped, not left for the catch-up at the next launch
+            @Override public void skip(long days) { SwingUtilities.invokeLater(() -> engine.skipDays(days, DAY_MILLIS)); }
+        });
     }
 
-    private void tickDay() {
-        state.setDayIndex(state.getDayIndex() + 1);
-        state.setLastTickTime(System.currentTimeMillis());
-        Random rnd = new Random();
-        for (Stock s : state.getStocks().values()) {
-            if (s != null) {
-                s.setPrevClose(s.getPrice());
-                double changePct = (rnd.nextDouble() * 20.0) - 10.0; // ±10%
-                double newPrice = Math.max(1.0, Math.round(s.getPrice() * (1 + changePct / 100.0)));
-                s.setPrice(newPrice);
-                JButton pb = priceButtons.get(s.getSymbol());
-                if (pb != null) {
-                    pb.setText(String.format("₹%.0f", s.getPrice()));
-                    updatePriceButtonColor(pb, s);
-                }
-                JLabel mb = momentumBadges.get(s.getSymbol());
-                if (mb != null) updateMomentumBadge(s, mb);
-            }
-        }
+    private void tickDay(long days) {
+        if (days == 1) engine.tickDay();
+        else engine.fastForwardDays(days, DAY_MILLIS);
+        refreshChangedRows();
         // end of day housekeeping
         state.getTodayTransactions().clear();
         state.setDailyPnL(0.0);
@@ -536,45 +712,45 @@ public class MainSimulatorLauncher {
     }
 
     private void startLiveFluctuations() {
-        liveFluctTimer = new java.util.Timer();
-        liveFluctTimer.scheduleAtFixedRate(new java.util.TimerTask() {
-            @Override public void run() { SwingUtilities.invokeLater(() -> {
-                Random rnd = new Random();
-                double changeProb = 0.4; // 40% chance per tick
-                for (Stock s : state.getStocks().values()) {
-                    if (s != null && rnd.nextDouble() <= changeProb) {
-                        double changePct = (rnd.nextDouble() * 2.0) - 1.0; // ±1%
-                        double newPrice = Math.max(1.0, Math.round(s.getPrice() * (1 + changePct / 100.0)));
-                        s.setPrice(newPrice);
-                        JButton pb = priceButtons.get(s.getSymbol());
-                        if (pb != null) {
-                            pb.setText(String.format("₹%.0f", s.getPrice()));
-                            updatePriceButtonColor(pb, s);
-                        }
-                        JLabel mb = momentumBadges.get(s.getSymbol());
-                        if (mb != null) updateMomentumBadge(s, mb);
-                    }
-                }
-            }); }
-        }, 0, 1000); // every 1s
+        // prices move on the scheduler thread; the EDT only repaints what changed
+        MarketClock liveClock = new MarketClock(TimeUnit.MILLISECONDS.toNanos(LIVE_TICK_MILLIS), LIVE_CATCH_UP);
+        liveTask = scheduler.scheduleClock("live-tick", liveClock, true, new MarketClock.Tickable() {
+            @Override public void tick() { engine.tickLive(); }
+            @Override public void fastForward(long ticks) { engine.fastForwardLive(ticks); }
+        });
+    }
+
+    // Recorded bars drive the market instead of the day timer and live ticks; starts over from the first bar
+    private void startReplay() {
+        if (replay != null) replay.stop();
+        replay = new ReplayDriver(replayData, engine);
+        replay.setDayListener(() -> SwingUtilities.invokeLater(() -> {
+            // end of day housekeeping; the replayed market is not saved every day
+            state.getTodayTransactions().clear();
+            state.setDailyPnL(0.0);
+        }));
+        replay.start(HistoricalMarket.getSpeed());
     }
 
     // ---------------- Reset with undo ----------------
 
     private void doResetWithUndo() {
-        // snapshot via serialization
+        // pending fills are transient, so the snapshot cannot carry them: store them before the reset drops them;
+        // the market is saved too, so every history is in its segment and the snapshot only needs the header
+        saveState();
+
+        // snapshot via serialization; the segments it refers to are moved aside until the undo window closes
         try {
-            ByteArrayOutputStream bout = new ByteArrayOutputStream();
-            try (ObjectOutputStream oos = new ObjectOutputStream(bout)) {
-                oos.writeObject(state);
-            }
-            preResetSnapshotBytes = bout.toByteArray();
+            preResetSnapshotBytes = StateStore.snapshot(state);
+            StateStore.retireHistory();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(mainFrame,
                     "Could not create reset snapshot: " + e.getMessage());
             preResetSnapshotBytes = null;
         }
 
+        final byte[] snapshot = preResetSnapshotBytes; // a later reset replaces it (and its segments)
+
         // perform reset
         performReset();
 
@@ -587,19 +763,22 @@ public class MainSimulatorLauncher {
         dlg.add(undo, BorderLayout.SOUTH);
 
         undo.addActionListener(e -> {
-            if (preResetSnapshotBytes != null) {
-                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(preResetSnapshotBytes))) {
-                    state = (SimulatorState) ois.readObject();
+            if (snapshot != null && snapshot == preResetSnapshotBytes) {
+                transactionPurgeBefore = -1;
+                try {
+                    state = (SimulatorState) StateStore.restoreSnapshot(preResetSnapshotBytes);
+                    AgentMarket agents = engine.getAgentMarket();
+                    engine = new MarketEngine(state.getMarket(), bus);
+                    engine.setAgentMarket(agents);
+                    engine.setIndices(indices);
+                    engine.recordPrices(RISK_WINDOW_TICKS + 1);
+                    executor.setEngine(engine);
+                    if (replay != null) startReplay();
+                    if (gateway != null) gateway.registerPortfolio(state.getUser());
                     // refresh UI labels/buttons
                     balanceLabel.setText(String.format("Balance = ₹%.0f", state.getBalance()));
-                    for (Stock s : state.getStocks().values()) {
-                        if (s != null) {
-                            JButton pb = priceButtons.get(s.getSymbol());
-                            if (pb != null) pb.setText(String.format("₹%.0f", s.getPrice()));
-                            JLabel mb = momentumBadges.get(s.getSymbol());
-                            if (mb != null) updateMomentumBadge(s, mb);
-                        }
-                    }
+                    Arrays.fill(changedScratch, true);
+                    refreshChangedRows();
                     saveState();
                 } catch (Exception ex) {
                     ex.printStackTrace();
@@ -611,75 +790,80 @@ public class MainSimulatorLauncher {
             }
         });
 
+        // undo window over: drop the stored history for good
+        dlg.addWindowListener(new WindowAdapter() {
+            public void windowClosed(WindowEvent e) {
+                if (snapshot == preResetSnapshotBytes) endUndoWindow();
+            }
+        });
+
         dlg.setSize(360,120);
         dlg.setLocationRelativeTo(mainFrame);
         dlg.setVisible(true);
 
         // auto close after 6s
-        new java.util.Timer().schedule(new java.util.TimerTask() {
-            @Override public void run() {
-                SwingUtilities.invokeLater(() -> {
-                    if (dlg.isVisible()) dlg.dispose();
-                });
-            }
-        }, 6000);
+        scheduler.schedule(6000, () -> SwingUtilities.invokeLater(() -> {
+            if (dlg.isVisible()) dlg.dispose();
+        }));
     }
 
     private void performReset() {
-        stopTimers();
-
-        // reset prices to initialPrices if available, else keep current
-        for (Map.Entry<String, Stock> e : state.getStocks().entrySet()) {
-            String key = e.getKey();
-            Stock s = e.getValue();
-            if (s != null) {
-                Double ip = initialPrices.get(key);
-                if (ip != null) {
-                    s.setPrice(ip);
-                    s.setPrevClose(ip);
-                    // clear history and add ip
-                    List<Double> hist = s.getHistory();
-                    if (hist != null) {
-                        hist.clear();
-                        hist.add(ip);
-                    }
-                }
-                JButton pb = priceButtons.get(key);
-                if (pb != null) {
-                    pb.setText(String.format("₹%.0f", s.getPrice()));
-                    pb.setBackground(new Color(200,200,200));
-                    pb.setForeground(Color.BLACK);
-                }
-                JLabel mb = momentumBadges.get(key);
-                if (mb != null) updateMomentumBadge(s, mb);
-            }
+        // the live tick keeps running; only the day countdown restarts from now
+        if (dayTask != null) dayTask.cancel();
+
+        // reset prices to initialPrices
+        engine.resetPrices(initialPrices);
+        refreshChangedRows();
+
+        synchronized (executor) { // gateway sessions may be trading on this portfolio
+            state.getUser().clearPositions();
+            state.getTodayTransactions().clear();
+            state.getPendingTransactions().clear();
+            state.setDailyPnL(0.0);
+            state.setBalance(100000);
+            // fills are stamped under the same lock, so later ones are never older than this
+            transactionPurgeBefore = TimeUtils.nanosToMillis(TimeUtils.epochNanos());
         }
-
-        state.getPortfolio().clear();
-        state.getTodayTransactions().clear();
-        state.getAllTransactions().clear();
-        state.setDailyPnL(0.0);
-        state.setBalance(100000);
         state.setDayIndex(0);
         state.setLastTickTime(System.currentTimeMillis());
         balanceLabel.setText(String.format("Balance = ₹%.0f", state.getBalance()));
         saveState();
 
-        startDayTimer();
-        startLiveFluctuations();
+        if (replay != null) startReplay();
+        else startDayTimer();
+    }
+
+    private void endUndoWindow() {
+        preResetSnapshotBytes = null;
+        commitTransactionPurge();
+        StateStore.discardRetiredHistory();
+    }
+
+    private void commitTransactionPurge() {
+        if (transactionPurgeBefore < 0) return;
+        long before = transactionPurgeBefore;
+        transactionPurgeBefore = -1;
+        try {
+            DBHelper.deleteTransactionsBefore(currentUser.getId(), before);
+        } catch (Exception e) {
+            System.err.println("Error deleting transactions: " + e.getMessage());
+        }
     }
 
     private void stopTimers() {
-        if (dayTimer != null) {
-            dayTimer.cancel();
-            dayTimer.purge();
-            dayTimer = null;
+        if (dayTask != null) {
+            dayTask.cancel();
+            dayTask = null;
+        }
+        if (liveTask != null) {
+            liveTask.cancel();
+            liveTask = null;
         }
-        if (liveFluctTimer != null) {
-            liveFluctTimer.cancel();
-            liveFluctTimer.purge();
-            liveFluctTimer = null;
+        if (uiFeedTask != null) {
+            uiFeedTask.cancel();
+            uiFeedTask = null;
         }
+        if (replay != null) replay.stop();
     }
 
     // ----------------- Placeholder windows (real ones included) -----------------
@@ -691,10 +875,10 @@ public class MainSimulatorLauncher {
         f.setLocationRelativeTo(mainFrame);
         String[] cols = {"Stock", "Quantity"};
         DefaultTableModel tm = new DefaultTableModel(cols,0);
-        if (state.getPortfolio() != null) {
-            for (Map.Entry<String,Integer> e : state.getPortfolio().entrySet()) {
-                tm.addRow(new Object[]{e.getKey(), e.getValue()});
-            }
+        UserPortfolio user = state.getUser();
+        for (Stock s : state.getStocks()) {
+            int qty = user.getPosition(s.getId());
+            if (qty != 0) tm.addRow(new Object[]{s.getSymbol(), qty});
         }
         JTable table = new JTable(tm);
         f.add(new JScrollPane(table));
@@ -706,22 +890,13 @@ public class MainSimulatorLauncher {
         safeSetIcon(f, ICON_TRANSACTIONS);
         f.setSize(700, 420);
         f.setLocationRelativeTo(mainFrame);
-        String[] cols = {"Time","Stock","Type","Qty","Price"};
-        DefaultTableModel tm = new DefaultTableModel(cols, 0);
-        if (state.getAllTransactions() != null) {
-            for (StockTransaction t : state.getAllTransactions()) {
-                if (t != null) {
-                    tm.addRow(new Object[]{
-                            t.getTimestamp(),
-                            t.getStockName(),
-                            t.getType(),
-                            t.getQuantity(),
-                            String.format("₹%.0f", t.getPrice())
-                    });
-                }
-            }
+        // make sure fills not yet flushed show up, then page rows in from the DB
+        try {
+            StateStore.flushTransactions(state.getUser(), state.getSymbols());
+        } catch (Exception e) {
+            System.err.println("Error flushing transactions: " + e.getMessage());
         }
-        JTable table = new JTable(tm);
+        JTable table = new JTable(new TransactionTableModel(currentUser.getId()));
         f.add(new JScrollPane(table));
         f.setVisible(true);
     }
@@ -737,26 +912,172 @@ public class MainSimulatorLauncher {
         f.setVisible(true);
     }
 
-    private void openMainChartWindow() {
+    // Live candlestick chart of a stock or (negative id) an index
+    private void openMainChartWindow(int chartId) {
         JFrame f = new JFrame("Main Chart");
         safeSetIcon(f, ICON_MAIN);
-        f.setSize(800,400);
+        f.setSize(900,500);
+        f.setLocationRelativeTo(mainFrame);
+
+        CandlestickChartPanel chart = new CandlestickChartPanel(bus,
+                id -> id < 0 ? indices.byChartId(id) : state.getStock(id), chartId);
+
+        // stocks first, then indices; chartIds[i] is the chart id of item i
+        JComboBox<String> stockBox = new JComboBox<>();
+        java.util.List<Integer> chartIds = new ArrayList<>();
+        for (Stock s : state.getStocks()) {
+            stockBox.addItem(s.getSymbol());
+            chartIds.add(s.getId());
+        }
+        for (int i = 0; i < indices.getCount(); i++) {
+            stockBox.addItem(indices.getName(i));
+            chartIds.add(MarketIndices.chartId(i));
+        }
+        stockBox.setSelectedIndex(Math.max(0, chartIds.indexOf(chartId)));
+        stockBox.addActionListener(e -> chart.setSymbol(chartIds.get(stockBox.getSelectedIndex())));
+
+        // bar sizes are pyramid levels: 2^level ticks per bar
+        String[] resolutions = {"Auto", "16 ticks", "64 ticks", "256 ticks", "1024 ticks", "4096 ticks", "16384 ticks"};
+        int[] levels = {CandlestickChartPanel.AUTO, 4, 6, 8, 10, 12, 14};
+        JComboBox<String> resBox = new JComboBox<>(resolutions);
+        resBox.addActionListener(e -> chart.setResolution(levels[resBox.getSelectedIndex()]));
+
+        JButton live = new JButton("LIVE");
+        live.addActionListener(e -> chart.followLive());
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(new JLabel("Stock:"));
+        top.add(stockBox);
+        top.add(new JLabel("Bars:"));
+        top.add(resBox);
+        top.add(live);
+        top.add(new JLabel("  wheel = zoom, drag = pan, double-click = live"));
+
+        f.add(top, BorderLayout.NORTH);
+        f.add(chart, BorderLayout.CENTER);
+        f.setVisible(true);
+    }
+
+    // Index levels, day change and market breadth, refreshed every second
+    private void openIndicesWindow() {
+        JFrame f = new JFrame("Indices");
+        safeSetIcon(f, ICON_MAIN);
+        f.setSize(460,360);
+        f.setLocationRelativeTo(mainFrame);
+
+        DefaultTableModel model = new DefaultTableModel(new Object[]{"Index", "Level", "Day %"}, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+        for (int i = 0; i < indices.getCount(); i++) model.addRow(new Object[]{indices.getName(i), "", ""});
+        JTable table = new JTable(model);
+        table.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int row = table.getSelectedRow();
+                if (e.getClickCount() == 2 && row >= 0) openMainChartWindow(MarketIndices.chartId(row));
+            }
+        });
+        JLabel breadth = new JLabel(" ");
+        breadth.setBorder(BorderFactory.createEmptyBorder(4,6,4,6));
+
+        Runnable refresh = () -> {
+            for (int i = 0; i < indices.getCount(); i++) {
+                Stock idx = indices.getInstrument(i);
+                double prev = idx.getPrevClose();
+                model.setValueAt(String.format("%.2f", idx.getPrice()), i, 1);
+                model.setValueAt(String.format("%+.2f%%", prev > 0 ? (idx.getPrice() - prev) / prev * 100 : 0), i, 2);
+            }
+            int up = 0, down = 0, flat = 0;
+            for (Stock s : state.getStocks()) {
+                if (s.getPrice() > s.getPrevClose()) up++;
+                else if (s.getPrice() < s.getPrevClose()) down++;
+                else flat++;
+            }
+            breadth.setText(String.format("Advancing %d   Declining %d   Unchanged %d   (double-click an index to chart it)", up, down, flat));
+        };
+        refresh.run();
+        javax.swing.Timer timer = new javax.swing.Timer(1000, e -> refresh.run());
+        timer.start();
+        f.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) { timer.stop(); }
+        });
+        f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        f.add(new JScrollPane(table), BorderLayout.CENTER);
+        f.add(breadth, BorderLayout.SOUTH);
+        f.setVisible(true);
+    }
+
+    // Sector treemap coloured by day return; only changed cells are repainted
+    private void openHeatmapWindow() {
+        JFrame f = new JFrame("Sector Heatmap");
+        safeSetIcon(f, ICON_MAIN);
+        f.setSize(900,600);
         f.setLocationRelativeTo(mainFrame);
-        JPanel p = new JPanel(new GridLayout(2,3,6,6));
-        p.setBorder(BorderFactory.createEmptyBorder(8,8,8,8));
-        int i=0;
-        for (Stock s : state.getStocks().values()) {
-            if (s != null && i++>5) break;
-            p.add(makeSparklinePanel(s));
-        }
-        f.add(new JScrollPane(p));
+
+        // suppliers, not the current objects: an undo replaces `state`
+        SectorAggregator aggregator = new SectorAggregator(() -> state.getMarket(), () -> state.getUser(), bus);
+        SectorHeatmapPanel heatmap = new SectorHeatmapPanel(aggregator, () -> state.getMarket());
+        javax.swing.Timer timer = new javax.swing.Timer(250, e -> heatmap.refresh());
+        timer.start();
+        f.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) { timer.stop(); }
+        });
+        f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        JLabel hint = new JLabel("Size = market cap, colour = day return (±3%). Hover a stock for its sector's volume and your exposure.");
+        hint.setBorder(BorderFactory.createEmptyBorder(4,6,4,6));
+        f.add(heatmap, BorderLayout.CENTER);
+        f.add(hint, BorderLayout.SOUTH);
         f.setVisible(true);
     }
 
-    private void openInsightsWindow(String stockSymbol) {
+    // Ticks, bars and transactions to CSV or columnar files, written off the EDT
+    private void exportSession() {
+        JComboBox<SessionExporter.Format> formatBox = new JComboBox<>(SessionExporter.Format.values());
+        Integer[] barSizes = { 16, 64, 256, 1024, 4096 };
+        JComboBox<Integer> barBox = new JComboBox<>(barSizes);
+        JPanel options = new JPanel(new GridLayout(0, 2, 6, 6));
+        options.add(new JLabel("Format"));
+        options.add(formatBox);
+        options.add(new JLabel("Ticks per bar"));
+        options.add(barBox);
+        if (JOptionPane.showConfirmDialog(mainFrame, options, "Export Session",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export to directory");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showSaveDialog(mainFrame) != JFileChooser.APPROVE_OPTION) return;
+
+        java.nio.file.Path dir = chooser.getSelectedFile().toPath();
+        SessionExporter.Format format = (SessionExporter.Format) formatBox.getSelectedItem();
+        int level = BarPyramid.levelFor((Integer) barBox.getSelectedItem());
+        CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return SessionExporter.export(dir, format, state.getMarket(), level, executor, state.getUser());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })
+                .whenComplete((summary, err) -> SwingUtilities.invokeLater(() -> {
+                    if (err != null) {
+                        Throwable cause = err.getCause() != null ? err.getCause() : err;
+                        JOptionPane.showMessageDialog(mainFrame, "Export failed: " + cause.getMessage(),
+                                "Export", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame, summary, "Export", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                }));
+    }
+
+    // Risk figures (over the engine's price tape) and price ranges are worked out on the ForkJoin pool
+    // and filled in when ready
+    private void openInsightsWindow(int symbolId) {
+        Stock s = state.getStock(symbolId);
+        String stockSymbol = s != null ? s.getSymbol() : null;
         JFrame f = new JFrame("Insights" + (stockSymbol!=null ? " - " + stockSymbol : ""));
         safeSetIcon(f, ICON_INSIGHTS);
-        f.setSize(420,360);
+        f.setSize(460,620);
         f.setLocationRelativeTo(mainFrame);
 
         JTextArea ta = new JTextArea();
@@ -764,78 +1085,105 @@ public class MainSimulatorLauncher {
         ta.setLineWrap(true);
         ta.setWrapStyleWord(true);
         ta.setFont(new Font("SansSerif", Font.PLAIN, 13));
+        FanChartPanel fan = new FanChartPanel("Portfolio Projection");
+        fan.setMessage("Measuring risk...");
+        PriceTape tape = engine.getPriceTape();
+        MarketState market = state.getMarket();
+        UserPortfolio user = state.getUser();
+        CompletableFuture<RiskReport> risk =
+                CompletableFuture.supplyAsync(() -> RiskReport.compute(tape.copy(RISK_WINDOW_TICKS + 1), user));
 
-        if (stockSymbol == null) {
+        JPanel container = new JPanel(new BorderLayout(6,6));
+        container.add(new JScrollPane(ta), BorderLayout.CENTER);
+        if (s == null) {
             ta.setText("Insights: Click a stock button for details.\n\nThis window also provides a small price sparkline and short momentum indicator.");
-            f.add(new JScrollPane(ta));
-            f.setVisible(true);
-            return;
+            container.add(fan, BorderLayout.SOUTH);
+        } else {
+            StringBuilder sb = new StringBuilder();
+            sb.append(stockSymbol).append("\n");
+            sb.append("Price: ").append(String.format("₹%.0f", s.getPrice())).append("\n");
+            sb.append("Prev Close: ").append(String.format("₹%.0f", s.getPrevClose())).append("\n");
+            sb.append("Sector: ").append(s.getSector()).append(" / ").append(s.getIndustry()).append("\n\n");
+            ta.setText(sb + "Measuring risk...\n");
+            JPanel charts = new JPanel(new GridLayout(0, 1, 6, 6));
+            charts.add(makeSparklinePanel(s));
+            charts.add(fan);
+            container.add(charts, BorderLayout.SOUTH);
+            risk.thenApply(r -> {
+                        StringBuilder details = new StringBuilder();
+                        appendRisk(details, s, r);
+                        appendRangeStats(details, s);
+                        return details.toString();
+                    })
+                    .whenComplete((details, err) -> SwingUtilities.invokeLater(() ->
+                            ta.setText(sb + (err != null ? "Risk: failed (" + err.getMessage() + ")\n" : details))));
         }
+        f.add(container);
+        f.setVisible(true);
+        startProjection(fan, risk, market, user);
+    }
 
-        Stock s = state.getStocks().get(stockSymbol);
-        if (s == null) {
-            ta.setText("Stock not found.");
-            f.add(new JScrollPane(ta));
-            f.setVisible(true);
+    // Volatility, beta and correlations of the stock, VaR / CVaR of the user's holdings
+    private void appendRisk(StringBuilder sb, Stock s, RiskReport risk) {
+        if (risk.getObservations() < 2 || !risk.covers(s.getId())) {
+            sb.append("Risk: not enough ticks since the market started\n\n");
             return;
         }
+        int id = s.getId();
+        sb.append("Risk (last ").append(risk.getObservations()).append(" ticks):\n");
+        sb.append(String.format("- Volatility: %.3f%% per tick (last 100 ticks: %.3f%%)%n",
+                risk.volatility(id) * 100, risk.recentVolatility(id) * 100));
+        sb.append(String.format("- Beta to market: %.2f%n", risk.beta(id)));
+        for (int other : risk.mostCorrelated(id, 3)) {
+            Stock o = state.getStock(other);
+            sb.append(String.format("- Correlation with %s: %.2f%n", o != null ? o.getSymbol() : "#" + other, risk.correlation(id, other)));
+        }
+        if (risk.getExposure() != 0) {
+            sb.append(String.format("Portfolio (₹%.0f held), loss per tick:%n", risk.getExposure()));
+            for (int c = 0; c < RiskReport.CONFIDENCES.length; c++) {
+                RiskAnalytics.Tail h = risk.historical(c), p = risk.parametric(c);
+                sb.append(String.format("- %.0f%%: VaR ₹%.0f  CVaR ₹%.0f (historical), VaR ₹%.0f  CVaR ₹%.0f (normal)%n",
+                        RiskReport.CONFIDENCES[c] * 100, h.var, h.cvar, p.var, p.cvar));
+            }
+        }
+        sb.append("\n");
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(stockSymbol).append("\n");
-        sb.append("Price: ").append(String.format("₹%.0f", s.getPrice())).append("\n");
-        sb.append("Prev Close: ").append(String.format("₹%.0f", s.getPrevClose())).append("\n");
-        sb.append("Sector: ").append(guessSector(stockSymbol)).append("\n\n");
-        sb.append("Fundamentals (placeholder):\n- Revenue trend: positive\n- Debt: manageable\n- Notes: Example static data.\n\n");
-        sb.append("Recent prices: ").append(s.getHistory() != null ? s.getHistory().toString() : "No history").append("\n");
-        ta.setText(sb.toString());
+    // Low / high / average / change over the last N ticks, one pyramid query each
+    private void appendRangeStats(StringBuilder sb, Stock s) {
+        BarPyramid bars = s.getBars();
+        int n = bars.sync();
+        if (n == 0) {
+            sb.append("Recent prices: No history\n");
+            return;
+        }
+        BarPyramid.Stats st = new BarPyramid.Stats();
+        sb.append("Price ranges:\n");
+        for (int window : new int[]{100, 1_000, 10_000, 100_000, Integer.MAX_VALUE}) {
+            if (window != Integer.MAX_VALUE && window >= n) continue;
+            bars.query(Math.max(0, n - window), n, st);
+            double change = st.first != 0 ? (st.last - st.first) / st.first * 100 : 0;
+            sb.append(String.format("- %s: low ₹%.2f  high ₹%.2f  avg ₹%.2f  %+.2f%%%n",
+                    window == Integer.MAX_VALUE ? "All " + n + " ticks" : "Last " + window + " ticks",
+                    st.min, st.max, st.mean(), change));
+        }
+    }
 
-        JPanel container = new JPanel(new BorderLayout(6,6));
-        container.add(new JScrollPane(ta), BorderLayout.CENTER);
-        container.add(makeSparklinePanel(s), BorderLayout.SOUTH);
-        f.add(container);
-        f.setVisible(true);
+    // Projected portfolio value over the next MC_DAYS days; the simulation runs on the ForkJoin pool
+    private void startProjection(FanChartPanel fan, CompletableFuture<RiskReport> risk, MarketState market, UserPortfolio user) {
+        risk.thenApply(r -> r.getObservations() < 2 ? null
+                        : MonteCarlo.run(MonteCarlo.Model.forPortfolio(r, market, user, DAY_MILLIS / (double) LIVE_TICK_MILLIS),
+                                MC_PATHS, MC_DAYS, System.nanoTime()))
+                .whenComplete((p, err) -> SwingUtilities.invokeLater(() -> {
+                    if (err != null) fan.setMessage("Simulation failed: " + err.getMessage());
+                    else if (p == null) fan.setMessage("Not enough price history yet");
+                    else fan.setProjection(p);
+                }));
     }
 
+    // Live sparkline of the full history (downsampled, cached, redrawn incrementally)
     private JPanel makeSparklinePanel(Stock s) {
-        JPanel p = new JPanel() {
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                if (s == null) return;
-                List<Double> h = s.getHistory();
-                if (h == null || h.size() < 2) return;
-                int w = getWidth()-10;
-                int hgt = getHeight()-10;
-                double min = Collections.min(h);
-                double max = Collections.max(h);
-                if (max == min) max = min + 1;
-                int n = h.size();
-                int[] xs = new int[n], ys = new int[n];
-                for (int i=0;i<n;i++) {
-                    xs[i] = 5 + (int)((double)i/(n-1) * w);
-                    ys[i] = 5 + (int)((1 - (h.get(i)-min)/(max-min)) * hgt);
-                }
-                Graphics2D g2 = (Graphics2D) g;
-                g2.setStroke(new BasicStroke(2));
-                g2.setColor(new Color(0,200,255));
-                for (int i=0;i<n-1;i++) g2.drawLine(xs[i], ys[i], xs[i+1], ys[i+1]);
-                g2.setColor(new Color(120,120,120));
-                g2.drawLine(5, hgt+5, w+5, hgt+5);
-            }
-            public Dimension getPreferredSize() { return new Dimension(380,80); }
-        };
-        p.setBackground(new Color(20,20,20));
-        p.setBorder(BorderFactory.createTitledBorder("Price Sparkline"));
-        return p;
-    }
-
-    private String guessSector(String name) {
-        if (name == null) return "Unknown";
-        name = name.toLowerCase();
-        if (name.contains("bank") || name.contains("icici") || name.contains("hdfc")) return "Banking & Finance";
-        if (name.contains("tech") || name.contains("tcs") || name.contains("infosys")) return "IT Services";
-        if (name.contains("reliance") || name.contains("ongc") || name.contains("adani")) return "Energy / Infrastructure";
-        if (name.contains("pharma") || name.contains("sun")) return "Healthcare / Pharma";
-        return "Conglomerate";
+        return new SparklinePanel(s != null ? s.getHistory() : null, "Price Sparkline");
     }
 
 } // end MainSimulatorLauncher
\ No newline at end of file
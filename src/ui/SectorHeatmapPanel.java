@@ -0,0 +1,300 @@
+package ui;
+
+import analytics.SectorAggregator;
+import model.MarketState;
+import model.Stock;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Treemap heatmap of the market: one block per sector, sized by market cap,
+ * split into one cell per stock (also sized by cap) and coloured by the
+ * day's return.
+ *
+ * The layout (squarified, so cells stay close to square) is computed on
+ * resize and every RELAYOUT_MILLIS, when caps have drifted, and the whole
+ * map is drawn into an offscreen image. In between, refresh() drains the
+ * aggregator and redraws into the image only the cells whose colour bucket
+ * (0.1% of return) changed, plus the header of any sector that changed;
+ * paintComponent just copies the image. Swing merges the dirty regions of
+ * a component into one rectangle, so drawing cells in paintComponent would
+ * redraw every cell in that rectangle; this way the work per refresh is
+ * proportional to what moved, not to the number of symbols.
+ */
+public class SectorHeatmapPanel extends JPanel {
+
+    private static final double BUCKET = 0.001;         // colour step: 0.1%
+    private static final int MAX_BUCKET = 30;           // +-3% is full colour
+    private static final int HEADER = 16;
+    private static final int RELAYOUT_MILLIS = 30_000;
+    private static final Color BACKGROUND = new Color(18, 18, 18);
+    private static final Color BORDER = new Color(18, 18, 18);
+    private static final Color TEXT = new Color(235, 235, 235);
+    private static final Font SMALL = new Font(Font.SANS_SERIF, Font.PLAIN, 10);
+    private static final Font BOLD = new Font(Font.SANS_SERIF, Font.BOLD, 11);
+    private static final Color[] COLORS = new Color[2 * MAX_BUCKET + 1];
+    static {
+        for (int b = -MAX_BUCKET; b <= MAX_BUCKET; b++) {
+            float t = Math.abs(b) / (float) MAX_BUCKET;
+            int grey = 60;
+            COLORS[b + MAX_BUCKET] = b >= 0
+                    ? new Color(grey - (int) (grey * 0.6f * t), grey + (int) ((170 - grey) * t), grey - (int) (grey * 0.4f * t))
+                    : new Color(grey + (int) ((190 - grey) * t), grey - (int) (grey * 0.6f * t), grey - (int) (grey * 0.4f * t));
+        }
+    }
+
+    private final SectorAggregator agg;
+    private final Supplier<MarketState> market;    // current market (an undo swaps it)
+
+    // cell of each symbol and block of each sector; width 0: not laid out
+    private int[] cx, cy, cw, ch;
+    private int[] sx, sy, sw, sh;
+    private final int[] shown;          // colour bucket last painted, per symbol
+    private final String[] shownHeader; // header text last painted, per sector
+    private final int[] changed;
+    private long laidOutAt;
+    private BufferedImage canvas;
+
+    public SectorHeatmapPanel(SectorAggregator agg, Supplier<MarketState> market) {
+        this.agg = agg;
+        this.market = market;
+        int n = agg.getSymbolCapacity(), k = agg.getSectorCount();
+        cx = new int[n]; cy = new int[n]; cw = new int[n]; ch = new int[n];
+        sx = new int[k]; sy = new int[k]; sw = new int[k]; sh = new int[k];
+        shown = new int[n];
+        shownHeader = new String[k];
+        changed = new int[n];
+        setBackground(BACKGROUND);
+        setOpaque(true);
+        setToolTipText("");
+        addComponentListener(new ComponentAdapter() {
+            @Override public void componentResized(ComponentEvent e) { relayout(); }
+        });
+    }
+
+    @Override public Dimension getPreferredSize() { return new Dimension(900, 560); }
+
+    // Fold in new market data and repaint what changed (EDT, on a timer)
+    public void refresh() {
+        agg.drain();
+        if (System.currentTimeMillis() - laidOutAt > RELAYOUT_MILLIS) {
+            agg.takeChangedSymbols(changed);
+            relayout();
+            return;
+        }
+        int n = agg.takeChangedSymbols(changed);
+        if (canvas == null) return;
+        Graphics2D g = canvas.createGraphics();
+        Rectangle dirty = null;
+        for (int i = 0; i < n; i++) {
+            int id = changed[i];
+            if (cw[id] == 0) continue;
+            int b = bucket(agg.getDayReturnOf(id));
+            if (b == shown[id]) continue;
+            shown[id] = b;
+            paintCell(g, id);
+            dirty = union(dirty, cx[id], cy[id], cw[id], ch[id]);
+        }
+        for (int sec = 0; sec < agg.getSectorCount(); sec++) {
+            if (!agg.takeSectorChanged(sec) || sw[sec] == 0) continue;
+            String text = header(sec);
+            if (text.equals(shownHeader[sec])) continue;
+            shownHeader[sec] = text;
+            paintHeader(g, sec);
+            dirty = union(dirty, sx[sec], sy[sec], sw[sec], HEADER);
+        }
+        g.dispose();
+        if (dirty != null) repaint(dirty);
+    }
+
+    private static Rectangle union(Rectangle r, int x, int y, int w, int h) {
+        if (r == null) return new Rectangle(x, y, w, h);
+        r.add(new Rectangle(x, y, w, h));
+        return r;
+    }
+
+    // ---------- Layout ----------
+
+    private void relayout() {
+        laidOutAt = System.currentTimeMillis();
+        Arrays.fill(cw, 0);
+        Arrays.fill(sw, 0);
+        int w = getWidth(), h = getHeight();
+        int k = agg.getSectorCount(), n = agg.getSymbolCapacity();
+        canvas = null;
+        if (w <= 0 || h <= 0 || k == 0) { repaint(); return; }
+
+        double[] area = new double[Math.max(n, k)];
+        int[] order = new int[Math.max(n, k)];
+        double[][] rect = new double[4][Math.max(n, k)];
+
+        for (int sec = 0; sec < k; sec++) { order[sec] = sec; area[sec] = Math.max(0, agg.getCap(sec)); }
+        squarify(area, order, k, 0, 0, w, h, rect);
+        for (int sec = 0; sec < k; sec++) {
+            int x0 = (int) Math.round(rect[0][sec]), y0 = (int) Math.round(rect[1][sec]);
+            sx[sec] = x0;
+            sy[sec] = y0;
+            sw[sec] = (int) Math.round(rect[0][sec] + rect[2][sec]) - x0;
+            sh[sec] = (int) Math.round(rect[1][sec] + rect[3][sec]) - y0;
+            shownHeader[sec] = header(sec);
+        }
+
+        double[] cellArea = new double[n];
+        for (int id = 0; id < n; id++) {
+            if (agg.sectorOf(id) >= 0) cellArea[id] = Math.max(0, agg.getCapOf(id));
+        }
+        for (int sec = 0; sec < k; sec++) {
+            if (sw[sec] <= 2 || sh[sec] <= HEADER + 2) continue;
+            int m = 0;
+            for (int id = 0; id < n; id++) if (agg.sectorOf(id) == sec) order[m++] = id;
+            squarify(cellArea, order, m, sx[sec] + 1, sy[sec] + HEADER, sw[sec] - 2, sh[sec] - HEADER - 1, rect);
+            for (int i = 0; i < m; i++) {
+                int id = order[i];
+                int x0 = (int) Math.round(rect[0][id]), y0 = (int) Math.round(rect[1][id]);
+                cx[id] = x0;
+                cy[id] = y0;
+                cw[id] = (int) Math.round(rect[0][id] + rect[2][id]) - x0;
+                ch[id] = (int) Math.round(rect[1][id] + rect[3][id]) - y0;
+                shown[id] = bucket(agg.getDayReturnOf(id));
+            }
+        }
+
+        canvas = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = canvas.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, w, h);
+        for (int id = 0; id < n; id++) if (cw[id] != 0) paintCell(g, id);
+        for (int sec = 0; sec < k; sec++) if (sw[sec] != 0) paintHeader(g, sec);
+        g.dispose();
+        repaint();
+    }
+
+    /**
+     * Squarified treemap (Bruls, Huizing, van Wijk): items order[0..n) with
+     * the given areas fill the rectangle. Items are taken largest first and
+     * added to the current row along the shorter side while that improves
+     * the row's worst aspect ratio; then the row is fixed and the rest of the
+     * rectangle is filled. Writes x, y, w, h to out[0..3][item]. Sorts order.
+     */
+    static void squarify(double[] area, int[] order, int n, double x, double y, double w, double h, double[][] out) {
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) boxed[i] = order[i];
+        Arrays.sort(boxed, (a, b) -> Double.compare(area[b], area[a]));
+        double total = 0;
+        for (int i = 0; i < n; i++) { order[i] = boxed[i]; total += area[order[i]]; }
+        if (total <= 0 || w <= 0 || h <= 0) {
+            for (int i = 0; i < n; i++) { out[0][order[i]] = x; out[1][order[i]] = y; out[2][order[i]] = 0; out[3][order[i]] = 0; }
+            return;
+        }
+        double scale = w * h / total;
+
+        int start = 0;
+        while (start < n) {
+            double side = Math.min(w, h);
+            int end = start;
+            double rowSum = 0, rowMin = Double.POSITIVE_INFINITY, rowMax = 0, worst = Double.POSITIVE_INFINITY;
+            while (end < n) {
+                double a = area[order[end]] * scale;
+                double sum = rowSum + a, mn = Math.min(rowMin, a), mx = Math.max(rowMax, a);
+                double ratio = Math.max(side * side * mx / (sum * sum), sum * sum / (side * side * mn));
+                if (end > start && ratio > worst) break;
+                rowSum = sum; rowMin = mn; rowMax = mx; worst = ratio;
+                end++;
+            }
+            // the row is a strip of thickness rowSum / side along the shorter side
+            double thick = side > 0 ? rowSum / side : 0;
+            double pos = 0;
+            for (int i = start; i < end; i++) {
+                int item = order[i];
+                double len = rowSum > 0 ? area[item] * scale / rowSum * side : 0;
+                if (w >= h) {   // strip on the left, items stacked down
+                    out[0][item] = x; out[1][item] = y + pos; out[2][item] = thick; out[3][item] = len;
+                } else {        // strip on top, items side by side
+                    out[0][item] = x + pos; out[1][item] = y; out[2][item] = len; out[3][item] = thick;
+                }
+                pos += len;
+            }
+            if (w >= h) { x += thick; w -= thick; } else { y += thick; h -= thick; }
+            start = end;
+        }
+    }
+
+    // ---------- Painting ----------
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (canvas != null) g.drawImage(canvas, 0, 0, null);
+    }
+
+    private void paintCell(Graphics2D g, int id) {
+        int w = cw[id], h = ch[id];
+        double r = agg.getDayReturnOf(id);
+        g.setColor(COLORS[bucket(r) + MAX_BUCKET]);
+        g.fillRect(cx[id], cy[id], w, h);
+        g.setColor(BORDER);
+        g.drawRect(cx[id], cy[id], w - 1, h - 1);
+        Stock s = market.get().getStock(id);
+        g.setFont(SMALL);
+        FontMetrics fm = g.getFontMetrics();
+        if (s == null || h < fm.getHeight() + 2) return;
+        String label = s.getSymbol();
+        if (fm.stringWidth(label) > w - 4) return;
+        boolean twoLines = h >= 2 * fm.getHeight() + 2;
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(TEXT);
+        int ty = cy[id] + (h - (twoLines ? fm.getHeight() : 0)) / 2 + fm.getAscent() / 2;
+        g.drawString(label, cx[id] + (w - fm.stringWidth(label)) / 2, ty);
+        String pct = String.format("%+.2f%%", r * 100);
+        if (twoLines && fm.stringWidth(pct) <= w - 4) {
+            g.drawString(pct, cx[id] + (w - fm.stringWidth(pct)) / 2, ty + fm.getHeight());
+        }
+    }
+
+    private void paintHeader(Graphics2D g, int sec) {
+        g.setColor(BACKGROUND);
+        g.fillRect(sx[sec], sy[sec], sw[sec], HEADER);
+        Shape old = g.getClip();
+        g.clipRect(sx[sec], sy[sec], sw[sec], HEADER);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(BOLD);
+        g.setColor(TEXT);
+        g.drawString(header(sec), sx[sec] + 4, sy[sec] + HEADER - 4);
+        g.setClip(old);
+    }
+
+    private String header(int sec) {
+        String text = String.format("%s %+.2f%%", agg.getSectorName(sec), agg.getDayReturn(sec) * 100);
+        double exp = agg.getExposure(sec);
+        return exp != 0 ? text + String.format("  you ₹%.0f", exp) : text;
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int x = e.getX(), y = e.getY();
+        for (int id = 0; id < cw.length; id++) {
+            if (cw[id] == 0 || x < cx[id] || y < cy[id] || x >= cx[id] + cw[id] || y >= cy[id] + ch[id]) continue;
+            Stock s = market.get().getStock(id);
+            if (s == null) return null;
+            int sec = agg.sectorOf(id);
+            return String.format("<html><b>%s</b> %s<br>%s / %s<br>₹%.2f  %+.2f%% today<br>"
+                            + "Sector: %+.2f%%, %d stocks, volume %,d, turnover ₹%,.0f, your exposure ₹%,.0f</html>",
+                    s.getSymbol(), s.getName(), s.getSector(), s.getIndustry(), s.getPrice(),
+                    agg.getDayReturnOf(id) * 100, agg.getDayReturn(sec) * 100, agg.getMembers(sec),
+                    agg.getVolume(sec), agg.getTurnover(sec), agg.getExposure(sec));
+        }
+        return null;
+    }
+
+    private static int bucket(double r) {
+        long b = Math.round(r / BUCKET);
+        return (int) Math.max(-MAX_BUCKET, Math.min(MAX_BUCKET, b));
+    }
+}
@@ -0,0 +1,188 @@
+package ui;
+
+import utils.DoubleSeries;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Price sparkline over a whole DoubleSeries, however long.
+ *
+ * The series is downsampled to one column per pixel: column c covers a
+ * fixed bucket of points and keeps their first/last/min/max, so a column
+ * draws as a vertical min-max bar joined to its neighbour, and spikes are
+ * never lost. The bucket is a power of two; when the columns run out,
+ * neighbours are merged pairwise and the bucket doubles (so the line fills
+ * between half and all of the width). New points only touch the last column.
+ *
+ * Drawing goes to a cached BufferedImage. Normally only the last column and
+ * anything after it is redrawn. The whole image is redrawn only when the
+ * y-range changes, the buckets merge, or the panel is resized. A timer
+ * checks the series size every frame while the panel is showing, so the
+ * chart follows live ticks without anyone calling repaint().
+ */
+public class SparklinePanel extends JPanel {
+
+    private static final int PAD = 5;
+    private static final int REFRESH_MILLIS = 33;
+    private static final Color LINE_COLOR = new Color(0, 200, 255);
+    private static final Color AXIS_COLOR = new Color(120, 120, 120);
+    private static final Color BACKGROUND = new Color(20, 20, 20);
+
+    private final DoubleSeries series;
+    private final Timer refresh;
+
+    // column aggregates; column c covers points [c * bucket, (c + 1) * bucket)
+    private double[] colFirst = new double[0], colLast = new double[0], colMin = new double[0], colMax = new double[0];
+    private int used;
+    private int bucket = 1;
+    private int consumed;            // points already folded into columns
+    private int generation;          // series generation they came from
+    private double lo, hi;
+
+    private BufferedImage image;
+    private int drawn;               // columns drawn into image (the last one may have grown since)
+    private double drawnLo, drawnHi;
+
+    public SparklinePanel(DoubleSeries series, String title) {
+        this.series = series != null ? series : new DoubleSeries();
+        setBackground(BACKGROUND);
+        if (title != null) setBorder(BorderFactory.createTitledBorder(title));
+        refresh = new Timer(REFRESH_MILLIS, e -> {
+            if (this.series.size() != consumed || this.series.generation() != generation) repaint();
+        });
+    }
+
+    @Override public Dimension getPreferredSize() { return new Dimension(380, 80); }
+
+    @Override public void addNotify() {
+        super.addNotify();
+        refresh.start();
+    }
+
+    @Override public void removeNotify() {
+        refresh.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Insets in = getInsets();
+        int w = getWidth() - in.left - in.right - 2 * PAD;
+        int h = getHeight() - in.top - in.bottom - 2 * PAD;
+        if (w < 2 || h < 2) return;
+
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            resetColumns(w);
+        }
+        fold();
+        render();
+        g.drawImage(image, in.left + PAD, in.top + PAD, null);
+    }
+
+    // ---------------- Downsampling ----------------
+
+    private void resetColumns(int width) {
+        colFirst = new double[width];
+        colLast = new double[width];
+        colMin = new double[width];
+        colMax = new double[width];
+        used = 0;
+        bucket = 1;
+        consumed = 0;
+        lo = Double.POSITIVE_INFINITY;
+        hi = Double.NEGATIVE_INFINITY;
+        drawn = 0;
+    }
+
+    // Fold points appended since the last paint into the columns
+    private void fold() {
+        int g = series.generation();
+        int n = series.size();
+        if (g != generation || n < consumed) {           // series was cleared (reset)
+            resetColumns(colFirst.length);
+            generation = g;
+        }
+        double[] values = series.array();
+        for (int i = consumed; i < n; i++) {
+            int c = i / bucket;
+            if (c >= colFirst.length) {
+                mergeColumns();
+                c = i / bucket;
+            }
+            double v = values[i];
+            if (c == used) {
+                colFirst[c] = colLast[c] = colMin[c] = colMax[c] = v;
+                used++;
+            } else {
+                colLast[c] = v;
+                if (v < colMin[c]) colMin[c] = v;
+                if (v > colMax[c]) colMax[c] = v;
+            }
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+        }
+        consumed = n;
+    }
+
+    // Halve the column count: pairs of columns become one, buckets double
+    private void mergeColumns() {
+        int merged = (used + 1) / 2;
+        for (int c = 0; c < merged; c++) {
+            int a = 2 * c, b = a + 1;
+            colFirst[c] = colFirst[a];
+            if (b < used) {
+                colLast[c] = colLast[b];
+                colMin[c] = Math.min(colMin[a], colMin[b]);
+                colMax[c] = Math.max(colMax[a], colMax[b]);
+            } else {
+                colLast[c] = colLast[a];
+                colMin[c] = colMin[a];
+                colMax[c] = colMax[a];
+            }
+        }
+        used = merged;
+        bucket *= 2;
+        drawn = 0; // every column moved
+    }
+
+    // ---------------- Drawing ----------------
+
+    private void render() {
+        int w = image.getWidth(), h = image.getHeight();
+        Graphics2D g2 = image.createGraphics();
+        try {
+            if (drawn == 0 || lo != drawnLo || hi != drawnHi) {
+                drawn = 0;
+                drawnLo = lo;
+                drawnHi = hi;
+            }
+            // redraw from the last drawn column on; it may have grown
+            int from = Math.max(0, drawn - 1);
+            g2.setComposite(AlphaComposite.Clear);
+            g2.fillRect(from, 0, w - from, h);
+            g2.setComposite(AlphaComposite.SrcOver);
+            g2.setColor(AXIS_COLOR);
+            g2.drawLine(from, h - 1, w - 1, h - 1);
+            if (used < 1) return;
+
+            double range = hi > lo ? hi - lo : 1;
+            g2.setColor(LINE_COLOR);
+            for (int c = from; c < used; c++) {
+                int yMin = y(colMin[c], range, h), yMax = y(colMax[c], range, h);
+                if (c > 0) g2.drawLine(c - 1, y(colLast[c - 1], range, h), c, y(colFirst[c], range, h));
+                g2.drawLine(c, yMax, c, yMin);
+            }
+            drawn = used;
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private int y(double v, double range, int h) {
+        return (int) ((1 - (v - lo) / range) * (h - 1));
+    }
+}
@@ -0,0 +1,85 @@
+package ui;
+
+import model.DBHelper;
+import model.StockTransaction;
+
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table model backed by the transactions table.
+ * Only the row count is queried up front; rows are fetched one page at a time
+ * as the JTable asks for them and kept in a small LRU page cache.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final String[] COLS = {"Time", "Stock", "Type", "Qty", "Price"};
+
+    private final int userId;
+    private int rowCount;
+
+    // page index -> rows, evicts least recently used page
+    private final Map<Integer, List<StockTransaction>> pages =
+            new LinkedHashMap<Integer, List<StockTransaction>>(MAX_CACHED_PAGES, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<StockTransaction>> e) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+
+    public TransactionTableModel(int userId) {
+        this.userId = userId;
+        refresh();
+    }
+
+    // Re-read the row count and drop cached pages
+    public void refresh() {
+        try {
+            rowCount = DBHelper.countTransactions(userId);
+        } catch (SQLException e) {
+            System.err.println("Error counting transactions: " + e.getMessage());
+            rowCount = 0;
+        }
+        pages.clear();
+        fireTableDataChanged();
+    }
+
+    @Override public int getRowCount() { return rowCount; }
+    @Override public int getColumnCount() { return COLS.length; }
+    @Override public String getColumnName(int col) { return COLS[col]; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        List<StockTransaction> page = pageFor(row / PAGE_SIZE);
+        int idx = row % PAGE_SIZE;
+        if (idx >= page.size()) return null;
+        StockTransaction t = page.get(idx);
+        switch (col) {
+            case 0: return t.getTimestamp();
+            case 1: return t.getStockName();
+            case 2: return t.getSide();
+            case 3: return t.getQuantity();
+            case 4: return String.format("₹%.0f", t.getPrice());
+            default: return null;
+        }
+    }
+
+    private List<StockTransaction> pageFor(int pageIndex) {
+        List<StockTransaction> page = pages.get(pageIndex);
+        if (page == null) {
+            try {
+                page = DBHelper.getTransactionsPage(userId, pageIndex * PAGE_SIZE, PAGE_SIZE);
+            } catch (SQLException e) {
+                System.err.println("Error loading transactions: " + e.getMessage());
+                page = Collections.emptyList();
+            }
+            pages.put(pageIndex, page);
+        }
+        return page;
+    }
+}
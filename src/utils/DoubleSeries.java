@@ -0,0 +1,110 @@
+package utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive doubles (no boxing).
+ * Single writer, many readers: the array is published before the size, so a
+ * reader that reads size() first and then calls get()/array() never indexes
+ * past the data it can see. A reader that folds the series incrementally
+ * compares generation() to tell a clear (reset) from the series regrowing.
+ */
+public class DoubleSeries implements Serializable {
+    // the value computed before generation() was added, so saved markets still read
+    private static final long serialVersionUID = 4996753128999265340L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private transient double[] values;
+    private transient volatile int size;
+    private transient volatile int generation;   // bumped by clear(), so followers can tell a reset from growth
+
+    public DoubleSeries() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public DoubleSeries(int capacity) {
+        values = new double[Math.max(1, capacity)];
+    }
+
+    public void add(double v) {
+        int n = size;
+        if (n == values.length) values = Arrays.copyOf(values, n * 2);
+        values[n] = v;
+        size = n + 1;
+    }
+
+    // Append len values from src[off..] with at most one reallocation
+    public void addAll(double[] src, int off, int len) {
+        int n = size;
+        if (n + len > values.length) values = Arrays.copyOf(values, Math.max(n + len, values.length * 2));
+        System.arraycopy(src, off, values, n, len);
+        size = n + len;
+    }
+
+    // Make room for at least capacity values so later add() calls do not reallocate
+    public void ensureCapacity(int capacity) {
+        if (capacity > values.length) values = Arrays.copyOf(values, capacity);
+    }
+
+    public double get(int i) { return values[i]; }
+    public double last() { return values[size - 1]; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public void clear() {
+        generation++;
+        size = 0;
+    }
+
+    // Changes whenever the series is cleared; read it before size()
+    public int generation() { return generation; }
+
+    // Backing array, valid up to a previously read size(); do not modify
+    public double[] array() { return values; }
+
+    public double min() {
+        int n = size;
+        double[] a = values;
+        double m = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) if (a[i] < m) m = a[i];
+        return m;
+    }
+
+    public double max() {
+        int n = size;
+        double[] a = values;
+        double m = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) if (a[i] > m) m = a[i];
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        int n = size;
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    // ---------- Serialization: only the used part ----------
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int n = size;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) out.writeDouble(values[i]);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        values = new double[Math.max(INITIAL_CAPACITY, n)];
+        for (int i = 0; i < n; i++) values[i] = in.readDouble();
+        size = n;
+    }
+}
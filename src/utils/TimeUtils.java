@@ -0,0 +1,30 @@
+package utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+public class TimeUtils {
+
+    // Wall clock anchor; later readings add System.nanoTime() deltas so no object is created per call
+    private static final long BASE_EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+    private static final long BASE_NANO_TIME = System.nanoTime();
+
+    // Thread-safe, shared by every display call
+    private static final DateTimeFormatter DISPLAY_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private TimeUtils() {}
+
+    public static long epochNanos() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+
+    public static long nanosToMillis(long epochNanos) { return epochNanos / 1_000_000L; }
+    public static long millisToNanos(long epochMillis) { return epochMillis * 1_000_000L; }
+
+    // Formatting only happens when something is shown to the user
+    public static String format(long epochNanos) {
+        return DISPLAY_FORMAT.format(Instant.ofEpochSecond(0, epochNanos));
+    }
+}